@@ -15,30 +15,113 @@
  */
 package com.fluxchess.jcpi;
 
+import com.fluxchess.jcpi.commands.EngineBenchmarkCommand;
+import com.fluxchess.jcpi.commands.EnginePerftCommand;
+import com.fluxchess.jcpi.commands.EnginePonderHitCommand;
 import com.fluxchess.jcpi.commands.EngineQuitCommand;
+import com.fluxchess.jcpi.commands.EngineReadyRequestCommand;
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.commands.EngineStopCalculatingCommand;
+import com.fluxchess.jcpi.commands.ICalculationCommand;
 import com.fluxchess.jcpi.commands.IEngine;
 import com.fluxchess.jcpi.commands.IEngineCommand;
 import com.fluxchess.jcpi.commands.IProtocol;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.IllegalNotationException;
 import com.fluxchess.jcpi.protocols.IOProtocolHandler;
 import com.fluxchess.jcpi.protocols.IProtocolHandler;
+import com.fluxchess.jcpi.utils.MoveGenerator;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * This is the main engine class. Inherit your engine from this class and
  * implement all abstract methods.
+ * <p/>
+ * Commands are read on a dedicated thread and dispatched on the thread
+ * calling {@link #run()}. While the engine calculates inside the receive
+ * method of an {@link ICalculationCommand}, the commands stop,
+ * ponderhit, isready and quit are dispatched directly on the reader
+ * thread, so they are not delayed until the calculation has finished. If
+ * another start command is pending, only quit is, and the others wait for
+ * the calculation they belong to.
+ * Otherwise quit, and stop and ponderhit without a pending start command,
+ * overtake the other queued commands. isready always stays in order,
+ * because it must be answered after the commands before it.
+ * <p/>
+ * A stop may reach the engine before its calculation has started. The
+ * stop is therefore also recorded in the calculation command with
+ * {@link ICalculationCommand#requestStop()} first, and an engine
+ * calculating on the dispatch thread should poll
+ * {@link ICalculationCommand#isStopRequested()}. Quit is recorded as well.
+ * <p/>
+ * The commands go perft and bench are answered by default with the move
+ * generator of the library. They are calculations like go, so stop and quit
+ * end them early. The result is sent as an information command with depth,
+ * nodes, time and nps, a stop or failure as an information string.
+ * <p/>
+ * Engines may run their search with the {@link SearchExecutor} of
+ * {@link #getSearchExecutor()} instead of calculating on the dispatch
+ * thread. On quit the executor is stopped and joined with a timeout.
  */
 public abstract class AbstractEngine implements IEngine, Runnable {
 
-	private boolean running = true;
+	// A fixed set of positions, so bench results are comparable across machines
+	private static final String[] BENCHMARK_POSITIONS = {
+			"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+			"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+			"r3k2r/8/8/8/8/8/8/R3K2R b KQkq - 0 1",
+			"K7/8/8/3Q4/4q3/8/8/7k w - - 0 1",
+			"8/2k1p3/3pP3/3P2K1/8/8/8/8 w - - 0 1",
+			"3k4/3pp3/8/8/8/8/3PP3/3K4 w - - 0 1",
+			"n1n5/PPPk4/8/8/8/8/4Kppp/5N1N w - - 0 1",
+			"1k6/8/8/5pP1/4K1P1/8/8/8 w - f6 0 1"
+	};
+
+	// Wakes up the dispatch loop after quit was dispatched on the reader thread
+	private static final IEngineCommand WAKEUP = new IEngineCommand() {
+		public void accept(IEngine engine) {
+		}
+	};
+
+	// Perft checks for a stop between subtrees of this depth
+	private static final int PERFT_SUBTREE_DEPTH = 4;
+
+	// The time to wait for the search to finish on quit
+	private static final long QUIT_TIMEOUT = 2000;
+
+	private volatile boolean running = true;
 	private final IProtocolHandler handler;
+	private final IProtocol protocol;
+	private final SearchExecutor searchExecutor;
+
+	// Guards both queues and the flags
+	private final Object lock = new Object();
+	private final Deque<IEngineCommand> commands = new ArrayDeque<IEngineCommand>();
+	private final Deque<IEngineCommand> priorityCommands = new ArrayDeque<IEngineCommand>();
+	private final List<IEngineCommand> heldCommands = new ArrayList<IEngineCommand>();
+	private int pendingStarts = 0;
+	private ICalculationCommand calculation = null;
 
 	protected AbstractEngine() {
 		// Set the standard input and output stream
-		this(new BufferedReader(new InputStreamReader(System.in)), System.out);
+		this(new IOProtocolHandler(System.in, System.out));
 	}
 
 	protected AbstractEngine(BufferedReader input, PrintStream output) {
@@ -49,30 +132,309 @@ public abstract class AbstractEngine implements IEngine, Runnable {
 		if (handler == null) throw new IllegalArgumentException();
 
 		this.handler = handler;
+		this.protocol = handler;
+		this.searchExecutor = new SearchExecutor(handler);
+	}
+
+	/**
+	 * Creates an engine whose commands are dispatched by a server, for example
+	 * {@link com.fluxchess.jcpi.server.EngineServer}. The engine only sends
+	 * to the protocol and must not be run.
+	 */
+	protected AbstractEngine(IProtocol protocol) {
+		if (protocol == null) throw new IllegalArgumentException();
+
+		this.handler = null;
+		this.protocol = protocol;
+		this.searchExecutor = new SearchExecutor(protocol);
 	}
 
 	public final void run() {
+		if (handler == null) throw new IllegalStateException();
+
+		Thread reader = new Thread(new Runnable() {
+			public void run() {
+				read();
+			}
+		}, "jcpi-input");
+		reader.setDaemon(true);
+		reader.start();
+
 		try {
 			// Run the engine
 			while (running) {
-				IEngineCommand command = handler.receive();
-				command.accept(this);
+				IEngineCommand command = take();
+				if (command instanceof ICalculationCommand) {
+					try {
+						dispatchHeld();
+						command.accept(this);
+					} finally {
+						synchronized (lock) {
+							calculation = null;
+						}
+					}
+				} else {
+					command.accept(this);
+				}
 			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			new EngineQuitCommand().accept(this);
+		}
+	}
+
+	private void read() {
+		try {
+			IEngineCommand command;
+			do {
+				command = handler.receive();
+				dispatch(command);
+			} while (!(command instanceof EngineQuitCommand));
 		} catch (IOException e) {
 			// Something's wrong with the communication channel
-			new EngineQuitCommand().accept(this);
+			dispatch(new EngineQuitCommand());
+		}
+	}
+
+	private void dispatch(IEngineCommand command) {
+		synchronized (lock) {
+			// Only quit overtakes a pending start command during a calculation
+			boolean urgent = calculation != null && isUrgent(command)
+					&& (pendingStarts == 0 || command instanceof EngineQuitCommand);
+			if (urgent && (command instanceof EngineStopCalculatingCommand || command instanceof EngineQuitCommand)) {
+				calculation.requestStop();
+			}
+			if (!urgent) {
+				// A stop or ponderhit behind a pending start command must wait for it
+				if (command instanceof EngineQuitCommand
+						|| (pendingStarts == 0 && (command instanceof EngineStopCalculatingCommand || command instanceof EnginePonderHitCommand))) {
+					priorityCommands.add(command);
+				} else {
+					if (command instanceof ICalculationCommand) {
+						++pendingStarts;
+					}
+					commands.add(command);
+				}
+				lock.notifyAll();
+				return;
+			}
+		}
+
+		dispatchUrgent(command);
+	}
+
+	private void dispatchUrgent(IEngineCommand command) {
+		command.accept(this);
+
+		if (command instanceof EngineQuitCommand) {
+			synchronized (lock) {
+				priorityCommands.add(WAKEUP);
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Takes the next command, preferring the priority queue. A start command
+	 * marks the engine as calculating.
+	 */
+	private IEngineCommand take() throws InterruptedException {
+		synchronized (lock) {
+			while (priorityCommands.isEmpty() && commands.isEmpty()) {
+				lock.wait();
+			}
+
+			IEngineCommand command = priorityCommands.poll();
+			if (command == null) {
+				command = commands.poll();
+				if (command instanceof ICalculationCommand) {
+					--pendingStarts;
+					startCalculating((ICalculationCommand) command);
+				}
+			}
+
+			return command;
 		}
 	}
 
+	/**
+	 * Marks the engine as calculating. Urgent commands, which arrived after
+	 * the start command but before it was taken, are held until the start
+	 * command is dispatched. A held stop is recorded in the start command
+	 * right away. Must be called with the lock held.
+	 */
+	private void startCalculating(ICalculationCommand command) {
+		calculation = command;
+
+		for (Iterator<IEngineCommand> iter = commands.iterator(); iter.hasNext(); ) {
+			IEngineCommand queuedCommand = iter.next();
+			if (queuedCommand instanceof ICalculationCommand) {
+				// Commands behind the next start command belong to it
+				break;
+			}
+			if (isUrgent(queuedCommand)) {
+				if (queuedCommand instanceof EngineStopCalculatingCommand) {
+					command.requestStop();
+				}
+				heldCommands.add(queuedCommand);
+				iter.remove();
+			}
+		}
+	}
+
+	/**
+	 * Dispatches the held urgent commands on a separate thread during the
+	 * calculation.
+	 */
+	private void dispatchHeld() {
+		final List<IEngineCommand> urgentCommands;
+		synchronized (lock) {
+			if (heldCommands.isEmpty()) {
+				return;
+			}
+			urgentCommands = new ArrayList<IEngineCommand>(heldCommands);
+			heldCommands.clear();
+		}
+
+		Thread thread = new Thread(new Runnable() {
+			public void run() {
+				for (IEngineCommand command : urgentCommands) {
+					dispatchUrgent(command);
+				}
+			}
+		}, "jcpi-urgent");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static boolean isUrgent(IEngineCommand command) {
+		return command instanceof EngineStopCalculatingCommand
+				|| command instanceof EnginePonderHitCommand
+				|| command instanceof EngineReadyRequestCommand
+				|| command instanceof EngineQuitCommand;
+	}
+
+	/**
+	 * Counts the leaf nodes of the position with the move generator of the
+	 * library. Override this method to use the move generator of the engine.
+	 */
+	public void receive(EnginePerftCommand command) {
+		if (command == null) throw new IllegalArgumentException();
+
+		long startTime = System.nanoTime();
+		long nodes;
+		try {
+			nodes = perft(command.board, command.moves, command.depth, command);
+		} catch (IllegalArgumentException e) {
+			sendString("perft illegal position");
+			return;
+		}
+
+		if (command.isStopRequested()) {
+			sendString("perft stopped");
+		} else {
+			sendResult(command.depth, nodes, System.nanoTime() - startTime, null);
+		}
+	}
+
+	/**
+	 * Runs perft on a fixed set of positions, distributed over the threads.
+	 * Override this method to benchmark the search of the engine.
+	 */
+	public void receive(final EngineBenchmarkCommand command) {
+		if (command == null) throw new IllegalArgumentException();
+
+		ExecutorService executor = Executors.newFixedThreadPool(command.threads);
+		try {
+			long startTime = System.nanoTime();
+
+			List<Future<Long>> results = new ArrayList<Future<Long>>();
+			for (final String position : BENCHMARK_POSITIONS) {
+				results.add(executor.submit(new Callable<Long>() {
+					public Long call() throws IllegalNotationException {
+						return perft(new GenericBoard(position), Collections.<GenericMove>emptyList(), command.depth, command);
+					}
+				}));
+			}
+
+			long nodes = 0;
+			for (Future<Long> result : results) {
+				nodes += result.get();
+			}
+
+			if (command.isStopRequested()) {
+				sendString("bench stopped");
+			} else {
+				sendResult(command.depth, nodes, System.nanoTime() - startTime,
+						"bench positions " + BENCHMARK_POSITIONS.length + " threads " + command.threads);
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			sendString("bench failed " + e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Counts the leaf nodes in subtrees of at most PERFT_SUBTREE_DEPTH plies,
+	 * so a stop is noticed quickly. Returns a partial count if stopped.
+	 */
+	private static long perft(GenericBoard board, List<GenericMove> moves, int depth, ICalculationCommand command) {
+		if (depth <= PERFT_SUBTREE_DEPTH) {
+			return MoveGenerator.perft(board, moves, depth);
+		}
+
+		long nodes = 0;
+		List<GenericMove> line = new ArrayList<GenericMove>(moves);
+		for (GenericMove move : MoveGenerator.getGenericMoves(board, moves)) {
+			if (command.isStopRequested()) {
+				break;
+			}
+
+			line.add(move);
+			nodes += perft(board, line, depth - 1, command);
+			line.remove(line.size() - 1);
+		}
+
+		return nodes;
+	}
+
+	private void sendString(String string) {
+		ProtocolInformationCommand command = new ProtocolInformationCommand();
+		command.setString(string);
+
+		protocol.send(command);
+	}
+
+	private void sendResult(int depth, long nodes, long duration, String string) {
+		ProtocolInformationCommand command = new ProtocolInformationCommand();
+		command.setDepth(depth);
+		command.setNodes(nodes);
+		command.setTime(duration / 1000000);
+		command.setNps(duration > 0 ? (long) (nodes * 1e9 / duration) : 0);
+		if (string != null) {
+			command.setString(string);
+		}
+
+		protocol.send(command);
+	}
+
 	protected abstract void quit();
 
 	protected final IProtocol getProtocol() {
-		return handler;
+		return protocol;
+	}
+
+	protected final SearchExecutor getSearchExecutor() {
+		return searchExecutor;
 	}
 
 	public final void receive(EngineQuitCommand command) {
 		if (command == null) throw new IllegalArgumentException();
 
+		searchExecutor.close(QUIT_TIMEOUT, TimeUnit.MILLISECONDS);
 		quit();
 		running = false;
 	}
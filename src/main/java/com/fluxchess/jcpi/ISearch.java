@@ -0,0 +1,38 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi;
+
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+
+/**
+ * This interface is the search of an engine, run by a
+ * {@link SearchExecutor}.
+ */
+public interface ISearch {
+
+	/**
+	 * Searches the current position and returns the best move. The search
+	 * should poll {@link SearchToken#isStopped()} in its loops and return as
+	 * soon as possible after it is set. If null is returned or an exception
+	 * is thrown, the last move passed to
+	 * {@link SearchToken#setBestMove(ProtocolBestMoveCommand)} is sent, or
+	 * the first legal move if there is none. The same move is sent if the
+	 * search overruns its deadline.
+	 */
+	ProtocolBestMoveCommand search(EngineStartCalculatingCommand command, SearchToken token);
+
+}
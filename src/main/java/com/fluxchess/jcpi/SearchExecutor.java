@@ -0,0 +1,387 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi;
+
+import com.fluxchess.jcpi.commands.EngineAnalyzeCommand;
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.commands.IProtocol;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.models.GenericColor;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.utils.MoveGenerator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class runs searches on a worker thread and sends exactly one best
+ * move per search.
+ * <p/>
+ * An engine starts the search in {@link AbstractEngine#receive(EngineStartCalculatingCommand)}
+ * and passes stop and ponderhit to {@link #stop()} and {@link #ponderHit()}.
+ * While pondering or analysing infinitely, the best move is held back
+ * until stop or ponderhit, even if the search returns early. A new search
+ * stops the previous one and waits until its best move has been sent.
+ * A search whose start command has a stop request starts stopped, because
+ * the stop may have been passed to {@link #stop()} before the start.
+ * <p/>
+ * A watchdog enforces the deadline of the start command, which is the hard
+ * limit of the {@link TimeManager}. The search is stopped one grace margin
+ * before the deadline. If it has not returned at the deadline, the best
+ * move of the token is sent on its behalf. The token starts with the
+ * first legal move if the position is known, so a move is always sent in
+ * time. Pondering searches are watched from ponderhit on.
+ * <p/>
+ * Once the watchdog has answered, the search is detached. The next search
+ * starts on a new worker thread without waiting for it, and the old worker
+ * ends when its search finally returns.
+ */
+public final class SearchExecutor {
+
+	private final IProtocol protocol;
+	private final TimeManager timeManager = new TimeManager();
+
+	// Guards all fields below
+	private final Object lock = new Object();
+	private Thread thread = null;
+	private ScheduledExecutorService watchdog = null;
+	private long graceMargin = 50;
+	private ISearch pendingSearch = null;
+	private EngineStartCalculatingCommand pendingCommand = null;
+	private SearchToken token = null;
+	private boolean infinite = false;
+	private long deadline = -1;
+	private boolean answered = false;
+	private final List<Future<?>> watchdogTasks = new ArrayList<Future<?>>();
+	private boolean closed = false;
+
+	public SearchExecutor(IProtocol protocol) {
+		if (protocol == null) throw new IllegalArgumentException();
+
+		this.protocol = protocol;
+	}
+
+	/**
+	 * Sets the time in milliseconds between stopping the search and the
+	 * deadline, at which the watchdog sends the best move itself.
+	 */
+	public void setGraceMargin(long graceMargin) {
+		if (graceMargin < 0) throw new IllegalArgumentException();
+
+		synchronized (lock) {
+			this.graceMargin = graceMargin;
+		}
+	}
+
+	/**
+	 * Starts the search without a position. Only the move time is watched,
+	 * and there is no legal fallback move.
+	 */
+	public void start(EngineStartCalculatingCommand command, ISearch search) {
+		start(null, command, search);
+	}
+
+	/**
+	 * Starts the search of the position, which is the last analyze command.
+	 */
+	public void start(EngineAnalyzeCommand position, EngineStartCalculatingCommand command, ISearch search) {
+		if (command == null) throw new IllegalArgumentException();
+		if (search == null) throw new IllegalArgumentException();
+
+		GenericMove firstMove = null;
+		GenericColor activeColor = null;
+		if (position != null) {
+			GenericMove[] moves = MoveGenerator.getGenericMoves(position.board, position.moves);
+			if (moves.length > 0) {
+				firstMove = moves[0];
+			}
+			activeColor = position.moves.size() % 2 == 0
+					? position.board.getActiveColor()
+					: position.board.getActiveColor().opposite();
+		}
+
+		synchronized (lock) {
+			if (closed) throw new IllegalStateException();
+
+			// Finish the previous search first
+			boolean interrupted = false;
+			while (token != null) {
+				token.stop();
+				lock.notifyAll();
+				try {
+					lock.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			if (interrupted) {
+				Thread.currentThread().interrupt();
+			}
+
+			token = new SearchToken(command.getPonder(), timeManager);
+			if (command.isStopRequested()) {
+				// The stop was passed to stop() before this search started
+				token.stop();
+			}
+			if (firstMove != null) {
+				token.setBestMove(new ProtocolBestMoveCommand(firstMove, null));
+			}
+			infinite = command.getInfinite();
+			timeManager.start(command, activeColor);
+			deadline = timeManager.getHardLimit();
+			answered = false;
+			pendingCommand = command;
+			pendingSearch = search;
+
+			if (!command.getPonder()) {
+				watch(token);
+			}
+
+			if (thread == null || !thread.isAlive()) {
+				thread = new Thread(new Runnable() {
+					public void run() {
+						work();
+					}
+				}, "jcpi-search");
+				thread.setDaemon(true);
+				thread.start();
+			}
+			lock.notifyAll();
+		}
+	}
+
+	public void stop() {
+		synchronized (lock) {
+			if (token != null) {
+				token.stop();
+				lock.notifyAll();
+			}
+		}
+	}
+
+	public void ponderHit() {
+		synchronized (lock) {
+			if (token != null && token.isPondering()) {
+				token.ponderHit();
+				timeManager.restart();
+				watch(token);
+				lock.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Returns the time manager. It is restarted by each search and measures
+	 * the overhead of sending the best moves.
+	 */
+	public TimeManager getTimeManager() {
+		return timeManager;
+	}
+
+	/**
+	 * Returns true from the start until the best move has been sent.
+	 */
+	public boolean isSearching() {
+		synchronized (lock) {
+			return token != null;
+		}
+	}
+
+	/**
+	 * Stops the search and the worker thread. Returns false if the worker
+	 * did not terminate within the timeout. Detached searches are not
+	 * waited for.
+	 */
+	public boolean close(long timeout, TimeUnit unit) {
+		if (unit == null) throw new IllegalArgumentException();
+
+		Thread worker;
+		synchronized (lock) {
+			closed = true;
+			if (token != null) {
+				token.stop();
+			}
+			if (watchdog != null) {
+				watchdog.shutdownNow();
+			}
+			lock.notifyAll();
+			worker = thread;
+		}
+
+		if (worker == null) {
+			return true;
+		}
+
+		try {
+			worker.join(unit.toMillis(timeout));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		return !worker.isAlive();
+	}
+
+	/**
+	 * Schedules the watchdog for the token. Must be called with the lock
+	 * held.
+	 */
+	private void watch(final SearchToken searchToken) {
+		if (deadline < 0 || closed) {
+			return;
+		}
+
+		if (watchdog == null) {
+			watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				public Thread newThread(Runnable runnable) {
+					Thread thread = new Thread(runnable, "jcpi-watchdog");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+
+		watchdogTasks.add(watchdog.schedule(new Runnable() {
+			public void run() {
+				synchronized (lock) {
+					if (token == searchToken) {
+						searchToken.stop();
+						lock.notifyAll();
+					}
+				}
+			}
+		}, Math.max(deadline - graceMargin, 0), TimeUnit.MILLISECONDS));
+		watchdogTasks.add(watchdog.schedule(new Runnable() {
+			public void run() {
+				ProtocolBestMoveCommand bestMove;
+				synchronized (lock) {
+					if (token != searchToken || answered) {
+						return;
+					}
+					answered = true;
+					bestMove = searchToken.getBestMove();
+				}
+
+				try {
+					protocol.send(bestMove);
+				} finally {
+					synchronized (lock) {
+						// The search ignores the stop, so do not wait for it
+						if (token == searchToken) {
+							finish();
+							thread = null;
+						}
+					}
+				}
+			}
+		}, deadline, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Ends the current search. Must be called with the lock held.
+	 */
+	private void finish() {
+		for (Future<?> task : watchdogTasks) {
+			task.cancel(false);
+		}
+		watchdogTasks.clear();
+		token = null;
+		lock.notifyAll();
+	}
+
+	private void work() {
+		while (true) {
+			ISearch search;
+			EngineStartCalculatingCommand command;
+			SearchToken searchToken;
+			synchronized (lock) {
+				while (pendingSearch == null && !closed) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				if (pendingSearch == null) {
+					return;
+				}
+
+				search = pendingSearch;
+				command = pendingCommand;
+				searchToken = token;
+				pendingSearch = null;
+				pendingCommand = null;
+			}
+
+			ProtocolBestMoveCommand bestMove = null;
+			RuntimeException failure = null;
+			try {
+				bestMove = search.search(command, searchToken);
+			} catch (RuntimeException e) {
+				failure = e;
+			}
+			if (bestMove == null) {
+				bestMove = searchToken.getBestMove();
+			}
+
+			boolean send;
+			boolean detached;
+			synchronized (lock) {
+				// Hold the best move back until the GUI expects it
+				while (!searchToken.isStopped() && (searchToken.isPondering() || infinite)) {
+					try {
+						lock.wait();
+					} catch (InterruptedException e) {
+						break;
+					}
+				}
+
+				// The watchdog may have sent a best move already
+				send = token == searchToken && !answered;
+				if (send) {
+					answered = true;
+				}
+			}
+
+			try {
+				if (send) {
+					long readyTime = System.nanoTime();
+					protocol.send(bestMove);
+					timeManager.addOverhead(System.nanoTime() - readyTime);
+				}
+			} finally {
+				synchronized (lock) {
+					if (token == searchToken) {
+						finish();
+					}
+					detached = thread != Thread.currentThread();
+				}
+			}
+
+			if (failure != null) {
+				Thread.currentThread().getUncaughtExceptionHandler().uncaughtException(Thread.currentThread(), failure);
+			}
+			if (detached) {
+				return;
+			}
+		}
+	}
+
+}
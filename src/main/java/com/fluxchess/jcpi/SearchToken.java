@@ -0,0 +1,81 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi;
+
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+
+/**
+ * This is the token of one search. The flags are plain volatile fields, so
+ * a search can poll them in its hot loops.
+ */
+public final class SearchToken {
+
+	private volatile boolean stopped = false;
+	private volatile boolean pondering;
+	private volatile ProtocolBestMoveCommand bestMove = new ProtocolBestMoveCommand(null, null);
+
+	private final TimeManager timeManager;
+
+	SearchToken(boolean pondering, TimeManager timeManager) {
+		this.pondering = pondering;
+		this.timeManager = timeManager;
+	}
+
+	/**
+	 * Returns true after stop or quit. The search should return as soon as
+	 * possible.
+	 */
+	public boolean isStopped() {
+		return stopped;
+	}
+
+	/**
+	 * Returns true until ponderhit if the search was started with ponder.
+	 */
+	public boolean isPondering() {
+		return pondering;
+	}
+
+	/**
+	 * Returns the time manager with the limits of this search.
+	 */
+	public TimeManager getTimeManager() {
+		return timeManager;
+	}
+
+	public ProtocolBestMoveCommand getBestMove() {
+		return bestMove;
+	}
+
+	/**
+	 * Sets the best move so far. It is sent if the search fails to return a
+	 * best move in time.
+	 */
+	public void setBestMove(ProtocolBestMoveCommand bestMove) {
+		if (bestMove == null) throw new IllegalArgumentException();
+
+		this.bestMove = bestMove;
+	}
+
+	void stop() {
+		stopped = true;
+	}
+
+	void ponderHit() {
+		pondering = false;
+	}
+
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi;
+
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.models.GenericColor;
+
+/**
+ * This class computes the time limits of a search.
+ * <p/>
+ * The soft limit is the time a search should aim for, for example by not
+ * starting another iteration after it. The hard limit must never be
+ * exceeded. Both are reduced by the overhead, which is the larger of the
+ * minimum overhead and a moving average of the measured time between the
+ * end of a search and the flush of its best move.
+ * <p/>
+ * {@link #isHardLimitReached(long)} may be called at every node. It reads
+ * the clock only every {@link #POLL_INTERVAL} nodes.
+ */
+public final class TimeManager {
+
+	public static final int POLL_INTERVAL = 1024;
+	public static final int DEFAULT_MOVESTOGO = 20;
+	public static final long DEFAULT_MINIMUM_OVERHEAD = 10;
+
+	// The hard limit is at most this multiple of the soft limit
+	private static final int HARD_FACTOR = 3;
+
+	private volatile int movesToGo = DEFAULT_MOVESTOGO;
+	private volatile long minimumOverhead = DEFAULT_MINIMUM_OVERHEAD;
+
+	// Moving average of the overhead in nanoseconds, weighted 1/8 per sample
+	private volatile long averageOverhead = 0;
+
+	private volatile long startTime = System.nanoTime();
+	private volatile long softLimit = -1;
+	private volatile long hardLimit = -1;
+	private volatile boolean hardLimitReached = false;
+
+	/**
+	 * Sets the number of moves the clock has to last if the GUI sends no
+	 * movestogo.
+	 */
+	public void setMovesToGo(int movesToGo) {
+		if (movesToGo < 1) throw new IllegalArgumentException();
+
+		this.movesToGo = movesToGo;
+	}
+
+	/**
+	 * Sets the overhead in milliseconds that is always reserved, for the
+	 * part of the round trip outside of the engine.
+	 */
+	public void setMinimumOverhead(long minimumOverhead) {
+		if (minimumOverhead < 0) throw new IllegalArgumentException();
+
+		this.minimumOverhead = minimumOverhead;
+	}
+
+	/**
+	 * Returns the reserved overhead in milliseconds.
+	 */
+	public long getOverhead() {
+		return Math.max(minimumOverhead, averageOverhead / 1000000);
+	}
+
+	/**
+	 * Adds a measured overhead in nanoseconds to the moving average.
+	 */
+	public void addOverhead(long overhead) {
+		if (overhead < 0) throw new IllegalArgumentException();
+
+		averageOverhead += (overhead - averageOverhead) / 8;
+	}
+
+	/**
+	 * Starts the timer and computes the limits. The active color is the side
+	 * to move; without it only the move time is used.
+	 */
+	public void start(EngineStartCalculatingCommand command, GenericColor activeColor) {
+		if (command == null) throw new IllegalArgumentException();
+
+		long soft = -1;
+		long hard = -1;
+		if (!command.getInfinite()) {
+			long overhead = getOverhead();
+			if (command.hasMoveTime()) {
+				soft = Math.max(command.getMoveTimeValue() - overhead, 0);
+				hard = soft;
+			} else if (activeColor != null && command.hasClock(activeColor)) {
+				long available = Math.max(command.getClockValue(activeColor) - overhead, 0);
+				long increment = command.hasClockIncrement(activeColor) ? Math.max(command.getClockIncrementValue(activeColor), 0) : 0;
+				int moves = command.hasMovesToGo() ? Math.max(command.getMovesToGoValue(), 1) : movesToGo;
+
+				// Keep a reserve unless this is the last move before the time control
+				long maximum = moves == 1 ? available : available / 2;
+				soft = Math.min(available / moves + increment, maximum);
+				hard = Math.min(soft * HARD_FACTOR, maximum);
+			}
+		}
+
+		softLimit = soft;
+		hardLimit = hard;
+		restart();
+	}
+
+	/**
+	 * Restarts the timer with the same limits, for example on ponderhit.
+	 */
+	public void restart() {
+		hardLimitReached = false;
+		startTime = System.nanoTime();
+	}
+
+	/**
+	 * Returns the soft limit in milliseconds, or -1 if there is none.
+	 */
+	public long getSoftLimit() {
+		return softLimit;
+	}
+
+	/**
+	 * Returns the hard limit in milliseconds, or -1 if there is none.
+	 */
+	public long getHardLimit() {
+		return hardLimit;
+	}
+
+	/**
+	 * Returns the elapsed time in milliseconds since the start.
+	 */
+	public long getElapsedTime() {
+		return (System.nanoTime() - startTime) / 1000000;
+	}
+
+	public boolean isSoftLimitReached() {
+		long limit = softLimit;
+
+		return limit >= 0 && getElapsedTime() >= limit;
+	}
+
+	public boolean isHardLimitReached() {
+		if (!hardLimitReached) {
+			long limit = hardLimit;
+			if (limit >= 0 && getElapsedTime() >= limit) {
+				hardLimitReached = true;
+			}
+		}
+
+		return hardLimitReached;
+	}
+
+	/**
+	 * Returns whether the hard limit is reached. The node count is the
+	 * number of nodes searched by the calling thread; the clock is only read
+	 * if it is a multiple of {@link #POLL_INTERVAL}.
+	 */
+	public boolean isHardLimitReached(long nodes) {
+		if ((nodes & (POLL_INTERVAL - 1)) != 0) {
+			return hardLimitReached;
+		}
+
+		return isHardLimitReached();
+	}
+
+}
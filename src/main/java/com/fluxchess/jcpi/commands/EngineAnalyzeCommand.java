@@ -25,12 +25,34 @@ public class EngineAnalyzeCommand implements IEngineCommand {
 	public final GenericBoard board;
 	public final List<GenericMove> moves;
 
+	/**
+	 * True if this command extends the previous analyze command. In that case
+	 * board is the same instance as before and the first sharedMoves moves are
+	 * the moves of the previous command, so an engine that still holds that
+	 * position only has to make the remaining moves.
+	 */
+	public final boolean continuation;
+	public final int sharedMoves;
+
 	public EngineAnalyzeCommand(GenericBoard board, List<GenericMove> moves) {
 		if (board == null) throw new IllegalArgumentException();
 		if (moves == null) throw new IllegalArgumentException();
 
 		this.board = board;
 		this.moves = moves;
+		this.continuation = false;
+		this.sharedMoves = 0;
+	}
+
+	public EngineAnalyzeCommand(GenericBoard board, List<GenericMove> moves, int sharedMoves) {
+		if (board == null) throw new IllegalArgumentException();
+		if (moves == null) throw new IllegalArgumentException();
+		if (sharedMoves < 0 || sharedMoves > moves.size()) throw new IllegalArgumentException();
+
+		this.board = board;
+		this.moves = moves;
+		this.continuation = true;
+		this.sharedMoves = sharedMoves;
 	}
 
 	public void accept(IEngine engine) {
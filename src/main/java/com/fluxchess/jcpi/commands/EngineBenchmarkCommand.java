@@ -0,0 +1,56 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.commands;
+
+/**
+ * This is the bench command. It runs perft on a fixed set of positions to
+ * measure the speed of the machine.
+ */
+public class EngineBenchmarkCommand implements ICalculationCommand {
+
+	public static final int DEFAULT_DEPTH = 4;
+	public static final int DEFAULT_THREADS = 1;
+
+	public final int depth;
+	public final int threads;
+
+	private volatile boolean stopRequested = false;
+
+	public EngineBenchmarkCommand() {
+		this(DEFAULT_DEPTH, DEFAULT_THREADS);
+	}
+
+	public EngineBenchmarkCommand(int depth, int threads) {
+		if (depth < 0) throw new IllegalArgumentException();
+		if (threads < 1) throw new IllegalArgumentException();
+
+		this.depth = depth;
+		this.threads = threads;
+	}
+
+	public void accept(IEngine engine) {
+		engine.receive(this);
+	}
+
+	public boolean isStopRequested() {
+		return this.stopRequested;
+	}
+
+	public void requestStop() {
+		this.stopRequested = true;
+	}
+
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.commands;
+
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericMove;
+
+import java.util.List;
+
+/**
+ * This is the go perft command. It counts the leaf nodes of the position
+ * after the moves up to the depth.
+ */
+public class EnginePerftCommand implements ICalculationCommand {
+
+	public final GenericBoard board;
+	public final List<GenericMove> moves;
+	public final int depth;
+
+	private volatile boolean stopRequested = false;
+
+	public EnginePerftCommand(GenericBoard board, List<GenericMove> moves, int depth) {
+		if (board == null) throw new IllegalArgumentException();
+		if (moves == null) throw new IllegalArgumentException();
+		if (depth < 0) throw new IllegalArgumentException();
+
+		this.board = board;
+		this.moves = moves;
+		this.depth = depth;
+	}
+
+	public void accept(IEngine engine) {
+		engine.receive(this);
+	}
+
+	public boolean isStopRequested() {
+		return this.stopRequested;
+	}
+
+	public void requestStop() {
+		this.stopRequested = true;
+	}
+
+}
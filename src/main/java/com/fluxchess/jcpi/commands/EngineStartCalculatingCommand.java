@@ -18,27 +18,74 @@ package com.fluxchess.jcpi.commands;
 import com.fluxchess.jcpi.models.GenericColor;
 import com.fluxchess.jcpi.models.GenericMove;
 
-import java.util.EnumMap;
 import java.util.List;
-import java.util.Map;
 
-public class EngineStartCalculatingCommand implements IEngineCommand {
+/**
+ * This is the go command. The limits are stored as primitives with a
+ * presence bit each. The boxed getters return null for an absent limit,
+ * the has and value methods do not allocate. {@link #reset()} clears the
+ * command, so it can be reused.
+ * <p/>
+ * The command is also the token of its calculation, see
+ * {@link ICalculationCommand}.
+ */
+public class EngineStartCalculatingCommand implements ICalculationCommand {
+
+	private static final int WHITE_CLOCK = 1;
+	private static final int BLACK_CLOCK = 1 << 1;
+	private static final int WHITE_CLOCK_INCREMENT = 1 << 2;
+	private static final int BLACK_CLOCK_INCREMENT = 1 << 3;
+	private static final int MOVESTOGO = 1 << 4;
+	private static final int DEPTH = 1 << 5;
+	private static final int NODES = 1 << 6;
+	private static final int MATE = 1 << 7;
+	private static final int MOVETIME = 1 << 8;
+
+	private int present = 0;
 
 	private List<GenericMove> searchMoveList = null;
 	private boolean ponder = false;
-	private final Map<GenericColor, Long> clock = new EnumMap<GenericColor, Long>(GenericColor.class);
-	private final Map<GenericColor, Long> clockIncrement = new EnumMap<GenericColor, Long>(GenericColor.class);
-	private Integer movestogo = null;
-	private Integer depth = null;
-	private Long nodes = null;
-	private Integer mate = null;
-	private Long movetime = null;
+	private long whiteClock = 0;
+	private long blackClock = 0;
+	private long whiteClockIncrement = 0;
+	private long blackClockIncrement = 0;
+	private int movestogo = 0;
+	private int depth = 0;
+	private long nodes = 0;
+	private int mate = 0;
+	private long movetime = 0;
 	private boolean infinite = false;
 
+	private volatile boolean stopRequested = false;
+
 	public void accept(IEngine engine) {
 		engine.receive(this);
 	}
 
+	/**
+	 * Clears all values.
+	 */
+	public void reset() {
+		present = 0;
+		searchMoveList = null;
+		ponder = false;
+		infinite = false;
+		stopRequested = false;
+	}
+
+	/**
+	 * Returns whether stop was received for this calculation. An engine
+	 * should poll this instead of resetting its own stop flag at the start of
+	 * the calculation, because the stop may have been delivered before.
+	 */
+	public boolean isStopRequested() {
+		return this.stopRequested;
+	}
+
+	public void requestStop() {
+		this.stopRequested = true;
+	}
+
 	public List<GenericMove> getSearchMoveList() {
 		return this.searchMoveList;
 	}
@@ -58,75 +105,196 @@ public class EngineStartCalculatingCommand implements IEngineCommand {
 	}
 
 	public Long getClock(GenericColor side) {
-		return this.clock.get(side);
+		return hasClock(side) ? Long.valueOf(getClockValue(side)) : null;
 	}
 
-	public void setClock(GenericColor side, Long time) {
+	public boolean hasClock(GenericColor side) {
 		if (side == null) throw new IllegalArgumentException();
+
+		return (present & (side == GenericColor.WHITE ? WHITE_CLOCK : BLACK_CLOCK)) != 0;
+	}
+
+	public long getClockValue(GenericColor side) {
+		if (!hasClock(side)) throw new IllegalStateException();
+
+		return side == GenericColor.WHITE ? this.whiteClock : this.blackClock;
+	}
+
+	public void setClock(GenericColor side, Long time) {
 		if (time == null) throw new IllegalArgumentException();
 
-		this.clock.put(side, time);
+		setClock(side, time.longValue());
+	}
+
+	public void setClock(GenericColor side, long time) {
+		if (side == null) throw new IllegalArgumentException();
+
+		if (side == GenericColor.WHITE) {
+			this.whiteClock = time;
+			present |= WHITE_CLOCK;
+		} else {
+			this.blackClock = time;
+			present |= BLACK_CLOCK;
+		}
 	}
 
 	public Long getClockIncrement(GenericColor side) {
-		return this.clockIncrement.get(side);
+		return hasClockIncrement(side) ? Long.valueOf(getClockIncrementValue(side)) : null;
 	}
 
-	public void setClockIncrement(GenericColor side, Long time) {
+	public boolean hasClockIncrement(GenericColor side) {
 		if (side == null) throw new IllegalArgumentException();
+
+		return (present & (side == GenericColor.WHITE ? WHITE_CLOCK_INCREMENT : BLACK_CLOCK_INCREMENT)) != 0;
+	}
+
+	public long getClockIncrementValue(GenericColor side) {
+		if (!hasClockIncrement(side)) throw new IllegalStateException();
+
+		return side == GenericColor.WHITE ? this.whiteClockIncrement : this.blackClockIncrement;
+	}
+
+	public void setClockIncrement(GenericColor side, Long time) {
 		if (time == null) throw new IllegalArgumentException();
 
-		this.clockIncrement.put(side, time);
+		setClockIncrement(side, time.longValue());
+	}
+
+	public void setClockIncrement(GenericColor side, long time) {
+		if (side == null) throw new IllegalArgumentException();
+
+		if (side == GenericColor.WHITE) {
+			this.whiteClockIncrement = time;
+			present |= WHITE_CLOCK_INCREMENT;
+		} else {
+			this.blackClockIncrement = time;
+			present |= BLACK_CLOCK_INCREMENT;
+		}
 	}
 
 	public Integer getMovesToGo() {
+		return hasMovesToGo() ? Integer.valueOf(this.movestogo) : null;
+	}
+
+	public boolean hasMovesToGo() {
+		return (present & MOVESTOGO) != 0;
+	}
+
+	public int getMovesToGoValue() {
+		if (!hasMovesToGo()) throw new IllegalStateException();
+
 		return this.movestogo;
 	}
 
 	public void setMovesToGo(Integer movesToGo) {
 		if (movesToGo == null) throw new IllegalArgumentException();
 
+		setMovesToGo(movesToGo.intValue());
+	}
+
+	public void setMovesToGo(int movesToGo) {
 		this.movestogo = movesToGo;
+		present |= MOVESTOGO;
 	}
 
 	public Integer getDepth() {
+		return hasDepth() ? Integer.valueOf(this.depth) : null;
+	}
+
+	public boolean hasDepth() {
+		return (present & DEPTH) != 0;
+	}
+
+	public int getDepthValue() {
+		if (!hasDepth()) throw new IllegalStateException();
+
 		return this.depth;
 	}
 
 	public void setDepth(Integer depth) {
 		if (depth == null) throw new IllegalArgumentException();
 
+		setDepth(depth.intValue());
+	}
+
+	public void setDepth(int depth) {
 		this.depth = depth;
+		present |= DEPTH;
 	}
 
 	public Long getNodes() {
+		return hasNodes() ? Long.valueOf(this.nodes) : null;
+	}
+
+	public boolean hasNodes() {
+		return (present & NODES) != 0;
+	}
+
+	public long getNodesValue() {
+		if (!hasNodes()) throw new IllegalStateException();
+
 		return this.nodes;
 	}
 
 	public void setNodes(Long nodes) {
 		if (nodes == null) throw new IllegalArgumentException();
 
+		setNodes(nodes.longValue());
+	}
+
+	public void setNodes(long nodes) {
 		this.nodes = nodes;
+		present |= NODES;
 	}
 
 	public Integer getMate() {
+		return hasMate() ? Integer.valueOf(this.mate) : null;
+	}
+
+	public boolean hasMate() {
+		return (present & MATE) != 0;
+	}
+
+	public int getMateValue() {
+		if (!hasMate()) throw new IllegalStateException();
+
 		return this.mate;
 	}
 
 	public void setMate(Integer mate) {
 		if (mate == null) throw new IllegalArgumentException();
 
+		setMate(mate.intValue());
+	}
+
+	public void setMate(int mate) {
 		this.mate = mate;
+		present |= MATE;
 	}
 
 	public Long getMoveTime() {
+		return hasMoveTime() ? Long.valueOf(this.movetime) : null;
+	}
+
+	public boolean hasMoveTime() {
+		return (present & MOVETIME) != 0;
+	}
+
+	public long getMoveTimeValue() {
+		if (!hasMoveTime()) throw new IllegalStateException();
+
 		return this.movetime;
 	}
 
 	public void setMoveTime(Long moveTime) {
 		if (moveTime == null) throw new IllegalArgumentException();
 
+		setMoveTime(moveTime.longValue());
+	}
+
+	public void setMoveTime(long moveTime) {
 		this.movetime = moveTime;
+		present |= MOVETIME;
 	}
 
 	public boolean getInfinite() {
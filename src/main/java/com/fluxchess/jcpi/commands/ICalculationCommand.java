@@ -0,0 +1,30 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.commands;
+
+/**
+ * This is a command that calculates until it is done or stopped. The
+ * command is the token of its calculation. A stop is recorded with
+ * {@link #requestStop()} before it is passed to the engine, even if it
+ * arrives before the calculation has started.
+ */
+public interface ICalculationCommand extends IEngineCommand {
+
+	boolean isStopRequested();
+
+	void requestStop();
+
+}
@@ -37,4 +37,16 @@ public interface IEngine {
 
 	void receive(EnginePonderHitCommand command);
 
+	/**
+	 * Ignored by default.
+	 */
+	default void receive(EnginePerftCommand command) {
+	}
+
+	/**
+	 * Ignored by default.
+	 */
+	default void receive(EngineBenchmarkCommand command) {
+	}
+
 }
@@ -18,23 +18,45 @@ package com.fluxchess.jcpi.commands;
 import com.fluxchess.jcpi.models.GenericMove;
 import com.fluxchess.jcpi.models.GenericScore;
 
+import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * This is the info command. The numbers are stored as primitives with a
+ * presence bit each. The boxed getters return null for an absent value,
+ * the has and value methods do not allocate. An engine can reuse one
+ * instance for a whole search by calling {@link #reset()} before setting
+ * the values of the next line. Therefore every protocol handler that keeps
+ * a command after send must keep a {@link #copy()}.
+ */
 public class ProtocolInformationCommand implements IProtocolCommand {
 
-	private Integer depth = null;
-	private Integer maxDepth = null;
-	private Long time = null;
-	private Long nodes = null;
+	private static final int DEPTH = 1;
+	private static final int MAXDEPTH = 1 << 1;
+	private static final int TIME = 1 << 2;
+	private static final int NODES = 1 << 3;
+	private static final int PVNUMBER = 1 << 4;
+	private static final int CENTIPAWNS = 1 << 5;
+	private static final int MATE = 1 << 6;
+	private static final int CURRENTMOVENUMBER = 1 << 7;
+	private static final int HASH = 1 << 8;
+	private static final int NPS = 1 << 9;
+
+	private int present = 0;
+
+	private int depth = 0;
+	private int maxDepth = 0;
+	private long time = 0;
+	private long nodes = 0;
 	private List<GenericMove> moveList = null;
-	private Integer pvNumber = null;
-	private Integer centipawns = null;
-	private Integer mate = null;
+	private int pvNumber = 0;
+	private int centipawns = 0;
+	private int mate = 0;
 	private GenericScore value = null;
 	private GenericMove currentMove = null;
-	private Integer currentMoveNumber = null;
-	private Integer hash = null;
-	private Long nps = null;
+	private int currentMoveNumber = 0;
+	private int hash = 0;
+	private long nps = 0;
 	private String string = null;
 	private List<GenericMove> refutationList = null;
 
@@ -42,36 +64,119 @@ public class ProtocolInformationCommand implements IProtocolCommand {
 		protocol.send(this);
 	}
 
+	/**
+	 * Clears all values.
+	 */
+	public void reset() {
+		present = 0;
+		moveList = null;
+		value = null;
+		currentMove = null;
+		string = null;
+		refutationList = null;
+	}
+
+	/**
+	 * Returns a copy with copies of the move lists, which keeps its values
+	 * when this instance is reset and reused.
+	 */
+	public ProtocolInformationCommand copy() {
+		ProtocolInformationCommand copy = new ProtocolInformationCommand();
+
+		copy.present = this.present;
+		copy.depth = this.depth;
+		copy.maxDepth = this.maxDepth;
+		copy.time = this.time;
+		copy.nodes = this.nodes;
+		copy.moveList = this.moveList != null ? new ArrayList<GenericMove>(this.moveList) : null;
+		copy.pvNumber = this.pvNumber;
+		copy.centipawns = this.centipawns;
+		copy.mate = this.mate;
+		copy.value = this.value;
+		copy.currentMove = this.currentMove;
+		copy.currentMoveNumber = this.currentMoveNumber;
+		copy.hash = this.hash;
+		copy.nps = this.nps;
+		copy.string = this.string;
+		copy.refutationList = this.refutationList != null ? new ArrayList<GenericMove>(this.refutationList) : null;
+
+		return copy;
+	}
+
 	public Integer getDepth() {
+		return hasDepth() ? Integer.valueOf(this.depth) : null;
+	}
+
+	public boolean hasDepth() {
+		return (present & DEPTH) != 0;
+	}
+
+	public int getDepthValue() {
+		if (!hasDepth()) throw new IllegalStateException();
+
 		return this.depth;
 	}
 
 	public void setDepth(int depth) {
 		this.depth = depth;
+		present |= DEPTH;
 	}
 
 	public Integer getMaxDepth() {
+		return hasMaxDepth() ? Integer.valueOf(this.maxDepth) : null;
+	}
+
+	public boolean hasMaxDepth() {
+		return (present & MAXDEPTH) != 0;
+	}
+
+	public int getMaxDepthValue() {
+		if (!hasMaxDepth()) throw new IllegalStateException();
+
 		return this.maxDepth;
 	}
 
 	public void setMaxDepth(int maxDepth) {
 		this.maxDepth = maxDepth;
+		present |= MAXDEPTH;
 	}
 
 	public Long getTime() {
+		return hasTime() ? Long.valueOf(this.time) : null;
+	}
+
+	public boolean hasTime() {
+		return (present & TIME) != 0;
+	}
+
+	public long getTimeValue() {
+		if (!hasTime()) throw new IllegalStateException();
+
 		return this.time;
 	}
 
 	public void setTime(long time) {
 		this.time = time;
+		present |= TIME;
 	}
 
 	public Long getNodes() {
+		return hasNodes() ? Long.valueOf(this.nodes) : null;
+	}
+
+	public boolean hasNodes() {
+		return (present & NODES) != 0;
+	}
+
+	public long getNodesValue() {
+		if (!hasNodes()) throw new IllegalStateException();
+
 		return this.nodes;
 	}
 
 	public void setNodes(long nodes) {
 		this.nodes = nodes;
+		present |= NODES;
 	}
 
 	public List<GenericMove> getMoveList() {
@@ -85,27 +190,60 @@ public class ProtocolInformationCommand implements IProtocolCommand {
 	}
 
 	public Integer getPvNumber() {
+		return hasPvNumber() ? Integer.valueOf(this.pvNumber) : null;
+	}
+
+	public boolean hasPvNumber() {
+		return (present & PVNUMBER) != 0;
+	}
+
+	public int getPvNumberValue() {
+		if (!hasPvNumber()) throw new IllegalStateException();
+
 		return this.pvNumber;
 	}
 
 	public void setPvNumber(int pvNumber) {
 		this.pvNumber = pvNumber;
+		present |= PVNUMBER;
 	}
 
 	public Integer getCentipawns() {
+		return hasCentipawns() ? Integer.valueOf(this.centipawns) : null;
+	}
+
+	public boolean hasCentipawns() {
+		return (present & CENTIPAWNS) != 0;
+	}
+
+	public int getCentipawnsValue() {
+		if (!hasCentipawns()) throw new IllegalStateException();
+
 		return this.centipawns;
 	}
 
 	public void setCentipawns(int centipawns) {
 		this.centipawns = centipawns;
+		present |= CENTIPAWNS;
 	}
 
 	public Integer getMate() {
+		return hasMate() ? Integer.valueOf(this.mate) : null;
+	}
+
+	public boolean hasMate() {
+		return (present & MATE) != 0;
+	}
+
+	public int getMateValue() {
+		if (!hasMate()) throw new IllegalStateException();
+
 		return this.mate;
 	}
 
 	public void setMate(int mate) {
 		this.mate = mate;
+		present |= MATE;
 	}
 
 	public GenericScore getValue() {
@@ -129,27 +267,60 @@ public class ProtocolInformationCommand implements IProtocolCommand {
 	}
 
 	public Integer getCurrentMoveNumber() {
+		return hasCurrentMoveNumber() ? Integer.valueOf(this.currentMoveNumber) : null;
+	}
+
+	public boolean hasCurrentMoveNumber() {
+		return (present & CURRENTMOVENUMBER) != 0;
+	}
+
+	public int getCurrentMoveNumberValue() {
+		if (!hasCurrentMoveNumber()) throw new IllegalStateException();
+
 		return this.currentMoveNumber;
 	}
 
 	public void setCurrentMoveNumber(int currentMoveNumber) {
 		this.currentMoveNumber = currentMoveNumber;
+		present |= CURRENTMOVENUMBER;
 	}
 
 	public Integer getHash() {
+		return hasHash() ? Integer.valueOf(this.hash) : null;
+	}
+
+	public boolean hasHash() {
+		return (present & HASH) != 0;
+	}
+
+	public int getHashValue() {
+		if (!hasHash()) throw new IllegalStateException();
+
 		return this.hash;
 	}
 
 	public void setHash(int hash) {
 		this.hash = hash;
+		present |= HASH;
 	}
 
 	public Long getNps() {
+		return hasNps() ? Long.valueOf(this.nps) : null;
+	}
+
+	public boolean hasNps() {
+		return (present & NPS) != 0;
+	}
+
+	public long getNpsValue() {
+		if (!hasNps()) throw new IllegalStateException();
+
 		return this.nps;
 	}
 
 	public void setNps(long nps) {
 		this.nps = nps;
+		present |= NPS;
 	}
 
 	public String getString() {
@@ -19,6 +19,8 @@ import com.fluxchess.jcpi.models.GenericBoard;
 import com.fluxchess.jcpi.models.GenericColor;
 import com.fluxchess.jcpi.models.GenericFile;
 import com.fluxchess.jcpi.models.GenericPiece;
+import com.fluxchess.jcpi.models.GenericPosition;
+import com.fluxchess.jcpi.models.PackedBoard;
 
 final class Board {
 
@@ -59,11 +61,6 @@ final class Board {
 	}
 
 	public Board(GenericBoard genericBoard) {
-		// Initialize stack
-		for (int i = 0; i < stack.length; ++i) {
-			stack[i] = new State();
-		}
-
 		// Initialize board
 		for (int square : Square.values) {
 			board[square] = Piece.NOPIECE;
@@ -104,6 +101,81 @@ final class Board {
 		setFullMoveNumber(genericBoard.getFullMoveNumber());
 	}
 
+	public Board(PackedBoard packedBoard) {
+		// Initialize board
+		for (int square : Square.values) {
+			board[square] = Piece.NOPIECE;
+		}
+		for (long squares = packedBoard.occupancy; squares != 0; squares &= squares - 1) {
+			int square = Square.toX88Square(Long.numberOfTrailingZeros(squares));
+			put(Piece.valueOf(packedBoard.getPiece(Square.toGenericPosition(square))), square);
+		}
+
+		// Initialize castling
+		for (int color : Color.values) {
+			for (int castling : Castling.values) {
+				GenericFile genericFile = packedBoard.getCastling(Color.toGenericColor(color), Castling.toGenericCastling(castling));
+				if (genericFile != null) {
+					this.castling[color][castling] = File.valueOf(genericFile);
+				} else {
+					this.castling[color][castling] = File.NOFILE;
+				}
+			}
+		}
+
+		// Initialize en passant
+		if (packedBoard.getEnPassant() != null) {
+			enPassant = Square.valueOf(packedBoard.getEnPassant());
+		}
+
+		// Initialize active color
+		activeColor = Color.valueOf(packedBoard.getActiveColor());
+
+		// Initialize half move clock
+		halfMoveClock = packedBoard.getHalfMoveClock();
+
+		// Initialize the full move number
+		setFullMoveNumber(packedBoard.getFullMoveNumber());
+	}
+
+	public PackedBoard toPackedBoard() {
+		long occupancy = 0;
+		long lowPieces = 0;
+		long highPieces = 0;
+
+		// Pack pieces in ascending square order
+		int count = 0;
+		for (int square : Square.values) {
+			int piece = board[square];
+			if (piece != Piece.NOPIECE) {
+				if (count == PackedBoard.MAXPIECES) throw new IllegalStateException();
+
+				occupancy |= Square.toBitboard(square);
+				if (count < 16) {
+					lowPieces |= (long) Piece.ordinal(piece) << (count * 4);
+				} else {
+					highPieces |= (long) Piece.ordinal(piece) << ((count - 16) * 4);
+				}
+				++count;
+			}
+		}
+
+		// Pack castling
+		int[] castlingFiles = new int[Color.values.length * Castling.values.length];
+		for (int color : Color.values) {
+			for (int castling : Castling.values) {
+				castlingFiles[color * Castling.values.length + castling] = this.castling[color][castling];
+			}
+		}
+
+		// Pack en passant
+		int enPassantSquare = enPassant == Square.NOSQUARE ? GenericPosition.values().length : Square.toBitSquare(enPassant);
+
+		long state = PackedBoard.encodeState(Color.toGenericColor(activeColor), castlingFiles, enPassantSquare, halfMoveClock, getFullMoveNumber());
+
+		return new PackedBoard(occupancy, lowPieces, highPieces, state);
+	}
+
 	public GenericBoard toGenericBoard() {
 		GenericBoard genericBoard = new GenericBoard();
 
@@ -220,7 +292,12 @@ final class Board {
 	}
 
 	public void makeMove(int move) {
+		// Allocate stack entries on demand
 		State entry = stack[stackSize];
+		if (entry == null) {
+			entry = new State();
+			stack[stackSize] = entry;
+		}
 
 		// Get variables
 		int type = Move.getType(move);
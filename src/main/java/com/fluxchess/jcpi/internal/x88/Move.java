@@ -65,6 +65,9 @@ final class Move {
 	private static final int PROMOTION_SHIFT = 27;
 	private static final int PROMOTION_MASK = PieceType.MASK << PROMOTION_SHIFT;
 
+	// GenericMove is immutable, so instances are created once and shared
+	private static final GenericMove[] genericMoves = new GenericMove[64 * 64 * (PieceType.NOCHESSMAN + 1)];
+
 	private Move() {
 	}
 
@@ -96,18 +99,29 @@ final class Move {
 		int type = getType(move);
 		int originSquare = getOriginSquare(move);
 		int targetSquare = getTargetSquare(move);
-
-		switch (type) {
-			case Type.NORMAL:
-			case Type.PAWNDOUBLE:
-			case Type.ENPASSANT:
-			case Type.CASTLING:
-				return new GenericMove(Square.toGenericPosition(originSquare), Square.toGenericPosition(targetSquare));
-			case Type.PAWNPROMOTION:
-				return new GenericMove(Square.toGenericPosition(originSquare), Square.toGenericPosition(targetSquare), PieceType.toGenericChessman(getPromotion(move)));
-			default:
-				throw new IllegalArgumentException();
+		int promotion = type == Type.PAWNPROMOTION ? getPromotion(move) : PieceType.NOCHESSMAN;
+
+		int index = ((Square.toBitSquare(originSquare) << 6) | Square.toBitSquare(targetSquare)) * (PieceType.NOCHESSMAN + 1) + promotion;
+		GenericMove genericMove = genericMoves[index];
+		if (genericMove == null) {
+			switch (type) {
+				case Type.NORMAL:
+				case Type.PAWNDOUBLE:
+				case Type.ENPASSANT:
+				case Type.CASTLING:
+					genericMove = new GenericMove(Square.toGenericPosition(originSquare), Square.toGenericPosition(targetSquare));
+					break;
+				case Type.PAWNPROMOTION:
+					genericMove = new GenericMove(Square.toGenericPosition(originSquare), Square.toGenericPosition(targetSquare), PieceType.toGenericChessman(promotion));
+					break;
+				default:
+					throw new IllegalArgumentException();
+			}
+
+			genericMoves[index] = genericMove;
 		}
+
+		return genericMove;
 	}
 
 	public static int getType(int move) {
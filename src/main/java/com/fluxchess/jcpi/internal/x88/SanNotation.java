@@ -0,0 +1,275 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.internal.x88;
+
+import com.fluxchess.jcpi.models.IllegalNotationException;
+
+/**
+ * This class parses and formats moves in standard algebraic notation. Moves
+ * are always resolved against a list of legal moves, so the notation is
+ * never interpreted without the position.
+ */
+final class SanNotation {
+
+	public static final int NOCHECK = 0;
+	public static final int CHECK = 1;
+	public static final int MATE = 2;
+
+	private static final char[] pieceTypeNotation = {
+			'P', 'N', 'B', 'R', 'Q', 'K'
+	};
+
+	private SanNotation() {
+	}
+
+	/**
+	 * Parses the notation between start and end and returns the matching move
+	 * of the legal move list.
+	 */
+	public static int parse(MoveList list, CharSequence notation, int start, int end) throws IllegalNotationException {
+		assert notation != null;
+
+		// Strip check, mate and annotation suffixes
+		while (end > start && isSuffix(notation.charAt(end - 1))) {
+			--end;
+		}
+		if (end - start < 2) {
+			throw new IllegalNotationException(notation.toString());
+		}
+
+		// Castling
+		int castlingFile = parseCastling(notation, start, end);
+		if (castlingFile != File.NOFILE) {
+			for (int i = 0; i < list.size; ++i) {
+				int move = list.moves[i];
+				if (Move.getType(move) == Move.Type.CASTLING && Square.getFile(Move.getTargetSquare(move)) == castlingFile) {
+					return move;
+				}
+			}
+
+			throw new IllegalNotationException(notation.toString());
+		}
+
+		// Piece type
+		int pieceType = PieceType.PAWN;
+		int index = indexOf(notation.charAt(start));
+		if (index != PieceType.NOCHESSMAN) {
+			pieceType = index;
+			++start;
+		}
+
+		// Promotion
+		int promotion = PieceType.NOCHESSMAN;
+		if (end - start > 2) {
+			char c = notation.charAt(end - 1);
+			boolean separated = notation.charAt(end - 2) == '=';
+			index = indexOf(separated ? Character.toUpperCase(c) : c);
+			if (index > PieceType.PAWN && index < PieceType.KING) {
+				promotion = index;
+				end -= separated ? 2 : 1;
+			}
+		}
+
+		// Target square
+		if (end - start < 2) {
+			throw new IllegalNotationException(notation.toString());
+		}
+		int targetFile = toFile(notation.charAt(end - 2));
+		int targetRank = toRank(notation.charAt(end - 1));
+		if (targetFile == File.NOFILE || targetRank == Rank.NORANK) {
+			throw new IllegalNotationException(notation.toString());
+		}
+		int targetSquare = targetRank * 16 + targetFile;
+		end -= 2;
+
+		// Disambiguation and capture markers
+		int originFile = File.NOFILE;
+		int originRank = Rank.NORANK;
+		for (int i = start; i < end; ++i) {
+			char c = notation.charAt(i);
+			if (toFile(c) != File.NOFILE) {
+				originFile = toFile(c);
+			} else if (toRank(c) != Rank.NORANK) {
+				originRank = toRank(c);
+			} else if (c != 'x' && c != ':' && c != '-') {
+				throw new IllegalNotationException(notation.toString());
+			}
+		}
+
+		int result = 0;
+		int count = 0;
+		for (int i = 0; i < list.size; ++i) {
+			int move = list.moves[i];
+			int originSquare = Move.getOriginSquare(move);
+			if (Move.getTargetSquare(move) == targetSquare
+					&& Piece.getChessman(Move.getOriginPiece(move)) == pieceType
+					&& Move.getPromotion(move) == promotion
+					&& (originFile == File.NOFILE || Square.getFile(originSquare) == originFile)
+					&& (originRank == Rank.NORANK || Square.getRank(originSquare) == originRank)) {
+				result = move;
+				++count;
+			}
+		}
+
+		if (count == 0) {
+			throw new IllegalNotationException("Illegal move: " + notation);
+		} else if (count > 1) {
+			throw new IllegalNotationException("Ambiguous move: " + notation);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Appends the notation of the given move to the builder. The move must be
+	 * an element of the legal move list of the generator's position.
+	 */
+	public static void append(StringBuilder builder, X88MoveGenerator generator, MoveList list, int move) {
+		assert builder != null;
+		assert generator != null;
+		assert list != null;
+
+		int type = Move.getType(move);
+		int originSquare = Move.getOriginSquare(move);
+		int targetSquare = Move.getTargetSquare(move);
+		int pieceType = Piece.getChessman(Move.getOriginPiece(move));
+
+		if (type == Move.Type.CASTLING) {
+			builder.append(Square.getFile(targetSquare) == File.G ? "O-O" : "O-O-O");
+		} else {
+			boolean capture = type == Move.Type.ENPASSANT || Move.getTargetPiece(move) != Piece.NOPIECE;
+
+			if (pieceType == PieceType.PAWN) {
+				if (capture) {
+					builder.append(toFileNotation(Square.getFile(originSquare)));
+				}
+			} else {
+				builder.append(pieceTypeNotation[pieceType]);
+				appendDisambiguation(builder, list, move);
+			}
+
+			if (capture) {
+				builder.append('x');
+			}
+
+			builder.append(toFileNotation(Square.getFile(targetSquare)));
+			builder.append(toRankNotation(Square.getRank(targetSquare)));
+
+			if (type == Move.Type.PAWNPROMOTION) {
+				builder.append('=');
+				builder.append(pieceTypeNotation[Move.getPromotion(move)]);
+			}
+		}
+
+		switch (generator.getCheckState(move)) {
+			case CHECK:
+				builder.append('+');
+				break;
+			case MATE:
+				builder.append('#');
+				break;
+			default:
+				break;
+		}
+	}
+
+	private static void appendDisambiguation(StringBuilder builder, MoveList list, int move) {
+		int originSquare = Move.getOriginSquare(move);
+		int targetSquare = Move.getTargetSquare(move);
+		int originPiece = Move.getOriginPiece(move);
+
+		boolean ambiguous = false;
+		boolean sameFile = false;
+		boolean sameRank = false;
+		for (int i = 0; i < list.size; ++i) {
+			int other = list.moves[i];
+			int otherOriginSquare = Move.getOriginSquare(other);
+			if (otherOriginSquare != originSquare
+					&& Move.getTargetSquare(other) == targetSquare
+					&& Move.getOriginPiece(other) == originPiece) {
+				ambiguous = true;
+				if (Square.getFile(otherOriginSquare) == Square.getFile(originSquare)) {
+					sameFile = true;
+				}
+				if (Square.getRank(otherOriginSquare) == Square.getRank(originSquare)) {
+					sameRank = true;
+				}
+			}
+		}
+
+		if (ambiguous) {
+			if (!sameFile) {
+				builder.append(toFileNotation(Square.getFile(originSquare)));
+			} else if (!sameRank) {
+				builder.append(toRankNotation(Square.getRank(originSquare)));
+			} else {
+				builder.append(toFileNotation(Square.getFile(originSquare)));
+				builder.append(toRankNotation(Square.getRank(originSquare)));
+			}
+		}
+	}
+
+	private static int parseCastling(CharSequence notation, int start, int end) {
+		int length = end - start;
+		if (length != 3 && length != 5) {
+			return File.NOFILE;
+		}
+
+		char zero = notation.charAt(start);
+		if (zero != 'O' && zero != '0') {
+			return File.NOFILE;
+		}
+		for (int i = start; i < end; ++i) {
+			char c = notation.charAt(i);
+			if ((i - start) % 2 == 0 ? c != zero : c != '-') {
+				return File.NOFILE;
+			}
+		}
+
+		return length == 3 ? File.G : File.C;
+	}
+
+	private static boolean isSuffix(char c) {
+		return c == '+' || c == '#' || c == '!' || c == '?';
+	}
+
+	private static int indexOf(char c) {
+		for (int i = 0; i < pieceTypeNotation.length; ++i) {
+			if (pieceTypeNotation[i] == c) {
+				return i;
+			}
+		}
+
+		return PieceType.NOCHESSMAN;
+	}
+
+	private static int toFile(char c) {
+		return c >= 'a' && c <= 'h' ? c - 'a' : File.NOFILE;
+	}
+
+	private static int toRank(char c) {
+		return c >= '1' && c <= '8' ? c - '1' : Rank.NORANK;
+	}
+
+	private static char toFileNotation(int file) {
+		return (char) ('a' + file);
+	}
+
+	private static char toRankNotation(int rank) {
+		return (char) ('1' + rank);
+	}
+
+}
@@ -17,6 +17,8 @@ package com.fluxchess.jcpi.internal.x88;
 
 import com.fluxchess.jcpi.models.GenericBoard;
 import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+import com.fluxchess.jcpi.models.PackedBoard;
 
 public final class X88MoveGenerator {
 
@@ -51,7 +53,15 @@ public final class X88MoveGenerator {
 	};
 
 	// Board
-	private final Board board;
+	final Board board;
+
+	// Scratch objects reused across move generation
+	private final MoveList tempList = new MoveList();
+	private final MoveList legalList = new MoveList();
+	private final MoveList replyList = new MoveList();
+	private final int[] sortKeys = new int[MoveList.MAXSIZE];
+	private final Attack checkAttack = new Attack();
+	private final Attack scratchAttack = new Attack();
 
 	private static final class Attack {
 
@@ -120,6 +130,12 @@ public final class X88MoveGenerator {
 		board = new Board(genericBoard);
 	}
 
+	public X88MoveGenerator(PackedBoard packedBoard) {
+		if (packedBoard == null) throw new IllegalArgumentException();
+
+		board = new Board(packedBoard);
+	}
+
 	X88MoveGenerator(Board board) {
 		if (board == null) throw new IllegalArgumentException();
 
@@ -140,13 +156,20 @@ public final class X88MoveGenerator {
 	MoveList getMoves() {
 		MoveList list = new MoveList();
 
-		Attack attack = new Attack();
-		getAttack(attack, Square.toX88Square(Long.numberOfTrailingZeros(board.kings[board.activeColor])), Color.opposite(board.activeColor), false);
+		getMoves(list);
+
+		return list;
+	}
+
+	void getMoves(MoveList list) {
+		list.size = 0;
 
-		if (attack.count > 0) {
-			generateEvasion(list, attack);
+		getAttack(checkAttack, Square.toX88Square(Long.numberOfTrailingZeros(board.kings[board.activeColor])), Color.opposite(board.activeColor), false);
+
+		if (checkAttack.count > 0) {
+			generateEvasion(list, checkAttack);
 		} else {
-			MoveList tempList = new MoveList();
+			tempList.size = 0;
 
 			generateMoves(tempList);
 
@@ -157,8 +180,171 @@ public final class X88MoveGenerator {
 				}
 			}
 		}
+	}
 
-		return list;
+	boolean isCheck() {
+		return isAttacked(Square.toX88Square(Long.numberOfTrailingZeros(board.kings[board.activeColor])), Color.opposite(board.activeColor));
+	}
+
+	/**
+	 * Returns whether the given move gives check or mate. The result is one of
+	 * {@link SanNotation#NOCHECK}, {@link SanNotation#CHECK} and
+	 * {@link SanNotation#MATE}. Mate is only tested if the move gives check.
+	 */
+	int getCheckState(int move) {
+		board.makeMove(move);
+
+		int checkState = SanNotation.NOCHECK;
+		if (isCheck()) {
+			getMoves(replyList);
+			checkState = replyList.size > 0 ? SanNotation.CHECK : SanNotation.MATE;
+		}
+
+		board.undoMove(move);
+
+		return checkState;
+	}
+
+	public GenericMove parseSan(CharSequence notation) throws IllegalNotationException {
+		if (notation == null) throw new IllegalArgumentException();
+
+		getMoves(legalList);
+
+		return Move.toGenericMove(SanNotation.parse(legalList, notation, 0, notation.length()));
+	}
+
+	public String toSan(GenericMove genericMove) {
+		if (genericMove == null) throw new IllegalArgumentException();
+
+		getMoves(legalList);
+
+		StringBuilder builder = new StringBuilder();
+		SanNotation.append(builder, this, legalList, findMove(legalList, genericMove));
+
+		return builder.toString();
+	}
+
+	/**
+	 * Makes the given legal move on the internal board.
+	 */
+	public void makeMove(GenericMove genericMove) {
+		if (genericMove == null) throw new IllegalArgumentException();
+
+		getMoves(legalList);
+
+		board.makeMove(findMove(legalList, genericMove));
+	}
+
+	/**
+	 * Parses the notation against the legal moves and makes the move on the
+	 * internal board.
+	 */
+	public GenericMove makeSanMove(CharSequence notation) throws IllegalNotationException {
+		if (notation == null) throw new IllegalArgumentException();
+
+		getMoves(legalList);
+
+		int move = SanNotation.parse(legalList, notation, 0, notation.length());
+		board.makeMove(move);
+
+		return Move.toGenericMove(move);
+	}
+
+	/**
+	 * Returns the index of the move in the legal moves sorted by origin
+	 * square, target square and promotion. The order depends only on the
+	 * position, not on the generation order.
+	 */
+	public int getMoveIndex(GenericMove genericMove) {
+		if (genericMove == null) throw new IllegalArgumentException();
+
+		getSortedMoves(legalList);
+
+		int key = getSortKey(findMove(legalList, genericMove));
+		for (int i = 0; i < legalList.size; ++i) {
+			if (sortKeys[i] == key) {
+				return i;
+			}
+		}
+
+		throw new IllegalStateException();
+	}
+
+	/**
+	 * Makes the move with the given index in the sorted legal moves.
+	 *
+	 * @see #getMoveIndex(GenericMove)
+	 */
+	public GenericMove makeMove(int index) {
+		getSortedMoves(legalList);
+
+		if (index < 0 || index >= legalList.size) throw new IllegalArgumentException();
+
+		int move = legalList.moves[index];
+		board.makeMove(move);
+
+		return Move.toGenericMove(move);
+	}
+
+	private void getSortedMoves(MoveList list) {
+		getMoves(list);
+
+		// Insertion sort, the lists are short
+		for (int i = 0; i < list.size; ++i) {
+			int move = list.moves[i];
+			int key = getSortKey(move);
+
+			int j = i;
+			while (j > 0 && sortKeys[j - 1] > key) {
+				sortKeys[j] = sortKeys[j - 1];
+				list.moves[j] = list.moves[j - 1];
+				--j;
+			}
+			sortKeys[j] = key;
+			list.moves[j] = move;
+		}
+	}
+
+	private static int getSortKey(int move) {
+		return (Square.toBitSquare(Move.getOriginSquare(move)) << 9)
+				| (Square.toBitSquare(Move.getTargetSquare(move)) << 3)
+				| Move.getPromotion(move);
+	}
+
+	public boolean isCheckmate() {
+		if (!isCheck()) {
+			return false;
+		}
+
+		getMoves(legalList);
+
+		return legalList.size == 0;
+	}
+
+	public GenericBoard toGenericBoard() {
+		return board.toGenericBoard();
+	}
+
+	public PackedBoard toPackedBoard() {
+		return board.toPackedBoard();
+	}
+
+	private static int findMove(MoveList list, GenericMove genericMove) {
+		int originSquare = Square.valueOf(genericMove.from);
+		int targetSquare = Square.valueOf(genericMove.to);
+		int promotion = genericMove.promotion == null ? PieceType.NOCHESSMAN : PieceType.valueOfPromotion(genericMove.promotion);
+
+		for (int i = 0; i < list.size; ++i) {
+			int move = list.moves[i];
+			if (Move.getOriginSquare(move) == originSquare
+					&& Move.getTargetSquare(move) == targetSquare
+					&& Move.getPromotion(move) == promotion) {
+				return move;
+			}
+		}
+
+		// Not a legal move
+		throw new IllegalArgumentException();
 	}
 
 	public long perft(int depth) {
@@ -634,7 +820,7 @@ public final class X88MoveGenerator {
 	}
 
 	private boolean isAttacked(int targetSquare, int attackerColor) {
-		return getAttack(new Attack(), targetSquare, attackerColor, true);
+		return getAttack(scratchAttack, targetSquare, attackerColor, true);
 	}
 
 	private boolean getAttack(Attack attack, int targetSquare, int attackerColor, boolean stop) {
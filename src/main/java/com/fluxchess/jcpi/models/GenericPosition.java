@@ -98,10 +98,12 @@ public enum GenericPosition {
 
 	public final GenericFile file;
 	public final GenericRank rank;
+	private final String notation;
 
 	private GenericPosition(GenericFile file, GenericRank rank) {
 		this.file = file;
 		this.rank = rank;
+		this.notation = file.toString() + rank.toString();
 	}
 
 	public static GenericPosition valueOf(GenericFile file, GenericRank rank) {
@@ -112,7 +114,7 @@ public enum GenericPosition {
 	}
 
 	public String toString() {
-		return this.file.toString() + this.rank.toString();
+		return notation;
 	}
 
 }
@@ -0,0 +1,287 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.models;
+
+/**
+ * This class represents an immutable board packed into four long values.
+ * <p/>
+ * occupancy: one bit per occupied square (bit 0 = a1, bit 63 = h8)<br/>
+ * lowPieces: 4-bit piece codes of the first 16 occupied squares<br/>
+ * highPieces: 4-bit piece codes of the next 16 occupied squares<br/>
+ * state: the remaining board state encoded by the following bits<br/>
+ * <br/>
+ * <code>Bit 0</code>: the active color<br/>
+ * <code>Bit 1 - 16</code>: the castling files (4 bits per color and castling)<br/>
+ * <code>Bit 17 - 23</code>: the en passant square<br/>
+ * <code>Bit 24 - 39</code>: the half move clock<br/>
+ * <code>Bit 40 - 63</code>: the full move number<br/>
+ * <br/>
+ * Piece codes are the ordinals of {@link GenericPiece} and are assigned in
+ * ascending square order.
+ */
+public final class PackedBoard {
+
+	public static final int MAXPIECES = 32;
+
+	private static final int PIECE_BITS = 4;
+	private static final long PIECE_MASK = 0xF;
+	private static final int PIECES_PER_LONG = 16;
+
+	private static final int NOFILE = 8;
+	private static final int NOSQUARE = 64;
+
+	private static final int ACTIVECOLOR_SHIFT = 0;
+	private static final long ACTIVECOLOR_MASK = 0x1L;
+	private static final int CASTLING_SHIFT = 1;
+	private static final long CASTLING_MASK = 0xFL;
+	private static final int ENPASSANT_SHIFT = 17;
+	private static final long ENPASSANT_MASK = 0x7FL;
+	private static final int HALFMOVECLOCK_SHIFT = 24;
+	private static final long HALFMOVECLOCK_MASK = 0xFFFFL;
+	private static final int FULLMOVENUMBER_SHIFT = 40;
+	private static final long FULLMOVENUMBER_MASK = 0xFFFFFFL;
+
+	private static final GenericPiece[] pieces = GenericPiece.values();
+	private static final GenericPosition[] positions = GenericPosition.values();
+
+	public final long occupancy;
+	public final long lowPieces;
+	public final long highPieces;
+	public final long state;
+
+	public PackedBoard(GenericBoard board) {
+		if (board == null) throw new IllegalArgumentException();
+
+		long occupancy = 0;
+		long lowPieces = 0;
+		long highPieces = 0;
+
+		int count = 0;
+		for (GenericPosition position : positions) {
+			GenericPiece piece = board.getPiece(position);
+			if (piece != null) {
+				if (count == MAXPIECES) throw new IllegalArgumentException();
+
+				occupancy |= 1L << position.ordinal();
+				if (count < PIECES_PER_LONG) {
+					lowPieces |= (long) piece.ordinal() << (count * PIECE_BITS);
+				} else {
+					highPieces |= (long) piece.ordinal() << ((count - PIECES_PER_LONG) * PIECE_BITS);
+				}
+				++count;
+			}
+		}
+
+		int[] castling = new int[GenericColor.values().length * GenericCastling.values().length];
+		for (GenericColor color : GenericColor.values()) {
+			for (GenericCastling genericCastling : GenericCastling.values()) {
+				GenericFile file = board.getCastling(color, genericCastling);
+				castling[castlingIndex(color, genericCastling)] = file == null ? NOFILE : file.ordinal();
+			}
+		}
+
+		GenericPosition enPassant = board.getEnPassant();
+
+		this.occupancy = occupancy;
+		this.lowPieces = lowPieces;
+		this.highPieces = highPieces;
+		this.state = encodeState(
+				board.getActiveColor(), castling,
+				enPassant == null ? NOSQUARE : enPassant.ordinal(),
+				board.getHalfMoveClock(), board.getFullMoveNumber()
+		);
+	}
+
+	public PackedBoard(long occupancy, long lowPieces, long highPieces, long state) {
+		int count = Long.bitCount(occupancy);
+		if (count > MAXPIECES) throw new IllegalArgumentException();
+
+		// Validate piece codes and unused piece slots
+		for (int i = 0; i < MAXPIECES; ++i) {
+			int code = (int) (((i < PIECES_PER_LONG ? lowPieces : highPieces) >>> ((i % PIECES_PER_LONG) * PIECE_BITS)) & PIECE_MASK);
+			if (i < count) {
+				if (code >= pieces.length) throw new IllegalArgumentException();
+			} else {
+				if (code != 0) throw new IllegalArgumentException();
+			}
+		}
+
+		// Validate state
+		for (int i = 0; i < GenericColor.values().length * GenericCastling.values().length; ++i) {
+			if (((state >>> (CASTLING_SHIFT + i * PIECE_BITS)) & CASTLING_MASK) > NOFILE) throw new IllegalArgumentException();
+		}
+		if (((state >>> ENPASSANT_SHIFT) & ENPASSANT_MASK) > NOSQUARE) throw new IllegalArgumentException();
+		if (((state >>> FULLMOVENUMBER_SHIFT) & FULLMOVENUMBER_MASK) < 1) throw new IllegalArgumentException();
+
+		this.occupancy = occupancy;
+		this.lowPieces = lowPieces;
+		this.highPieces = highPieces;
+		this.state = state;
+	}
+
+	/**
+	 * Encodes the state word from its components. The castling array holds a
+	 * file ordinal or 8 for no castling, indexed by color ordinal * 2 +
+	 * castling ordinal. The en passant square is a position ordinal or 64.
+	 */
+	public static long encodeState(GenericColor activeColor, int[] castling, int enPassant, int halfMoveClock, int fullMoveNumber) {
+		if (activeColor == null) throw new IllegalArgumentException();
+		if (castling == null || castling.length != GenericColor.values().length * GenericCastling.values().length) throw new IllegalArgumentException();
+		if (enPassant < 0 || enPassant > NOSQUARE) throw new IllegalArgumentException();
+		if (halfMoveClock < 0 || halfMoveClock > HALFMOVECLOCK_MASK) throw new IllegalArgumentException();
+		if (fullMoveNumber < 1 || fullMoveNumber > FULLMOVENUMBER_MASK) throw new IllegalArgumentException();
+
+		long state = 0;
+
+		state |= (long) activeColor.ordinal() << ACTIVECOLOR_SHIFT;
+		for (int i = 0; i < castling.length; ++i) {
+			if (castling[i] < 0 || castling[i] > NOFILE) throw new IllegalArgumentException();
+
+			state |= (long) castling[i] << (CASTLING_SHIFT + i * PIECE_BITS);
+		}
+		state |= (long) enPassant << ENPASSANT_SHIFT;
+		state |= (long) halfMoveClock << HALFMOVECLOCK_SHIFT;
+		state |= (long) fullMoveNumber << FULLMOVENUMBER_SHIFT;
+
+		return state;
+	}
+
+	private static int castlingIndex(GenericColor color, GenericCastling castling) {
+		return color.ordinal() * GenericCastling.values().length + castling.ordinal();
+	}
+
+	public GenericPiece getPiece(GenericPosition position) {
+		if (position == null) throw new IllegalArgumentException();
+
+		long bit = 1L << position.ordinal();
+		if ((occupancy & bit) == 0) {
+			return null;
+		}
+
+		return pieces[getPieceCode(Long.bitCount(occupancy & (bit - 1)))];
+	}
+
+	private int getPieceCode(int index) {
+		if (index < PIECES_PER_LONG) {
+			return (int) ((lowPieces >>> (index * PIECE_BITS)) & PIECE_MASK);
+		} else {
+			return (int) ((highPieces >>> ((index - PIECES_PER_LONG) * PIECE_BITS)) & PIECE_MASK);
+		}
+	}
+
+	public GenericFile getCastling(GenericColor color, GenericCastling castling) {
+		if (color == null) throw new IllegalArgumentException();
+		if (castling == null) throw new IllegalArgumentException();
+
+		int file = (int) ((state >>> (CASTLING_SHIFT + castlingIndex(color, castling) * PIECE_BITS)) & CASTLING_MASK);
+
+		return file == NOFILE ? null : GenericFile.values()[file];
+	}
+
+	public GenericPosition getEnPassant() {
+		int square = (int) ((state >>> ENPASSANT_SHIFT) & ENPASSANT_MASK);
+
+		return square == NOSQUARE ? null : positions[square];
+	}
+
+	public GenericColor getActiveColor() {
+		return GenericColor.values()[(int) ((state >>> ACTIVECOLOR_SHIFT) & ACTIVECOLOR_MASK)];
+	}
+
+	public int getHalfMoveClock() {
+		return (int) ((state >>> HALFMOVECLOCK_SHIFT) & HALFMOVECLOCK_MASK);
+	}
+
+	public int getFullMoveNumber() {
+		return (int) ((state >>> FULLMOVENUMBER_SHIFT) & FULLMOVENUMBER_MASK);
+	}
+
+	/**
+	 * Returns this board with another full move number, for example to
+	 * compare positions regardless of the move number.
+	 */
+	public PackedBoard withFullMoveNumber(int fullMoveNumber) {
+		if (fullMoveNumber < 1 || fullMoveNumber > FULLMOVENUMBER_MASK) throw new IllegalArgumentException();
+
+		long newState = (state & ~(FULLMOVENUMBER_MASK << FULLMOVENUMBER_SHIFT)) | ((long) fullMoveNumber << FULLMOVENUMBER_SHIFT);
+
+		return newState == state ? this : new PackedBoard(occupancy, lowPieces, highPieces, newState);
+	}
+
+	public GenericBoard toGenericBoard() {
+		GenericBoard board = new GenericBoard();
+
+		// Set board
+		int index = 0;
+		for (long squares = occupancy; squares != 0; squares &= squares - 1) {
+			board.setPiece(pieces[getPieceCode(index++)], positions[Long.numberOfTrailingZeros(squares)]);
+		}
+
+		// Set castling
+		for (GenericColor color : GenericColor.values()) {
+			for (GenericCastling castling : GenericCastling.values()) {
+				GenericFile file = getCastling(color, castling);
+				if (file != null) {
+					board.setCastling(color, castling, file);
+				}
+			}
+		}
+
+		// Set en passant
+		GenericPosition enPassant = getEnPassant();
+		if (enPassant != null) {
+			board.setEnPassant(enPassant);
+		}
+
+		board.setActiveColor(getActiveColor());
+		board.setHalfMoveClock(getHalfMoveClock());
+		board.setFullMoveNumber(getFullMoveNumber());
+
+		return board;
+	}
+
+	@Override
+	public String toString() {
+		return toGenericBoard().toString();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (!(obj instanceof PackedBoard)) {
+			return false;
+		}
+		if (this == obj) {
+			return true;
+		}
+		PackedBoard rhs = (PackedBoard) obj;
+
+		return this.occupancy == rhs.occupancy
+				&& this.lowPieces == rhs.lowPieces
+				&& this.highPieces == rhs.highPieces
+				&& this.state == rhs.state;
+	}
+
+	@Override
+	public int hashCode() {
+		long hash = occupancy * 0x9E3779B97F4A7C15L;
+		hash = (hash ^ lowPieces) * 0x9E3779B97F4A7C15L;
+		hash = (hash ^ highPieces) * 0x9E3779B97F4A7C15L;
+		hash = (hash ^ state) * 0x9E3779B97F4A7C15L;
+
+		return (int) (hash ^ (hash >>> 32));
+	}
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.protocols;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * This class reads lines from a byte stream without charset decoding. An
+ * ASCII line is returned as a view on a reused buffer, which is only valid
+ * until the next call to {@link #readLine()}. Lines with other bytes are
+ * decoded as UTF-8 into a new string.
+ */
+final class AsciiLineReader {
+
+	private final InputStream input;
+
+	private final byte[] buffer = new byte[8192];
+	private int position = 0;
+	private int limit = 0;
+
+	private final Line line = new Line();
+
+	AsciiLineReader(InputStream input) {
+		if (input == null) throw new IllegalArgumentException();
+
+		this.input = input;
+	}
+
+	/**
+	 * Returns the next line without the line terminator, or null at the end
+	 * of the stream.
+	 */
+	CharSequence readLine() throws IOException {
+		line.length = 0;
+		boolean ascii = true;
+
+		while (true) {
+			if (position == limit) {
+				limit = input.read(buffer, 0, buffer.length);
+				position = 0;
+
+				if (limit <= 0) {
+					limit = 0;
+					if (line.length == 0) {
+						return null;
+					}
+					break;
+				}
+			}
+
+			byte b = buffer[position++];
+			if (b == '\n') {
+				break;
+			}
+
+			if (line.length == line.bytes.length) {
+				line.bytes = Arrays.copyOf(line.bytes, line.bytes.length * 2);
+			}
+			line.bytes[line.length++] = b;
+			ascii &= b >= 0;
+		}
+
+		if (line.length > 0 && line.bytes[line.length - 1] == '\r') {
+			--line.length;
+		}
+
+		if (ascii) {
+			return line;
+		} else {
+			return new String(line.bytes, 0, line.length, StandardCharsets.UTF_8);
+		}
+	}
+
+	private static final class Line implements CharSequence {
+
+		private byte[] bytes = new byte[256];
+		private int length = 0;
+
+		public int length() {
+			return length;
+		}
+
+		public char charAt(int index) {
+			if (index < 0 || index >= length) throw new IndexOutOfBoundsException();
+
+			return (char) bytes[index];
+		}
+
+		public CharSequence subSequence(int start, int end) {
+			if (start < 0 || start > end || end > length) throw new IndexOutOfBoundsException();
+
+			return new String(bytes, start, end - start, StandardCharsets.US_ASCII);
+		}
+
+		@Override
+		public String toString() {
+			return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+		}
+
+	}
+
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.protocols;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * This class decouples protocol output from the consumer. Complete lines
+ * are put on a bounded queue and written by a dedicated thread, so a slow
+ * reader does not stall the thread that sends.
+ * <p/>
+ * If the queue is full, the oldest queued "info" line is dropped to make
+ * room. An "info" line is dropped itself if no queued line can be dropped.
+ * All other lines are never dropped and block the sender until there is
+ * room, so they always keep their order. Once the writer thread fails or
+ * is interrupted, all writes throw an IOException.
+ * <p/>
+ * Wrap the stream in a {@link java.io.PrintStream} to use it with
+ * {@link IOProtocolHandler}. {@link #flush()} does not wait for the writer
+ * thread, {@link #close()} writes all queued lines before it returns.
+ */
+public final class AsyncOutputStream extends OutputStream {
+
+	private static final byte[] INFO = {'i', 'n', 'f', 'o'};
+
+	private final OutputStream output;
+	private final int capacity;
+
+	private final Object lock = new Object();
+	private final ArrayDeque<byte[]> queue = new ArrayDeque<byte[]>();
+	private final Thread writer;
+	private boolean closed = false;
+	private IOException error = null;
+	private long droppedLines = 0;
+
+	// The line being assembled by the sender
+	private byte[] line = new byte[256];
+	private int lineLength = 0;
+
+	public AsyncOutputStream(OutputStream output, int capacity) {
+		if (output == null) throw new IllegalArgumentException();
+		if (capacity < 1) throw new IllegalArgumentException();
+
+		this.output = output;
+		this.capacity = capacity;
+
+		writer = new Thread(new Runnable() {
+			public void run() {
+				drain();
+			}
+		}, "jcpi-output");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public void write(int b) throws IOException {
+		synchronized (lock) {
+			append(b);
+		}
+	}
+
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (b == null) throw new IllegalArgumentException();
+		if (off < 0 || len < 0 || off + len > b.length) throw new IndexOutOfBoundsException();
+
+		synchronized (lock) {
+			for (int i = off; i < off + len; ++i) {
+				append(b[i]);
+			}
+		}
+	}
+
+	/**
+	 * Only reports a previous write error. Lines are passed to the writer
+	 * thread as soon as they are complete, and the writer thread flushes the
+	 * underlying stream whenever the queue runs empty.
+	 */
+	public void flush() throws IOException {
+		synchronized (lock) {
+			checkError();
+		}
+	}
+
+	/**
+	 * Writes all queued lines, including an incomplete last line, and closes
+	 * the underlying stream.
+	 */
+	public void close() throws IOException {
+		synchronized (lock) {
+			if (closed) {
+				return;
+			}
+
+			if (lineLength > 0) {
+				enqueue();
+			}
+			closed = true;
+			lock.notifyAll();
+		}
+
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+
+		synchronized (lock) {
+			checkError();
+		}
+		output.close();
+	}
+
+	/**
+	 * Returns the number of info lines dropped because of backpressure.
+	 */
+	public long getDroppedLines() {
+		synchronized (lock) {
+			return droppedLines;
+		}
+	}
+
+	private void append(int b) throws IOException {
+		checkError();
+		if (closed) throw new IOException("Stream closed");
+
+		if (lineLength == line.length) {
+			line = Arrays.copyOf(line, line.length * 2);
+		}
+		line[lineLength++] = (byte) b;
+
+		if (b == '\n') {
+			enqueue();
+		}
+	}
+
+	private void enqueue() throws IOException {
+		byte[] bytes = Arrays.copyOf(line, lineLength);
+		lineLength = 0;
+
+		while (queue.size() >= capacity) {
+			if (dropInfo()) {
+				break;
+			}
+			if (isInfo(bytes)) {
+				// Nothing to make room for the new info line
+				++droppedLines;
+				return;
+			}
+
+			try {
+				lock.wait();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("Interrupted while waiting for the output queue");
+			}
+			checkError();
+		}
+
+		queue.addLast(bytes);
+		lock.notifyAll();
+	}
+
+	private boolean dropInfo() {
+		for (Iterator<byte[]> iter = queue.iterator(); iter.hasNext(); ) {
+			if (isInfo(iter.next())) {
+				iter.remove();
+				++droppedLines;
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+	private void checkError() throws IOException {
+		if (error != null) {
+			throw error;
+		}
+	}
+
+	private void drain() {
+		try {
+			while (true) {
+				byte[] bytes;
+				boolean last;
+				synchronized (lock) {
+					while (queue.isEmpty() && !closed) {
+						lock.wait();
+					}
+					if (queue.isEmpty()) {
+						return;
+					}
+
+					bytes = queue.pollFirst();
+					last = queue.isEmpty();
+					lock.notifyAll();
+				}
+
+				output.write(bytes);
+				if (last) {
+					output.flush();
+				}
+			}
+		} catch (IOException e) {
+			fail(e);
+		} catch (InterruptedException e) {
+			// Senders would wait for the queue forever
+			fail(new InterruptedIOException("Output writer interrupted"));
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void fail(IOException e) {
+		synchronized (lock) {
+			error = e;
+			queue.clear();
+			lock.notifyAll();
+		}
+	}
+
+	private static boolean isInfo(byte[] bytes) {
+		if (bytes.length < INFO.length) {
+			return false;
+		}
+		for (int i = 0; i < INFO.length; ++i) {
+			if (bytes[i] != INFO[i]) {
+				return false;
+			}
+		}
+
+		return bytes.length == INFO.length || bytes[INFO.length] == ' ' || bytes[INFO.length] == '\r' || bytes[INFO.length] == '\n';
+	}
+
+}
@@ -24,12 +24,18 @@ import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
 import java.io.BufferedReader;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
 
 public final class IOProtocolHandler implements IProtocolHandler {
 
+	// Either a reader and a print stream or a byte level line reader and a
+	// raw byte stream
 	private final BufferedReader input;
 	private final PrintStream output;
+	private final AsciiLineReader asciiInput;
+	private final OutputStream byteOutput;
 	private IProtocolHandler protocol = null;
 
 	public IOProtocolHandler(BufferedReader input, PrintStream output) {
@@ -38,18 +44,32 @@ public final class IOProtocolHandler implements IProtocolHandler {
 
 		this.input = input;
 		this.output = output;
+		this.asciiInput = null;
+		this.byteOutput = null;
+	}
+
+	/**
+	 * Creates a handler that reads and writes bytes directly without charset
+	 * conversion.
+	 */
+	public IOProtocolHandler(InputStream input, OutputStream output) {
+		if (input == null) throw new IllegalArgumentException();
+		if (output == null) throw new IllegalArgumentException();
+
+		this.input = null;
+		this.output = null;
+		this.asciiInput = new AsciiLineReader(input);
+		this.byteOutput = output;
 	}
 
 	@Override
 	public IEngineCommand receive() throws IOException {
 		// Wait for the protocol keyword
 		while (protocol == null) {
-			String line = input.readLine();
+			CharSequence line = input != null ? input.readLine() : asciiInput.readLine();
 			if (line != null) {
-				line = line.trim();
-
-				if (UciProtocol.isProtocolKeyword(line)) {
-					protocol = new UciProtocol(input, output);
+				if (UciProtocol.isProtocolKeyword(line.toString().trim())) {
+					protocol = input != null ? new UciProtocol(input, output) : new UciProtocol(asciiInput, byteOutput);
 				}
 			} else {
 				// Something's wrong with the communication channel
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.protocols;
+
+import com.fluxchess.jcpi.commands.IEngineCommand;
+import com.fluxchess.jcpi.commands.IProtocolCommand;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.commands.ProtocolInitializeAnswerCommand;
+import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class connects an engine to a client in the same JVM. Commands are
+ * passed as objects through lock-free queues without formatting or
+ * parsing text.
+ * <p/>
+ * The engine uses this handler, the client uses {@link #getClient()}. The
+ * client starts the session by sending an
+ * {@link com.fluxchess.jcpi.commands.EngineInitializeRequestCommand} and
+ * ends it with {@link Client#close()}. Commands are passed on as they are,
+ * so neither side must modify a command after sending it. Only information
+ * commands are copied, because an engine may reuse one instance for a
+ * whole search.
+ */
+public final class InProcessProtocolHandler implements IProtocolHandler {
+
+	private final ParkingQueue<IEngineCommand> engineCommands = new ParkingQueue<IEngineCommand>();
+	private final ParkingQueue<IProtocolCommand> protocolCommands = new ParkingQueue<IProtocolCommand>();
+	private final Client client = new Client();
+
+	public Client getClient() {
+		return client;
+	}
+
+	/**
+	 * Returns the next command from the client. Throws an EOFException after
+	 * the client has been closed.
+	 */
+	@Override
+	public IEngineCommand receive() throws IOException {
+		try {
+			IEngineCommand command = engineCommands.take(-1);
+			if (command == null) {
+				throw new EOFException();
+			}
+
+			return command;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException();
+		}
+	}
+
+	@Override
+	public void send(ProtocolInitializeAnswerCommand command) {
+		if (command == null) throw new IllegalArgumentException();
+
+		protocolCommands.add(command);
+	}
+
+	@Override
+	public void send(ProtocolReadyAnswerCommand command) {
+		if (command == null) throw new IllegalArgumentException();
+
+		protocolCommands.add(command);
+	}
+
+	@Override
+	public void send(ProtocolBestMoveCommand command) {
+		if (command == null) throw new IllegalArgumentException();
+
+		protocolCommands.add(command);
+	}
+
+	@Override
+	public void send(ProtocolInformationCommand command) {
+		if (command == null) throw new IllegalArgumentException();
+
+		protocolCommands.add(command.copy());
+	}
+
+	/**
+	 * This is the client side of the handler. Commands from the engine must
+	 * be received by a single thread.
+	 */
+	public final class Client {
+
+		private Client() {
+		}
+
+		public void send(IEngineCommand command) {
+			if (command == null) throw new IllegalArgumentException();
+			if (engineCommands.isClosed()) throw new IllegalStateException();
+
+			engineCommands.add(command);
+		}
+
+		/**
+		 * Returns the next command from the engine, or null if there is none.
+		 */
+		public IProtocolCommand poll() {
+			return protocolCommands.poll();
+		}
+
+		/**
+		 * Waits for the next command from the engine.
+		 */
+		public IProtocolCommand receive() throws InterruptedException {
+			return protocolCommands.take(-1);
+		}
+
+		/**
+		 * Waits for the next command from the engine. Returns null if no
+		 * command arrives within the timeout.
+		 */
+		public IProtocolCommand receive(long timeout, TimeUnit unit) throws InterruptedException {
+			if (timeout < 0) throw new IllegalArgumentException();
+			if (unit == null) throw new IllegalArgumentException();
+
+			return protocolCommands.take(unit.toNanos(timeout));
+		}
+
+		/**
+		 * Closes the session. The engine receives an EOFException after all
+		 * pending commands.
+		 */
+		public void close() {
+			engineCommands.close();
+		}
+
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.protocols;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class is a lock-free queue with many producers and a single
+ * consumer. The consumer parks while the queue is empty and is unparked by
+ * the next producer.
+ */
+final class ParkingQueue<T> {
+
+	private final ConcurrentLinkedQueue<T> queue = new ConcurrentLinkedQueue<T>();
+	private volatile Thread consumer = null;
+	private volatile boolean closed = false;
+
+	void add(T element) {
+		assert element != null;
+
+		queue.add(element);
+		LockSupport.unpark(consumer);
+	}
+
+	T poll() {
+		return queue.poll();
+	}
+
+	/**
+	 * Returns the next element. Waits at most the given time if the timeout
+	 * is not negative. Returns null on timeout, or if the queue is closed and
+	 * empty.
+	 */
+	T take(long timeoutNanos) throws InterruptedException {
+		T element = queue.poll();
+		if (element != null) {
+			return element;
+		}
+
+		long deadline = System.nanoTime() + timeoutNanos;
+		consumer = Thread.currentThread();
+		try {
+			while (true) {
+				// Check again after publishing the consumer to not miss a wake up
+				element = queue.poll();
+				if (element != null || closed) {
+					return element != null ? element : queue.poll();
+				}
+
+				if (timeoutNanos < 0) {
+					LockSupport.park(this);
+				} else {
+					long remaining = deadline - System.nanoTime();
+					if (remaining <= 0) {
+						return null;
+					}
+					LockSupport.parkNanos(this, remaining);
+				}
+
+				if (Thread.interrupted()) {
+					throw new InterruptedException();
+				}
+			}
+		} finally {
+			consumer = null;
+		}
+	}
+
+	void close() {
+		closed = true;
+		LockSupport.unpark(consumer);
+	}
+
+	boolean isClosed() {
+		return closed;
+	}
+
+}
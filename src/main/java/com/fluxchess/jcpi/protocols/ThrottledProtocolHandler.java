@@ -0,0 +1,197 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.protocols;
+
+import com.fluxchess.jcpi.commands.IEngineCommand;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.commands.ProtocolInitializeAnswerCommand;
+import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class limits the number of information lines sent per second.
+ * <p/>
+ * Information commands are kept in slots until the rate allows to send
+ * them. There is one slot for each multipv line, one for the current move
+ * and one for statistics like nodes, nps and hashfull. A newer command
+ * replaces the pending command in its slot. Commands with a string are
+ * sent immediately. A pending command is sent as soon as the rate allows,
+ * even if no further command arrives. All pending commands are sent before
+ * the best move.
+ */
+public final class ThrottledProtocolHandler implements IProtocolHandler {
+
+	private final IProtocolHandler handler;
+	private final long interval;
+	private final long capacity;
+
+	// Token bucket in nanoseconds
+	private long credit;
+	private long lastTime;
+
+	private final TreeMap<Integer, ProtocolInformationCommand> pvSlots = new TreeMap<Integer, ProtocolInformationCommand>();
+	private ProtocolInformationCommand currentMoveSlot = null;
+	private ProtocolInformationCommand statisticsSlot = null;
+
+	// Sends pending commands when the bucket has refilled
+	private ScheduledThreadPoolExecutor timer = null;
+	private boolean flushScheduled = false;
+
+	public ThrottledProtocolHandler(IProtocolHandler handler, int maxLinesPerSecond) {
+		if (handler == null) throw new IllegalArgumentException();
+		if (maxLinesPerSecond < 1) throw new IllegalArgumentException();
+
+		this.handler = handler;
+		this.interval = 1000000000L / maxLinesPerSecond;
+
+		// Allow a burst of one second
+		this.capacity = interval * maxLinesPerSecond;
+		this.credit = capacity;
+		this.lastTime = System.nanoTime();
+	}
+
+	@Override
+	public IEngineCommand receive() throws IOException {
+		return handler.receive();
+	}
+
+	@Override
+	public synchronized void send(ProtocolInitializeAnswerCommand command) {
+		handler.send(command);
+	}
+
+	@Override
+	public synchronized void send(ProtocolReadyAnswerCommand command) {
+		handler.send(command);
+	}
+
+	@Override
+	public synchronized void send(ProtocolBestMoveCommand command) {
+		flush();
+
+		handler.send(command);
+	}
+
+	@Override
+	public synchronized void send(ProtocolInformationCommand command) {
+		if (command == null) throw new IllegalArgumentException();
+
+		if (command.getString() != null) {
+			handler.send(command);
+			return;
+		}
+
+		// The sender may reuse the command while it is pending
+		ProtocolInformationCommand copy = command.copy();
+		if (command.getMoveList() != null) {
+			pvSlots.put(command.hasPvNumber() ? command.getPvNumberValue() : 1, copy);
+		} else if (command.getCurrentMove() != null) {
+			currentMoveSlot = copy;
+		} else {
+			statisticsSlot = copy;
+		}
+
+		sendAllowed();
+	}
+
+	/**
+	 * Sends all pending information commands regardless of the rate.
+	 */
+	public synchronized void flush() {
+		while (sendPending()) {
+			// Continue until all slots are empty
+		}
+	}
+
+	/**
+	 * Sends pending commands as far as the rate allows, and schedules the
+	 * rest for when the bucket has refilled.
+	 */
+	private void sendAllowed() {
+		refill();
+		while (credit >= interval && sendPending()) {
+			credit -= interval;
+		}
+
+		if (!flushScheduled && hasPending()) {
+			if (timer == null) {
+				timer = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+					public Thread newThread(Runnable runnable) {
+						Thread thread = new Thread(runnable, "jcpi-throttle");
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+				timer.setKeepAliveTime(1, TimeUnit.SECONDS);
+				timer.allowCoreThreadTimeOut(true);
+			}
+
+			timer.schedule(new Runnable() {
+				public void run() {
+					synchronized (ThrottledProtocolHandler.this) {
+						flushScheduled = false;
+						sendAllowed();
+					}
+				}
+			}, interval - credit, TimeUnit.NANOSECONDS);
+			flushScheduled = true;
+		}
+	}
+
+	private boolean hasPending() {
+		return !pvSlots.isEmpty() || currentMoveSlot != null || statisticsSlot != null;
+	}
+
+	private void refill() {
+		long currentTime = System.nanoTime();
+		credit = Math.min(capacity, credit + (currentTime - lastTime));
+		lastTime = currentTime;
+	}
+
+	/**
+	 * Sends the command from the first non-empty slot. Returns false if all
+	 * slots are empty.
+	 */
+	private boolean sendPending() {
+		ProtocolInformationCommand command;
+		if (!pvSlots.isEmpty()) {
+			Iterator<Map.Entry<Integer, ProtocolInformationCommand>> iter = pvSlots.entrySet().iterator();
+			command = iter.next().getValue();
+			iter.remove();
+		} else if (currentMoveSlot != null) {
+			command = currentMoveSlot;
+			currentMoveSlot = null;
+		} else if (statisticsSlot != null) {
+			command = statisticsSlot;
+			statisticsSlot = null;
+		} else {
+			return false;
+		}
+
+		handler.send(command);
+
+		return true;
+	}
+
+}
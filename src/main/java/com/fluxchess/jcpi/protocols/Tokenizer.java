@@ -0,0 +1,245 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.protocols;
+
+import com.fluxchess.jcpi.models.GenericChessman;
+import com.fluxchess.jcpi.models.GenericFile;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import com.fluxchess.jcpi.models.GenericRank;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+
+/**
+ * This class splits a command line into whitespace separated tokens in a
+ * single pass. The current token is described by its bounds in the line,
+ * so no string is created unless requested.
+ */
+final class Tokenizer {
+
+	private static final GenericFile[] files = GenericFile.values();
+	private static final GenericRank[] ranks = GenericRank.values();
+
+	private CharSequence line = "";
+	private int position = 0;
+	private int start = 0;
+	private int end = 0;
+
+	void reset(CharSequence line) {
+		assert line != null;
+
+		this.line = line;
+		this.position = 0;
+		this.start = 0;
+		this.end = 0;
+	}
+
+	/**
+	 * Advances to the next token. Returns false if there are no more tokens.
+	 */
+	boolean next() {
+		skipWhitespace();
+
+		if (position == line.length()) {
+			start = end = position;
+			return false;
+		}
+
+		start = position;
+		while (position < line.length() && !isWhitespace(line.charAt(position))) {
+			++position;
+		}
+		end = position;
+
+		return true;
+	}
+
+	/**
+	 * Moves the position to the given index. The next call to {@link #next()}
+	 * starts there.
+	 */
+	void seek(int position) {
+		assert position >= 0 && position <= line.length();
+
+		this.position = position;
+		this.start = this.end = position;
+	}
+
+	/**
+	 * Returns whether the line contains the given text at the offset,
+	 * followed by whitespace or the end of the line.
+	 */
+	boolean regionMatches(int offset, CharSequence text, int textStart, int textEnd) {
+		int length = textEnd - textStart;
+		if (offset + length > line.length()) {
+			return false;
+		}
+		for (int i = 0; i < length; ++i) {
+			if (line.charAt(offset + i) != text.charAt(textStart + i)) {
+				return false;
+			}
+		}
+
+		return offset + length == line.length() || isWhitespace(line.charAt(offset + length));
+	}
+
+	CharSequence getLine() {
+		return line;
+	}
+
+	boolean hasNext() {
+		skipWhitespace();
+
+		return position < line.length();
+	}
+
+	int getStart() {
+		return start;
+	}
+
+	int getEnd() {
+		return end;
+	}
+
+	/**
+	 * Returns the end of the line without trailing whitespace.
+	 */
+	int getTrimmedEnd() {
+		int index = line.length();
+		while (index > 0 && isWhitespace(line.charAt(index - 1))) {
+			--index;
+		}
+
+		return index;
+	}
+
+	boolean tokenEquals(String keyword) {
+		if (end - start != keyword.length()) {
+			return false;
+		}
+		for (int i = 0; i < keyword.length(); ++i) {
+			char c = line.charAt(start + i);
+			char k = keyword.charAt(i);
+			if (c != k && Character.toLowerCase(c) != Character.toLowerCase(k)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	String token() {
+		return substring(start, end);
+	}
+
+	String substring(int start, int end) {
+		return line.subSequence(start, end).toString();
+	}
+
+	void appendToken(StringBuilder builder) {
+		builder.append(line, start, end);
+	}
+
+	long parseLong() throws ParseException {
+		int index = start;
+		boolean negative = false;
+		if (index < end && (line.charAt(index) == '-' || line.charAt(index) == '+')) {
+			negative = line.charAt(index) == '-';
+			++index;
+		}
+		if (index == end) {
+			throw new ParseException("Incorrect number format " + token());
+		}
+
+		// Accumulate negatively to cover Long.MIN_VALUE
+		long result = 0;
+		for (; index < end; ++index) {
+			int digit = line.charAt(index) - '0';
+			if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10) {
+				throw new ParseException("Incorrect number format " + token());
+			}
+			result = result * 10 - digit;
+		}
+
+		if (!negative) {
+			if (result == Long.MIN_VALUE) {
+				throw new ParseException("Incorrect number format " + token());
+			}
+			result = -result;
+		}
+
+		return result;
+	}
+
+	int parseInt() throws ParseException {
+		long result = parseLong();
+		if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE) {
+			throw new ParseException("Incorrect number format " + token());
+		}
+
+		return (int) result;
+	}
+
+	/**
+	 * Parses the token as a move in coordinate notation. Plain notation like
+	 * "e2e4" or "e7e8q" is parsed directly, anything else is passed on to
+	 * {@link GenericMove#GenericMove(String)}.
+	 */
+	GenericMove parseMove() throws IllegalNotationException {
+		int length = end - start;
+		if (length == 4 || length == 5) {
+			int fromFile = toFile(line.charAt(start));
+			int fromRank = toRank(line.charAt(start + 1));
+			int toFile = toFile(line.charAt(start + 2));
+			int toRank = toRank(line.charAt(start + 3));
+			if (fromFile >= 0 && fromRank >= 0 && toFile >= 0 && toRank >= 0) {
+				GenericPosition from = GenericPosition.valueOf(files[fromFile], ranks[fromRank]);
+				GenericPosition to = GenericPosition.valueOf(files[toFile], ranks[toRank]);
+				if (length == 4) {
+					return new GenericMove(from, to);
+				} else if (GenericChessman.isValidPromotion(line.charAt(start + 4))) {
+					return new GenericMove(from, to, GenericChessman.valueOfPromotion(line.charAt(start + 4)));
+				}
+			}
+		}
+
+		return new GenericMove(token());
+	}
+
+	private void skipWhitespace() {
+		while (position < line.length() && isWhitespace(line.charAt(position))) {
+			++position;
+		}
+	}
+
+	private static int toFile(char c) {
+		if (c >= 'a' && c <= 'h') {
+			return c - 'a';
+		} else if (c >= 'A' && c <= 'H') {
+			return c - 'A';
+		} else {
+			return -1;
+		}
+	}
+
+	private static int toRank(char c) {
+		return c >= '1' && c <= '8' ? c - '1' : -1;
+	}
+
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+}
@@ -16,9 +16,11 @@
 package com.fluxchess.jcpi.protocols;
 
 import com.fluxchess.jcpi.commands.EngineAnalyzeCommand;
+import com.fluxchess.jcpi.commands.EngineBenchmarkCommand;
 import com.fluxchess.jcpi.commands.EngineDebugCommand;
 import com.fluxchess.jcpi.commands.EngineInitializeRequestCommand;
 import com.fluxchess.jcpi.commands.EngineNewGameCommand;
+import com.fluxchess.jcpi.commands.EnginePerftCommand;
 import com.fluxchess.jcpi.commands.EnginePonderHitCommand;
 import com.fluxchess.jcpi.commands.EngineQuitCommand;
 import com.fluxchess.jcpi.commands.EngineReadyRequestCommand;
@@ -39,22 +41,43 @@ import com.fluxchess.jcpi.options.AbstractOption;
 import java.io.BufferedReader;
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Queue;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.RandomAccess;
 
 public final class UciProtocol implements IProtocolHandler {
 
+	// Either a reader or a byte level line reader
 	private final BufferedReader input;
+	private final AsciiLineReader asciiInput;
+
+	// Either a print stream or a raw byte stream
 	private final PrintStream output;
+	private final OutputStream byteOutput;
+
+	private final Queue<IEngineCommand> queue = new ArrayDeque<IEngineCommand>();
+
+	// Reused parsing state
+	private final Tokenizer tokenizer = new Tokenizer();
+	private final StringBuilder builder = new StringBuilder();
 
-	private final Queue<IEngineCommand> queue = new LinkedList<IEngineCommand>();
+	// Reused output state, guarded by the send methods
+	private final StringBuilder outputBuilder = new StringBuilder();
+	private final String lineSeparator = System.getProperty("line.separator");
+	private byte[] bytes = new byte[256];
+
+	// The last position command, used to detect commands that only add moves
+	private CharSequence previousLine = null;
+	private int previousStart = 0;
+	private int previousEnd = 0;
+	private EngineAnalyzeCommand previousCommand = null;
 
 	public static boolean isProtocolKeyword(String token) {
 		if (token == null) throw new IllegalArgumentException();
@@ -67,63 +90,63 @@ public final class UciProtocol implements IProtocolHandler {
 		if (output == null) throw new IllegalArgumentException();
 
 		this.input = input;
+		this.asciiInput = null;
 		this.output = output;
+		this.byteOutput = null;
+
+		queue.add(new EngineInitializeRequestCommand());
+	}
+
+	/**
+	 * Creates a protocol that reads and writes bytes directly. UCI is plain
+	 * ASCII, so lines are scanned without charset decoding, and the output
+	 * is flushed once per command.
+	 */
+	public UciProtocol(InputStream input, OutputStream output) {
+		this(new AsciiLineReader(input), output);
+	}
+
+	UciProtocol(AsciiLineReader input, OutputStream output) {
+		if (input == null) throw new IllegalArgumentException();
+		if (output == null) throw new IllegalArgumentException();
+
+		this.input = null;
+		this.asciiInput = input;
+		this.output = null;
+		this.byteOutput = output;
 
 		queue.add(new EngineInitializeRequestCommand());
 	}
 
+	/**
+	 * Creates a protocol without an input. Lines are passed to
+	 * {@link #parse(CharSequence)} by the caller, for example from a
+	 * non-blocking channel. No initialize request is queued, because the
+	 * caller has already seen the protocol keyword.
+	 */
+	public UciProtocol(OutputStream output) {
+		if (output == null) throw new IllegalArgumentException();
+
+		this.input = null;
+		this.asciiInput = null;
+		this.output = null;
+		this.byteOutput = output;
+	}
+
 	public IEngineCommand receive() throws IOException {
 		// Get the next command from the queue
 		IEngineCommand engineCommand = queue.poll();
 		while (engineCommand == null) {
 			// Read from the standard input
-			String line = input.readLine();
-			if (line != null) {
-				try {
-					// Try to parse the command.
-					String[] tokens = line.trim().split("\\s", 2);
-					while (tokens.length > 0) {
-						if (tokens[0].equalsIgnoreCase("debug")) {
-							parseDebugCommand(tokens);
-							break;
-						} else if (tokens[0].equalsIgnoreCase("isready")) {
-							queue.add(new EngineReadyRequestCommand());
-							break;
-						} else if (tokens[0].equalsIgnoreCase("setoption")) {
-							parseSetOptionCommand(tokens);
-							break;
-						} else if (tokens[0].equalsIgnoreCase("register")) {
-							// Do nothing
-							break;
-						} else if (tokens[0].equalsIgnoreCase("ucinewgame")) {
-							queue.add(new EngineNewGameCommand());
-							break;
-						} else if (tokens[0].equalsIgnoreCase("position")) {
-							parsePositionCommand(tokens);
-							break;
-						} else if (tokens[0].equalsIgnoreCase("go")) {
-							parseGoCommand(tokens);
-							break;
-						} else if (tokens[0].equalsIgnoreCase("stop")) {
-							queue.add(new EngineStopCalculatingCommand());
-							break;
-						} else if (tokens[0].equalsIgnoreCase("ponderhit")) {
-							queue.add(new EnginePonderHitCommand());
-							break;
-						} else if (tokens[0].equalsIgnoreCase("quit")) {
-							queue.add(new EngineQuitCommand());
-							break;
-						}
+			CharSequence line = null;
+			if (input != null) {
+				line = input.readLine();
+			} else if (asciiInput != null) {
+				line = asciiInput.readLine();
+			}
 
-						if (tokens.length > 1) {
-							tokens = tokens[1].trim().split("\\s", 2);
-						} else {
-							break;
-						}
-					}
-				} catch (ParseException e) {
-					// Currently ignore errors in token stream
-				}
+			if (line != null) {
+				parseLine(line);
 
 				// Get the next command from the queue
 				engineCommand = queue.poll();
@@ -136,57 +159,119 @@ public final class UciProtocol implements IProtocolHandler {
 		return engineCommand;
 	}
 
-	private void parseDebugCommand(String[] tokens) throws ParseException {
-		if (tokens.length > 1) {
-			String token = tokens[1].trim();
+	/**
+	 * Parses a line read by the caller. Returns the next command, or null if
+	 * the line contains no valid command.
+	 */
+	public IEngineCommand parse(CharSequence line) {
+		if (line == null) throw new IllegalArgumentException();
+
+		parseLine(line);
+
+		return queue.poll();
+	}
 
-			if (token.equalsIgnoreCase("on")) {
+	private void parseLine(CharSequence line) {
+		try {
+			// Try to parse the command. Unknown leading tokens are skipped.
+			tokenizer.reset(line);
+			while (tokenizer.next()) {
+				if (tokenizer.tokenEquals("debug")) {
+					parseDebugCommand();
+					break;
+				} else if (tokenizer.tokenEquals("isready")) {
+					queue.add(new EngineReadyRequestCommand());
+					break;
+				} else if (tokenizer.tokenEquals("setoption")) {
+					parseSetOptionCommand();
+					break;
+				} else if (tokenizer.tokenEquals("register")) {
+					// Do nothing
+					break;
+				} else if (tokenizer.tokenEquals("ucinewgame")) {
+					previousCommand = null;
+					queue.add(new EngineNewGameCommand());
+					break;
+				} else if (tokenizer.tokenEquals("position")) {
+					parsePositionCommand();
+					break;
+				} else if (tokenizer.tokenEquals("go")) {
+					parseGoCommand();
+					break;
+				} else if (tokenizer.tokenEquals("stop")) {
+					queue.add(new EngineStopCalculatingCommand());
+					break;
+				} else if (tokenizer.tokenEquals("ponderhit")) {
+					queue.add(new EnginePonderHitCommand());
+					break;
+				} else if (tokenizer.tokenEquals("quit")) {
+					queue.add(new EngineQuitCommand());
+					break;
+				} else if (tokenizer.tokenEquals("bench")) {
+					parseBenchmarkCommand();
+					break;
+				}
+			}
+		} catch (ParseException e) {
+			// Currently ignore errors in token stream
+		}
+	}
+
+	private void parseDebugCommand() throws ParseException {
+		if (tokenizer.next()) {
+			if (tokenizer.tokenEquals("on") && !tokenizer.hasNext()) {
 				queue.add(new EngineDebugCommand(false, true));
-			} else if (token.equalsIgnoreCase("off")) {
+			} else if (tokenizer.tokenEquals("off") && !tokenizer.hasNext()) {
 				queue.add(new EngineDebugCommand(false, false));
 			} else {
-				throw new ParseException("Error in debug command: unknown parameter " + token);
+				throw new ParseException("Error in debug command: unknown parameter " + tokenizer.token());
 			}
 		} else {
 			queue.add(new EngineDebugCommand(true, false));
 		}
 	}
 
-	private void parseSetOptionCommand(String[] tokens) throws ParseException {
-		if (tokens.length > 1) {
-			String token = tokens[1].trim();
-
-			String name = null;
-			String value = null;
+	private void parseSetOptionCommand() throws ParseException {
+		if (tokenizer.hasNext()) {
+			boolean nameFound = false;
+			int nameStart = -1;
+			int nameEnd = -1;
+			int valueStart = -1;
+			boolean first = true;
+
+			while (tokenizer.next()) {
+				// The value keyword must not be the first parameter
+				if (!first && tokenizer.tokenEquals("value")) {
+					if (!tokenizer.next()) {
+						throw new ParseException("Error in setoption command: missing parameter after value");
+					}
 
-			String nameToken = null;
+					valueStart = tokenizer.getStart();
+					break;
+				}
 
-			// Get the value
-			Matcher matcher = Pattern.compile("\\svalue($|\\s)").matcher(token.toLowerCase());
-			if (matcher.find()) {
-				value = token.substring(matcher.end()).trim();
-				if (value.isEmpty()) {
-					throw new ParseException("Error in setoption command: missing parameter after value");
+				if (nameFound) {
+					if (nameStart == -1) {
+						nameStart = tokenizer.getStart();
+					}
+					nameEnd = tokenizer.getEnd();
+				} else if (tokenizer.tokenEquals("name")) {
+					nameFound = true;
 				}
 
-				nameToken = token.substring(0, matcher.start());
-			} else {
-				nameToken = token;
+				first = false;
 			}
 
 			// Get the name
-			matcher = Pattern.compile("(^|\\s)name\\s").matcher(nameToken.toLowerCase());
-			if (matcher.find()) {
-				name = nameToken.substring(matcher.end()).trim();
-				if (name.isEmpty()) {
-					throw new ParseException("Error in setoption command: missing parameter after name");
-				}
-			} else {
+			if (!nameFound) {
 				throw new ParseException("Error in setoption command: missing option name");
+			} else if (nameStart == -1) {
+				throw new ParseException("Error in setoption command: missing parameter after name");
 			}
+			String name = tokenizer.substring(nameStart, nameEnd);
 
-			if (value != null) {
-				queue.add(new EngineSetOptionCommand(name, value));
+			if (valueStart != -1) {
+				queue.add(new EngineSetOptionCommand(name, tokenizer.substring(valueStart, tokenizer.getTrimmedEnd())));
 			} else {
 				queue.add(new EngineSetOptionCommand(name, null));
 			}
@@ -195,319 +280,408 @@ public final class UciProtocol implements IProtocolHandler {
 		}
 	}
 
-	private void parsePositionCommand(String[] tokens) throws ParseException {
-		if (tokens.length > 1) {
-			List<String> list = getTokens(tokens[1]);
-			Iterator<String> iter = list.iterator();
-			String token = iter.next();
-			GenericBoard board = null;
+	private void parsePositionCommand() throws ParseException {
+		int commandStart = tokenizer.getStart();
+
+		// Check whether the command extends the previous one
+		if (previousCommand != null && tokenizer.regionMatches(commandStart, previousLine, previousStart, previousEnd)) {
+			tokenizer.seek(commandStart + previousEnd - previousStart);
+			if (parsePositionContinuation(commandStart)) {
+				return;
+			}
 
-			if (token.equalsIgnoreCase("startpos")) {
+			tokenizer.seek(commandStart);
+			tokenizer.next();
+		}
+		previousCommand = null;
+
+		if (tokenizer.next()) {
+			GenericBoard board;
+
+			if (tokenizer.tokenEquals("startpos")) {
 				board = new GenericBoard(GenericBoard.STANDARDSETUP);
 
-				if (iter.hasNext()) {
-					token = iter.next();
-					if (!token.equalsIgnoreCase("moves")) {
+				if (tokenizer.next()) {
+					if (!tokenizer.tokenEquals("moves")) {
 						// Somethings really wrong here...
-						throw new ParseException("Error in position command: unknown keyword " + token + " after startpos");
-					} else if (!iter.hasNext()) {
+						throw new ParseException("Error in position command: unknown keyword " + tokenizer.token() + " after startpos");
+					} else if (!tokenizer.hasNext()) {
 						throw new ParseException("Error in position command: missing moves");
 					}
 				}
-			} else if (token.equalsIgnoreCase("fen")) {
-				String fen = "";
+			} else if (tokenizer.tokenEquals("fen")) {
+				builder.setLength(0);
 
-				while (iter.hasNext()) {
-					token = iter.next();
-					if (token.equalsIgnoreCase("moves")) {
-						if (!iter.hasNext()) {
+				while (tokenizer.next()) {
+					if (tokenizer.tokenEquals("moves")) {
+						if (!tokenizer.hasNext()) {
 							throw new ParseException("Error in position command: missing moves");
 						}
 
 						break;
 					}
 
-					fen += token + " ";
+					tokenizer.appendToken(builder);
+					builder.append(' ');
 				}
 
+				String fen = builder.toString();
 				try {
 					board = new GenericBoard(fen);
 				} catch (IllegalNotationException e) {
 					throw new ParseException("Error in position command: illegal fen notation " + fen);
 				}
+			} else {
+				throw new ParseException("Error in position command: unknown keyword " + tokenizer.token());
 			}
 
 			List<GenericMove> moveList = new ArrayList<GenericMove>();
 
 			try {
-				while (iter.hasNext()) {
-					token = iter.next();
-
-					GenericMove move = new GenericMove(token);
-					moveList.add(move);
+				while (tokenizer.next()) {
+					moveList.add(tokenizer.parseMove());
 				}
 
-				queue.add(new EngineAnalyzeCommand(board, moveList));
+				addPositionCommand(commandStart, new EngineAnalyzeCommand(board, moveList));
 			} catch (IllegalNotationException e) {
-				throw new ParseException("Error in position command: illegal move notation " + token);
+				throw new ParseException("Error in position command: illegal move notation " + tokenizer.token());
 			}
 		} else {
 			throw new ParseException("Error in position command: no parameters specified");
 		}
 	}
 
-	private void parseGoCommand(String[] tokens) throws ParseException {
-		EngineStartCalculatingCommand engineCommand = new EngineStartCalculatingCommand();
+	/**
+	 * Parses the moves following the text of the previous position command.
+	 * Returns false if the remainder is not a plain move suffix.
+	 */
+	private boolean parsePositionContinuation(int commandStart) throws ParseException {
+		if (previousCommand.moves.isEmpty() && tokenizer.next()) {
+			if (!tokenizer.tokenEquals("moves") || !tokenizer.hasNext()) {
+				return false;
+			}
+		}
 
-		if (tokens.length > 1) {
-			List<String> list = getTokens(tokens[1]);
-			Iterator<String> iter = list.iterator();
-			while (iter.hasNext()) {
-				String token = iter.next();
+		List<GenericMove> moveList = new ArrayList<GenericMove>(previousCommand.moves);
 
-				if (token.equalsIgnoreCase("searchmoves")) {
-					if (iter.hasNext()) {
-						List<GenericMove> searchMoveList = new ArrayList<GenericMove>();
+		try {
+			while (tokenizer.next()) {
+				moveList.add(tokenizer.parseMove());
+			}
+		} catch (IllegalNotationException e) {
+			throw new ParseException("Error in position command: illegal move notation " + tokenizer.token());
+		}
 
-						try {
-							while (iter.hasNext()) {
-								token = iter.next();
+		addPositionCommand(commandStart, new EngineAnalyzeCommand(previousCommand.board, moveList, previousCommand.moves.size()));
 
-								GenericMove move = new GenericMove(token);
-								searchMoveList.add(move);
-							}
+		return true;
+	}
 
-							engineCommand.setSearchMoveList(searchMoveList);
-						} catch (IllegalNotationException e) {
-							throw new ParseException("Error in position command: illegal move notation " + token);
-						}
-					} else {
-						throw new ParseException("Error in go command: missing searchmoves value");
-					}
-				} else if (token.equalsIgnoreCase("ponder")) {
-					engineCommand.setPonder();
-				} else if (token.equalsIgnoreCase("wtime")) {
-					if (iter.hasNext()) {
-						token = iter.next();
-						try {
-							engineCommand.setClock(GenericColor.WHITE, new Long(token));
-						} catch (NumberFormatException e) {
-							throw new ParseException("Error in go command: incorrect number format " + token);
-						}
-					} else {
-						throw new ParseException("Error in go command: missing wtime value");
-					}
-				} else if (token.equalsIgnoreCase("btime")) {
-					if (iter.hasNext()) {
-						token = iter.next();
-						try {
-							engineCommand.setClock(GenericColor.BLACK, new Long(token));
-						} catch (NumberFormatException e) {
-							throw new ParseException("Error in go command: incorrect number format " + token);
-						}
-					} else {
-						throw new ParseException("Error in go command: missing btime value");
-					}
-				} else if (token.equalsIgnoreCase("winc")) {
-					if (iter.hasNext()) {
-						token = iter.next();
-						try {
-							engineCommand.setClockIncrement(GenericColor.WHITE, new Long(token));
-						} catch (NumberFormatException e) {
-							throw new ParseException("Error in go command: incorrect number format " + token);
-						}
-					} else {
-						throw new ParseException("Error in go command: missing winc value");
-					}
-				} else if (token.equalsIgnoreCase("binc")) {
-					if (iter.hasNext()) {
-						token = iter.next();
-						try {
-							engineCommand.setClockIncrement(GenericColor.BLACK, new Long(token));
-						} catch (NumberFormatException e) {
-							throw new ParseException("Error in go command: incorrect number format " + token);
-						}
-					} else {
-						throw new ParseException("Error in go command: missing binc value");
-					}
-				} else if (token.equalsIgnoreCase("movestogo")) {
-					if (iter.hasNext()) {
-						token = iter.next();
-						try {
-							engineCommand.setMovesToGo(new Integer(token));
-						} catch (NumberFormatException e) {
-							throw new ParseException("Error in go command: incorrect number format " + token);
-						}
-					} else {
-						throw new ParseException("Error in go command: missing movestogo value");
-					}
-				} else if (token.equalsIgnoreCase("depth")) {
-					if (iter.hasNext()) {
-						token = iter.next();
-						try {
-							engineCommand.setDepth(new Integer(token));
-						} catch (NumberFormatException e) {
-							throw new ParseException("Error in go command: incorrect number format " + token);
-						}
-					} else {
-						throw new ParseException("Error in go command: missing depth value");
-					}
-				} else if (token.equalsIgnoreCase("nodes")) {
-					if (iter.hasNext()) {
-						token = iter.next();
-						try {
-							engineCommand.setNodes(new Long(token));
-						} catch (NumberFormatException e) {
-							throw new ParseException("Error in go command: incorrect number format " + token);
-						}
-					} else {
-						throw new ParseException("Error in go command: missing nodes value");
-					}
-				} else if (token.equalsIgnoreCase("mate")) {
-					if (iter.hasNext()) {
-						token = iter.next();
-						try {
-							engineCommand.setMate(new Integer(token));
-						} catch (NumberFormatException e) {
-							throw new ParseException("Error in go command: incorrect number format " + token);
-						}
-					} else {
-						throw new ParseException("Error in go command: missing mate value");
-					}
-				} else if (token.equalsIgnoreCase("movetime")) {
-					if (iter.hasNext()) {
-						token = iter.next();
-						try {
-							engineCommand.setMoveTime(new Long(token));
-						} catch (NumberFormatException e) {
-							throw new ParseException("Error in go command: incorrect number format " + token);
+	private void addPositionCommand(int commandStart, EngineAnalyzeCommand command) {
+		// Copy the line, a line from the byte level reader is reused
+		CharSequence line = tokenizer.getLine();
+		previousLine = line instanceof String ? line : line.toString();
+		previousStart = commandStart;
+		previousEnd = tokenizer.getTrimmedEnd();
+		previousCommand = command;
+
+		queue.add(command);
+	}
+
+	private void parseGoCommand() throws ParseException {
+		EngineStartCalculatingCommand engineCommand = new EngineStartCalculatingCommand();
+
+		while (tokenizer.next()) {
+			if (tokenizer.tokenEquals("perft")) {
+				parsePerftCommand();
+				return;
+			} else if (tokenizer.tokenEquals("searchmoves")) {
+				if (tokenizer.hasNext()) {
+					List<GenericMove> searchMoveList = new ArrayList<GenericMove>();
+
+					try {
+						while (tokenizer.next()) {
+							searchMoveList.add(tokenizer.parseMove());
 						}
-					} else {
-						throw new ParseException("Error in go command: missing movetime value");
+
+						engineCommand.setSearchMoveList(searchMoveList);
+					} catch (IllegalNotationException e) {
+						throw new ParseException("Error in position command: illegal move notation " + tokenizer.token());
 					}
-				} else if (token.equalsIgnoreCase("infinite")) {
-					engineCommand.setInfinite();
+				} else {
+					throw new ParseException("Error in go command: missing searchmoves value");
 				}
+			} else if (tokenizer.tokenEquals("ponder")) {
+				engineCommand.setPonder();
+			} else if (tokenizer.tokenEquals("wtime")) {
+				engineCommand.setClock(GenericColor.WHITE, nextLong("wtime"));
+			} else if (tokenizer.tokenEquals("btime")) {
+				engineCommand.setClock(GenericColor.BLACK, nextLong("btime"));
+			} else if (tokenizer.tokenEquals("winc")) {
+				engineCommand.setClockIncrement(GenericColor.WHITE, nextLong("winc"));
+			} else if (tokenizer.tokenEquals("binc")) {
+				engineCommand.setClockIncrement(GenericColor.BLACK, nextLong("binc"));
+			} else if (tokenizer.tokenEquals("movestogo")) {
+				engineCommand.setMovesToGo(nextInt("movestogo"));
+			} else if (tokenizer.tokenEquals("depth")) {
+				engineCommand.setDepth(nextInt("depth"));
+			} else if (tokenizer.tokenEquals("nodes")) {
+				engineCommand.setNodes(nextLong("nodes"));
+			} else if (tokenizer.tokenEquals("mate")) {
+				engineCommand.setMate(nextInt("mate"));
+			} else if (tokenizer.tokenEquals("movetime")) {
+				engineCommand.setMoveTime(nextLong("movetime"));
+			} else if (tokenizer.tokenEquals("infinite")) {
+				engineCommand.setInfinite();
 			}
 		}
 
 		queue.add(engineCommand);
 	}
 
-	public void send(ProtocolInitializeAnswerCommand command) {
-		output.println("id name " + command.name);
-		output.println("id author " + command.author);
+	private void parsePerftCommand() throws ParseException {
+		int depth = nextInt("perft");
+		if (depth < 0) {
+			throw new ParseException("Error in go command: illegal perft value " + depth);
+		}
+
+		// Count from the last position
+		if (previousCommand != null) {
+			queue.add(new EnginePerftCommand(previousCommand.board, previousCommand.moves, depth));
+		} else {
+			queue.add(new EnginePerftCommand(new GenericBoard(GenericBoard.STANDARDSETUP), new ArrayList<GenericMove>(), depth));
+		}
+	}
+
+	private void parseBenchmarkCommand() throws ParseException {
+		int depth = EngineBenchmarkCommand.DEFAULT_DEPTH;
+		int threads = EngineBenchmarkCommand.DEFAULT_THREADS;
+
+		if (tokenizer.next()) {
+			depth = tokenizer.parseInt();
+			if (tokenizer.next()) {
+				threads = tokenizer.parseInt();
+			}
+		}
+		if (depth < 0 || threads < 1) {
+			throw new ParseException("Error in bench command: illegal value");
+		}
+
+		queue.add(new EngineBenchmarkCommand(depth, threads));
+	}
+
+	private long nextLong(String keyword) throws ParseException {
+		if (!tokenizer.next()) {
+			throw new ParseException("Error in go command: missing " + keyword + " value");
+		}
+
+		return tokenizer.parseLong();
+	}
+
+	private int nextInt(String keyword) throws ParseException {
+		if (!tokenizer.next()) {
+			throw new ParseException("Error in go command: missing " + keyword + " value");
+		}
+
+		return tokenizer.parseInt();
+	}
+
+	public synchronized void send(ProtocolInitializeAnswerCommand command) {
+		outputBuilder.setLength(0);
+		outputBuilder.append("id name ").append(command.name);
+		writeLine();
+
+		outputBuilder.setLength(0);
+		outputBuilder.append("id author ").append(command.author);
+		writeLine();
 
 		for (Iterator<AbstractOption> iter = command.optionIterator(); iter.hasNext(); ) {
 			AbstractOption option = iter.next();
-			output.println(option);
+
+			outputBuilder.setLength(0);
+			outputBuilder.append(option);
+			writeLine();
 		}
 
-		output.println("uciok");
+		outputBuilder.setLength(0);
+		outputBuilder.append("uciok");
+		writeLine();
+
+		flush();
 	}
 
-	public void send(ProtocolReadyAnswerCommand command) {
-		output.println("readyok");
+	public synchronized void send(ProtocolReadyAnswerCommand command) {
+		outputBuilder.setLength(0);
+		outputBuilder.append("readyok");
+		writeLine();
+
+		flush();
 	}
 
-	public void send(ProtocolBestMoveCommand command) {
-		String bestMoveCommand = "bestmove ";
+	public synchronized void send(ProtocolBestMoveCommand command) {
+		outputBuilder.setLength(0);
+		outputBuilder.append("bestmove ");
 
 		if (command.bestMove != null) {
-			bestMoveCommand += command.bestMove.toString();
+			appendMove(command.bestMove);
 
 			if (command.ponderMove != null) {
-				bestMoveCommand += " ponder " + command.ponderMove.toString();
+				outputBuilder.append(" ponder ");
+				appendMove(command.ponderMove);
 			}
 		} else {
-			bestMoveCommand += "nomove";
+			outputBuilder.append("nomove");
 		}
 
-		output.println(bestMoveCommand);
+		writeLine();
+
+		flush();
 	}
 
-	public void send(ProtocolInformationCommand command) {
-		String infoCommand = "info";
+	public synchronized void send(ProtocolInformationCommand command) {
+		outputBuilder.setLength(0);
+		outputBuilder.append("info");
 
-		if (command.getPvNumber() != null) {
-			infoCommand += " multipv " + command.getPvNumber().toString();
+		if (command.hasPvNumber()) {
+			outputBuilder.append(" multipv ").append(command.getPvNumberValue());
 		}
-		if (command.getDepth() != null) {
-			infoCommand += " depth " + command.getDepth().toString();
+		if (command.hasDepth()) {
+			outputBuilder.append(" depth ").append(command.getDepthValue());
 
-			if (command.getMaxDepth() != null) {
-				infoCommand += " seldepth " + command.getMaxDepth().toString();
+			if (command.hasMaxDepth()) {
+				outputBuilder.append(" seldepth ").append(command.getMaxDepthValue());
 			}
 		}
-		if (command.getMate() != null) {
-			infoCommand += " score mate " + command.getMate().toString();
-		} else if (command.getCentipawns() != null) {
-			infoCommand += " score cp " + command.getCentipawns().toString();
+		if (command.hasMate()) {
+			outputBuilder.append(" score mate ").append(command.getMateValue());
+		} else if (command.hasCentipawns()) {
+			outputBuilder.append(" score cp ").append(command.getCentipawnsValue());
 		}
 		if (command.getValue() != null) {
 			switch (command.getValue()) {
 				case EXACT:
 					break;
 				case ALPHA:
-					infoCommand += " upperbound";
+					outputBuilder.append(" upperbound");
 					break;
 				case BETA:
-					infoCommand += " lowerbound";
+					outputBuilder.append(" lowerbound");
 					break;
 				default:
 					throw new IllegalStateException();
 			}
 		}
 		if (command.getMoveList() != null) {
-			infoCommand += " pv";
-			for (GenericMove move : command.getMoveList()) {
-				infoCommand += " ";
-				infoCommand += move.toString();
-			}
+			outputBuilder.append(" pv");
+			appendMoves(command.getMoveList());
 		}
 		if (command.getRefutationList() != null) {
-			infoCommand += " refutation";
-			for (GenericMove move : command.getRefutationList()) {
-				infoCommand += " ";
-				infoCommand += move.toString();
-			}
+			outputBuilder.append(" refutation");
+			appendMoves(command.getRefutationList());
 		}
 		if (command.getCurrentMove() != null) {
-			infoCommand += " currmove " + command.getCurrentMove().toString();
+			outputBuilder.append(" currmove ");
+			appendMove(command.getCurrentMove());
 		}
-		if (command.getCurrentMoveNumber() != null) {
-			infoCommand += " currmovenumber " + command.getCurrentMoveNumber().toString();
+		if (command.hasCurrentMoveNumber()) {
+			outputBuilder.append(" currmovenumber ").append(command.getCurrentMoveNumberValue());
 		}
-		if (command.getHash() != null) {
-			infoCommand += " hashfull " + command.getHash().toString();
+		if (command.hasHash()) {
+			outputBuilder.append(" hashfull ").append(command.getHashValue());
 		}
-		if (command.getNps() != null) {
-			infoCommand += " nps " + command.getNps().toString();
+		if (command.hasNps()) {
+			outputBuilder.append(" nps ").append(command.getNpsValue());
 		}
-		if (command.getTime() != null) {
-			infoCommand += " time " + command.getTime().toString();
+		if (command.hasTime()) {
+			outputBuilder.append(" time ").append(command.getTimeValue());
 		}
-		if (command.getNodes() != null) {
-			infoCommand += " nodes " + command.getNodes().toString();
+		if (command.hasNodes()) {
+			outputBuilder.append(" nodes ").append(command.getNodesValue());
 		}
 		if (command.getString() != null) {
-			infoCommand += " string " + command.getString();
+			outputBuilder.append(" string ").append(command.getString());
 		}
 
-		output.println(infoCommand);
+		writeLine();
+
+		flush();
 	}
 
-	private List<String> getTokens(String s) {
-		List<String> tokens = Arrays.asList(s.trim().split("\\s"));
+	private void appendMoves(List<GenericMove> moves) {
+		if (moves instanceof RandomAccess) {
+			for (int i = 0; i < moves.size(); ++i) {
+				outputBuilder.append(' ');
+				appendMove(moves.get(i));
+			}
+		} else {
+			for (GenericMove move : moves) {
+				outputBuilder.append(' ');
+				appendMove(move);
+			}
+		}
+	}
 
-		for (Iterator<String> iter = tokens.iterator(); iter.hasNext(); ) {
-			// Remove empty tokens
-			if (iter.next().length() == 0) {
-				iter.remove();
+	private void appendMove(GenericMove move) {
+		outputBuilder.append(move.from.toString()).append(move.to.toString());
+
+		if (move.promotion != null) {
+			outputBuilder.append(Character.toLowerCase(move.promotion.toCharAlgebraic()));
+		}
+	}
+
+	/**
+	 * Writes the output builder as one line. ASCII text is copied into a
+	 * reused byte buffer, anything else is left to the print stream's
+	 * encoding or encoded as UTF-8.
+	 */
+	private void writeLine() {
+		outputBuilder.append(lineSeparator);
+
+		int length = outputBuilder.length();
+		if (bytes.length < length) {
+			bytes = new byte[Math.max(length, bytes.length * 2)];
+		}
+
+		for (int i = 0; i < length; ++i) {
+			char c = outputBuilder.charAt(i);
+			if (c >= 0x80) {
+				if (output != null) {
+					output.print(outputBuilder.toString());
+				} else {
+					byte[] encoded = outputBuilder.toString().getBytes(StandardCharsets.UTF_8);
+					write(encoded, encoded.length);
+				}
+				return;
 			}
+			bytes[i] = (byte) c;
 		}
 
-		return tokens;
+		write(bytes, length);
+	}
+
+	private void write(byte[] bytes, int length) {
+		if (output != null) {
+			output.write(bytes, 0, length);
+		} else {
+			try {
+				byteOutput.write(bytes, 0, length);
+			} catch (IOException e) {
+				// Like a print stream, ignore errors. A broken channel is
+				// detected on the input side.
+			}
+		}
+	}
+
+	private void flush() {
+		if (output != null) {
+			output.flush();
+		} else {
+			try {
+				byteOutput.flush();
+			} catch (IOException e) {
+				// Like a print stream, ignore errors
+			}
+		}
 	}
 
 }
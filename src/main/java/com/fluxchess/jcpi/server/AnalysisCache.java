@@ -0,0 +1,244 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.server;
+
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.internal.x88.X88MoveGenerator;
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericColor;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.PackedBoard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * This class caches analysis results by position and option values.
+ * <p/>
+ * A result is stored with the limits it was calculated with: depth, nodes
+ * and move time. A stored result answers a request if it was calculated
+ * at least as deep in every limit. A new result replaces a stored result
+ * unless the stored result is deeper. Calculations with clocks, search
+ * moves, mate, ponder or infinite are not cached.
+ * <p/>
+ * The least recently used entry is evicted if the cache is full.
+ */
+public final class AnalysisCache {
+
+	private final int capacity;
+	private final LinkedHashMap<Key, Entry> entries;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+	public AnalysisCache(int capacity) {
+		if (capacity < 1) throw new IllegalArgumentException();
+
+		this.capacity = capacity;
+		this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+	}
+
+	/**
+	 * Returns whether results of the calculation can be cached.
+	 */
+	public static boolean isCacheable(EngineStartCalculatingCommand command) {
+		if (command == null) throw new IllegalArgumentException();
+
+		for (GenericColor color : GenericColor.values()) {
+			if (command.hasClock(color) || command.hasClockIncrement(color)) {
+				return false;
+			}
+		}
+
+		return command.getSearchMoveList() == null
+				&& !command.hasMovesToGo()
+				&& !command.hasMate()
+				&& !command.getPonder()
+				&& !command.getInfinite()
+				&& (command.hasDepth() || command.hasNodes() || command.hasMoveTime());
+	}
+
+	/**
+	 * Returns a stored result at least as deep as the calculation, or null.
+	 */
+	public synchronized Result get(Key key, EngineStartCalculatingCommand command) {
+		if (key == null) throw new IllegalArgumentException();
+		if (command == null) throw new IllegalArgumentException();
+
+		Entry entry = isCacheable(command) ? entries.get(key) : null;
+		if (entry != null && entry.covers(command.getDepth(), command.getNodes(), command.getMoveTime())) {
+			++hits;
+			return entry.result;
+		}
+
+		++misses;
+		return null;
+	}
+
+	/**
+	 * Stores the result of a completed calculation. The information commands
+	 * should be the final lines, for example the last line of each
+	 * multipv slot.
+	 */
+	public synchronized void put(Key key, EngineStartCalculatingCommand command, List<ProtocolInformationCommand> information, ProtocolBestMoveCommand bestMove) {
+		if (key == null) throw new IllegalArgumentException();
+		if (command == null) throw new IllegalArgumentException();
+		if (information == null) throw new IllegalArgumentException();
+		if (bestMove == null) throw new IllegalArgumentException();
+
+		if (!isCacheable(command)) {
+			return;
+		}
+
+		Entry entry = entries.get(key);
+		if (entry != null
+				&& entry.covers(command.getDepth(), command.getNodes(), command.getMoveTime())
+				&& !new Entry(command, null).covers(entry.depth, entry.nodes, entry.moveTime)) {
+			// Keep the deeper result
+			return;
+		}
+
+		entries.put(key, new Entry(command, new Result(information, bestMove)));
+
+		if (entries.size() > capacity) {
+			// The map is in access order, so the first entry is the eldest
+			Iterator<Key> iter = entries.keySet().iterator();
+			iter.next();
+			iter.remove();
+			++evictions;
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+
+		return lookups == 0 ? 0.0 : (double) hits / lookups;
+	}
+
+	/**
+	 * This is the cache key. The position is the board after the moves,
+	 * regardless of the full move number. The options are a caller defined
+	 * string of all option values that change the result.
+	 */
+	public static final class Key {
+
+		private final PackedBoard position;
+		private final String options;
+
+		/**
+		 * Throws an IllegalArgumentException if a move is not legal.
+		 */
+		public Key(GenericBoard board, List<GenericMove> moves, String options) {
+			if (board == null) throw new IllegalArgumentException();
+			if (moves == null) throw new IllegalArgumentException();
+			if (options == null) throw new IllegalArgumentException();
+
+			X88MoveGenerator generator = new X88MoveGenerator(board);
+			for (GenericMove move : moves) {
+				generator.makeMove(move);
+			}
+
+			this.position = generator.toPackedBoard().withFullMoveNumber(1);
+			this.options = options;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			if (this == obj) {
+				return true;
+			}
+			Key rhs = (Key) obj;
+
+			return this.position.equals(rhs.position) && this.options.equals(rhs.options);
+		}
+
+		@Override
+		public int hashCode() {
+			return position.hashCode() * 31 + options.hashCode();
+		}
+
+	}
+
+	public static final class Result {
+
+		public final List<ProtocolInformationCommand> information;
+		public final ProtocolBestMoveCommand bestMove;
+
+		private Result(List<ProtocolInformationCommand> information, ProtocolBestMoveCommand bestMove) {
+			this.information = Collections.unmodifiableList(new ArrayList<ProtocolInformationCommand>(information));
+			this.bestMove = bestMove;
+		}
+
+	}
+
+	private static final class Entry {
+
+		// A null limit means unlimited
+		private final Integer depth;
+		private final Long nodes;
+		private final Long moveTime;
+		private final Result result;
+
+		private Entry(EngineStartCalculatingCommand command, Result result) {
+			this.depth = command.getDepth();
+			this.nodes = command.getNodes();
+			this.moveTime = command.getMoveTime();
+			this.result = result;
+		}
+
+		/**
+		 * Returns whether this entry is at least as deep as the limits.
+		 */
+		private boolean covers(Integer depth, Long nodes, Long moveTime) {
+			return covers(this.depth, depth) && covers(this.nodes, nodes) && covers(this.moveTime, moveTime);
+		}
+
+		private static <T extends Comparable<T>> boolean covers(T stored, T requested) {
+			return stored == null || (requested != null && stored.compareTo(requested) >= 0);
+		}
+
+	}
+
+}
@@ -0,0 +1,568 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.server;
+
+import com.fluxchess.jcpi.commands.EngineAnalyzeCommand;
+import com.fluxchess.jcpi.commands.EngineInitializeRequestCommand;
+import com.fluxchess.jcpi.commands.EngineQuitCommand;
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.commands.EngineStopCalculatingCommand;
+import com.fluxchess.jcpi.commands.IEngine;
+import com.fluxchess.jcpi.commands.IProtocol;
+import com.fluxchess.jcpi.commands.IProtocolCommand;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.commands.ProtocolInitializeAnswerCommand;
+import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class analyses positions over HTTP with a pool of engines.
+ * <p/>
+ * A GET request to /analyse takes the parameters fen (default is the
+ * standard setup), moves (coordinate moves separated by spaces) and at
+ * least one of depth, nodes and movetime. The response streams one JSON
+ * object per line: the information commands of the engine and finally the
+ * best move.
+ * <p/>
+ * The engines are created and initialized once. Requests wait in arrival
+ * order for a free engine. If an engine fails, or sends no best move
+ * within the best move timeout after its calculation has returned, the
+ * response ends with an error object and the engine is replaced.
+ * <p/>
+ * With an {@link AnalysisCache} a request that was already answered at
+ * least as deep is streamed from the cache without an engine.
+ */
+public final class AnalysisServer implements Closeable {
+
+	public static final String PATH = "/analyse";
+
+	private static final long POLL_INTERVAL = 100;
+
+	private final IEngineFactory factory;
+	private final int size;
+
+	private final BlockingQueue<PooledEngine> engines;
+	private final ExecutorService engineExecutor;
+	private final ExecutorService requestExecutor;
+	private HttpServer server = null;
+	private volatile AnalysisCache cache = null;
+	private long bestMoveTimeout = 5000;
+
+	public AnalysisServer(IEngineFactory factory, int size) {
+		if (factory == null) throw new IllegalArgumentException();
+		if (size < 1) throw new IllegalArgumentException();
+
+		this.factory = factory;
+		this.size = size;
+
+		// A fair queue hands out engines in arrival order
+		this.engines = new ArrayBlockingQueue<PooledEngine>(size, true);
+		this.engineExecutor = Executors.newFixedThreadPool(size, new DaemonThreadFactory("jcpi-engine"));
+		this.requestExecutor = Executors.newFixedThreadPool(size * 2, new DaemonThreadFactory("jcpi-request"));
+	}
+
+	public void start(InetSocketAddress address) throws IOException {
+		if (address == null) throw new IllegalArgumentException();
+		if (server != null) throw new IllegalStateException();
+
+		for (int i = 0; i < size; ++i) {
+			engines.add(createEngine());
+		}
+
+		server = HttpServer.create(address, 0);
+		server.createContext(PATH, new HttpHandler() {
+			public void handle(HttpExchange exchange) throws IOException {
+				try {
+					analyse(exchange);
+				} finally {
+					exchange.close();
+				}
+			}
+		});
+		server.setExecutor(requestExecutor);
+		server.start();
+	}
+
+	/**
+	 * Sets the cache for the results. The engines must not have options
+	 * that change their results, because the cache key does not include
+	 * any options.
+	 */
+	public void setCache(AnalysisCache cache) {
+		if (server != null) throw new IllegalStateException();
+
+		this.cache = cache;
+	}
+
+	/**
+	 * Sets how long in milliseconds an engine may stay silent after its
+	 * calculation has returned, before the request fails.
+	 */
+	public void setBestMoveTimeout(long bestMoveTimeout) {
+		if (bestMoveTimeout < 1) throw new IllegalArgumentException();
+		if (server != null) throw new IllegalStateException();
+
+		this.bestMoveTimeout = bestMoveTimeout;
+	}
+
+	public InetSocketAddress getLocalAddress() {
+		if (server == null) throw new IllegalStateException();
+
+		return server.getAddress();
+	}
+
+	/**
+	 * Stops the server and quits all idle engines.
+	 */
+	public void close() {
+		if (server != null) {
+			server.stop(0);
+		}
+		requestExecutor.shutdown();
+
+		PooledEngine engine;
+		while ((engine = engines.poll()) != null) {
+			engine.engine.receive(new EngineQuitCommand());
+		}
+		engineExecutor.shutdown();
+	}
+
+	private void analyse(HttpExchange exchange) throws IOException {
+		if (!exchange.getRequestMethod().equals("GET")) {
+			sendError(exchange, 405, "Method not allowed");
+			return;
+		}
+
+		EngineAnalyzeCommand analyzeCommand;
+		AnalysisCache.Key key = null;
+		EngineStartCalculatingCommand startCommand = new EngineStartCalculatingCommand();
+		try {
+			Map<String, String> parameters = parseQuery(exchange.getRequestURI().getRawQuery());
+
+			String fen = parameters.get("fen");
+			GenericBoard board = fen != null ? new GenericBoard(fen) : new GenericBoard(GenericBoard.STANDARDSETUP);
+
+			List<GenericMove> moves = new ArrayList<GenericMove>();
+			String moveList = parameters.get("moves");
+			if (moveList != null) {
+				for (String move : moveList.trim().split("\\s+")) {
+					if (!move.isEmpty()) {
+						moves.add(new GenericMove(move));
+					}
+				}
+			}
+			analyzeCommand = new EngineAnalyzeCommand(board, moves);
+
+			if (parameters.containsKey("depth")) {
+				startCommand.setDepth(Integer.parseInt(parameters.get("depth")));
+			}
+			if (parameters.containsKey("nodes")) {
+				startCommand.setNodes(Long.parseLong(parameters.get("nodes")));
+			}
+			if (parameters.containsKey("movetime")) {
+				startCommand.setMoveTime(Long.parseLong(parameters.get("movetime")));
+			}
+			if (!startCommand.hasDepth() && !startCommand.hasNodes() && !startCommand.hasMoveTime()) {
+				sendError(exchange, 400, "Missing depth, nodes or movetime");
+				return;
+			}
+
+			if (cache != null) {
+				// Throws if a move is illegal
+				key = new AnalysisCache.Key(board, moves, "");
+			}
+		} catch (IllegalNotationException e) {
+			sendError(exchange, 400, "Illegal notation");
+			return;
+		} catch (IllegalArgumentException e) {
+			// Illegal numbers or escapes
+			sendError(exchange, 400, "Illegal parameter");
+			return;
+		}
+
+		if (key != null) {
+			AnalysisCache.Result result = cache.get(key, startCommand);
+			if (result != null) {
+				sendResult(exchange, result);
+				return;
+			}
+		}
+
+		PooledEngine engine;
+		try {
+			engine = engines.take();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			sendError(exchange, 503, "Interrupted");
+			return;
+		}
+
+		boolean healthy = true;
+		try {
+			healthy = engine.run(exchange, analyzeCommand, startCommand, key);
+		} finally {
+			if (!healthy) {
+				engine = replaceEngine(engine);
+			}
+			engines.add(engine);
+		}
+	}
+
+	private PooledEngine createEngine() {
+		PooledEngine engine = new PooledEngine();
+		engine.engine = factory.create(engine);
+		engine.engine.receive(new EngineInitializeRequestCommand());
+
+		return engine;
+	}
+
+	/**
+	 * Quits a broken engine and creates a new one.
+	 */
+	private PooledEngine replaceEngine(PooledEngine engine) {
+		try {
+			engine.engine.receive(new EngineQuitCommand());
+		} catch (RuntimeException e) {
+			// The engine is broken anyway
+		}
+
+		return createEngine();
+	}
+
+	private static Map<String, String> parseQuery(String query) throws UnsupportedEncodingException {
+		Map<String, String> parameters = new HashMap<String, String>();
+		if (query == null) {
+			return parameters;
+		}
+
+		for (String parameter : query.split("&")) {
+			int index = parameter.indexOf('=');
+			if (index > 0) {
+				parameters.put(
+						URLDecoder.decode(parameter.substring(0, index), "UTF-8"),
+						URLDecoder.decode(parameter.substring(index + 1), "UTF-8"));
+			}
+		}
+
+		return parameters;
+	}
+
+	private static void sendError(HttpExchange exchange, int code, String message) throws IOException {
+		byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+		exchange.sendResponseHeaders(code, bytes.length);
+		exchange.getResponseBody().write(bytes);
+	}
+
+	private static void sendResult(HttpExchange exchange, AnalysisCache.Result result) throws IOException {
+		StringBuilder builder = new StringBuilder();
+		for (ProtocolInformationCommand command : result.information) {
+			appendInformation(builder, command);
+			builder.append('\n');
+		}
+		appendBestMove(builder, result.bestMove);
+		builder.append('\n');
+
+		byte[] bytes = builder.toString().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+		exchange.sendResponseHeaders(200, bytes.length);
+		exchange.getResponseBody().write(bytes);
+	}
+
+	private static void appendInformation(StringBuilder builder, ProtocolInformationCommand command) {
+		builder.append("{\"type\":\"info\"");
+
+		if (command.hasPvNumber()) {
+			builder.append(",\"multipv\":").append(command.getPvNumberValue());
+		}
+		if (command.hasDepth()) {
+			builder.append(",\"depth\":").append(command.getDepthValue());
+		}
+		if (command.hasMaxDepth()) {
+			builder.append(",\"seldepth\":").append(command.getMaxDepthValue());
+		}
+		if (command.hasMate()) {
+			builder.append(",\"mate\":").append(command.getMateValue());
+		} else if (command.hasCentipawns()) {
+			builder.append(",\"cp\":").append(command.getCentipawnsValue());
+		}
+		if (command.getValue() != null) {
+			builder.append(",\"bound\":\"").append(command.getValue().name().toLowerCase()).append('"');
+		}
+		if (command.getMoveList() != null) {
+			builder.append(",\"pv\":");
+			appendMoves(builder, command.getMoveList());
+		}
+		if (command.getRefutationList() != null) {
+			builder.append(",\"refutation\":");
+			appendMoves(builder, command.getRefutationList());
+		}
+		if (command.getCurrentMove() != null) {
+			builder.append(",\"currmove\":\"").append(command.getCurrentMove()).append('"');
+		}
+		if (command.hasCurrentMoveNumber()) {
+			builder.append(",\"currmovenumber\":").append(command.getCurrentMoveNumberValue());
+		}
+		if (command.hasHash()) {
+			builder.append(",\"hashfull\":").append(command.getHashValue());
+		}
+		if (command.hasNps()) {
+			builder.append(",\"nps\":").append(command.getNpsValue());
+		}
+		if (command.hasTime()) {
+			builder.append(",\"time\":").append(command.getTimeValue());
+		}
+		if (command.hasNodes()) {
+			builder.append(",\"nodes\":").append(command.getNodesValue());
+		}
+		if (command.getString() != null) {
+			builder.append(",\"string\":");
+			appendString(builder, command.getString());
+		}
+
+		builder.append('}');
+	}
+
+	private static void appendBestMove(StringBuilder builder, ProtocolBestMoveCommand command) {
+		builder.append("{\"type\":\"bestmove\",\"bestmove\":");
+		if (command.bestMove != null) {
+			builder.append('"').append(command.bestMove).append('"');
+		} else {
+			builder.append("null");
+		}
+		if (command.ponderMove != null) {
+			builder.append(",\"ponder\":\"").append(command.ponderMove).append('"');
+		}
+		builder.append('}');
+	}
+
+	private static void appendMoves(StringBuilder builder, List<GenericMove> moves) {
+		builder.append('[');
+		for (int i = 0; i < moves.size(); ++i) {
+			if (i > 0) {
+				builder.append(',');
+			}
+			builder.append('"').append(moves.get(i)).append('"');
+		}
+		builder.append(']');
+	}
+
+	private static void appendString(StringBuilder builder, String string) {
+		builder.append('"');
+		for (int i = 0; i < string.length(); ++i) {
+			char c = string.charAt(i);
+			if (c == '"' || c == '\\') {
+				builder.append('\\').append(c);
+			} else if (c < 0x20) {
+				builder.append(String.format("\\u%04x", (int) c));
+			} else {
+				builder.append(c);
+			}
+		}
+		builder.append('"');
+	}
+
+	/**
+	 * This is an engine of the pool. Commands from the engine are passed to
+	 * the request that currently uses it.
+	 */
+	private final class PooledEngine implements IProtocol {
+
+		private IEngine engine = null;
+		private volatile BlockingQueue<IProtocolCommand> listener = null;
+		private final StringBuilder builder = new StringBuilder();
+
+		/**
+		 * Streams the calculation to the client. Returns false if the engine
+		 * failed or sent no best move, so it must not be reused.
+		 */
+		private boolean run(HttpExchange exchange, EngineAnalyzeCommand analyzeCommand, final EngineStartCalculatingCommand startCommand, AnalysisCache.Key key) throws IOException {
+			exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream output = exchange.getResponseBody();
+			boolean connected = true;
+			String error = null;
+
+			BlockingQueue<IProtocolCommand> commands = new LinkedBlockingQueue<IProtocolCommand>();
+			listener = commands;
+			try {
+				engine.receive(analyzeCommand);
+
+				// The engine may calculate on the calling thread
+				Future<?> calculation = engineExecutor.submit(new Runnable() {
+					public void run() {
+						engine.receive(startCommand);
+					}
+				});
+
+				// The last principal variation of each multipv slot
+				Map<Integer, ProtocolInformationCommand> variations = new TreeMap<Integer, ProtocolInformationCommand>();
+				ProtocolBestMoveCommand bestMove = null;
+				long idleTime = 0;
+
+				while (true) {
+					IProtocolCommand command = commands.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+					if (command == null) {
+						if (calculation.isDone()) {
+							// Throws if the engine failed before its best move
+							calculation.get();
+
+							// An engine calculating in the background must keep sending
+							idleTime += POLL_INTERVAL;
+							if (idleTime >= bestMoveTimeout) {
+								error = "Engine sent no best move";
+								break;
+							}
+						}
+						continue;
+					}
+					idleTime = 0;
+
+					builder.setLength(0);
+					if (command instanceof ProtocolInformationCommand) {
+						ProtocolInformationCommand information = (ProtocolInformationCommand) command;
+						if (information.getMoveList() != null) {
+							variations.put(information.hasPvNumber() ? information.getPvNumberValue() : 1, information);
+						}
+						appendInformation(builder, information);
+					} else if (command instanceof ProtocolBestMoveCommand) {
+						bestMove = (ProtocolBestMoveCommand) command;
+						appendBestMove(builder, bestMove);
+					} else {
+						continue;
+					}
+					builder.append('\n');
+
+					if (connected) {
+						try {
+							output.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+							output.flush();
+						} catch (IOException e) {
+							// The client is gone, stop the engine and wait for its best move
+							connected = false;
+							engine.receive(new EngineStopCalculatingCommand());
+						}
+					}
+
+					if (command instanceof ProtocolBestMoveCommand) {
+						break;
+					}
+				}
+
+				if (error == null) {
+					calculation.get();
+
+					// A stopped calculation is not as deep as requested
+					if (key != null && connected) {
+						cache.put(key, startCommand, new ArrayList<ProtocolInformationCommand>(variations.values()), bestMove);
+					}
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				error = "Engine failed";
+			} catch (RuntimeException e) {
+				error = "Engine failed";
+			} finally {
+				listener = null;
+			}
+
+			if (error != null && connected) {
+				builder.setLength(0);
+				builder.append("{\"type\":\"error\",\"error\":");
+				appendString(builder, error);
+				builder.append("}\n");
+				try {
+					output.write(builder.toString().getBytes(StandardCharsets.UTF_8));
+				} catch (IOException e) {
+					// The client is gone
+				}
+			}
+
+			return error == null;
+		}
+
+		private void forward(IProtocolCommand command) {
+			BlockingQueue<IProtocolCommand> commands = listener;
+			if (commands != null) {
+				commands.add(command);
+			}
+		}
+
+		public void send(ProtocolInitializeAnswerCommand command) {
+			forward(command);
+		}
+
+		public void send(ProtocolReadyAnswerCommand command) {
+			forward(command);
+		}
+
+		public void send(ProtocolBestMoveCommand command) {
+			forward(command);
+		}
+
+		public void send(ProtocolInformationCommand command) {
+			// The engine may reuse the command for its next line
+			forward(command.copy());
+		}
+
+	}
+
+	private static final class DaemonThreadFactory implements ThreadFactory {
+
+		private final String name;
+
+		private DaemonThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,714 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.server;
+
+import com.fluxchess.jcpi.commands.EngineInitializeRequestCommand;
+import com.fluxchess.jcpi.commands.EnginePonderHitCommand;
+import com.fluxchess.jcpi.commands.EngineQuitCommand;
+import com.fluxchess.jcpi.commands.EngineReadyRequestCommand;
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.commands.EngineStopCalculatingCommand;
+import com.fluxchess.jcpi.commands.ICalculationCommand;
+import com.fluxchess.jcpi.commands.IEngine;
+import com.fluxchess.jcpi.commands.IEngineCommand;
+import com.fluxchess.jcpi.commands.IProtocol;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.commands.ProtocolInitializeAnswerCommand;
+import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
+import com.fluxchess.jcpi.protocols.UciProtocol;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class serves engines over TCP. Every connection is a session with
+ * its own engine and UCI protocol.
+ * <p/>
+ * All connections are handled by a single selector thread, so idle
+ * connections do not occupy a thread. Commands of a session are dispatched
+ * in order on a shared thread pool. While an engine calculates a go, go
+ * perft or bench command, the commands stop, ponderhit, isready and quit
+ * are dispatched immediately on another pool thread, unless another of
+ * these calculations is queued. Then they wait for the calculation they
+ * belong to. A stop is also recorded in the calculation command with
+ * {@link ICalculationCommand#requestStop()} before it is passed to the
+ * engine, and so is closing the session.
+ * <p/>
+ * A search counts from the go command until the engine sends its best
+ * move, and from go perft or bench until the engine returns. If the
+ * maximum number of concurrent searches is reached, the command waits
+ * until another search has finished. A session is closed if it sends a
+ * line longer than the maximum line length, if its pending output exceeds
+ * the maximum output size, or if it is idle for longer than the idle
+ * timeout while not searching.
+ */
+public final class EngineServer implements Closeable {
+
+	private final IEngineFactory factory;
+	private final int maxSearches;
+	private final ExecutorService executor;
+
+	private int maxLineLength = 64 * 1024;
+	private int maxOutputSize = 1024 * 1024;
+	private long idleTimeout = TimeUnit.MINUTES.toMillis(30);
+
+	private Selector selector = null;
+	private ServerSocketChannel serverChannel = null;
+	private Thread thread = null;
+	private volatile boolean running = false;
+
+	private final Set<Session> sessions = ConcurrentHashMap.<Session>newKeySet();
+	private final ConcurrentLinkedQueue<Session> writeRequests = new ConcurrentLinkedQueue<Session>();
+
+	// Search slots, guarded by searchLock
+	private final Object searchLock = new Object();
+	private final ArrayDeque<Session> waitingSessions = new ArrayDeque<Session>();
+	private int searches = 0;
+
+	/**
+	 * Creates a server. There must be more threads than concurrent searches,
+	 * so commands can be dispatched while engines calculate on pool threads.
+	 */
+	public EngineServer(IEngineFactory factory, int threads, int maxSearches) {
+		if (factory == null) throw new IllegalArgumentException();
+		if (maxSearches < 1) throw new IllegalArgumentException();
+		if (threads <= maxSearches) throw new IllegalArgumentException();
+
+		this.factory = factory;
+		this.maxSearches = maxSearches;
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "jcpi-session");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public void setMaxLineLength(int maxLineLength) {
+		if (maxLineLength < 1) throw new IllegalArgumentException();
+		if (thread != null) throw new IllegalStateException();
+
+		this.maxLineLength = maxLineLength;
+	}
+
+	public void setMaxOutputSize(int maxOutputSize) {
+		if (maxOutputSize < 1) throw new IllegalArgumentException();
+		if (thread != null) throw new IllegalStateException();
+
+		this.maxOutputSize = maxOutputSize;
+	}
+
+	/**
+	 * Sets the idle timeout in milliseconds.
+	 */
+	public void setIdleTimeout(long idleTimeout) {
+		if (idleTimeout < 1) throw new IllegalArgumentException();
+		if (thread != null) throw new IllegalStateException();
+
+		this.idleTimeout = idleTimeout;
+	}
+
+	public void start(InetSocketAddress address) throws IOException {
+		if (address == null) throw new IllegalArgumentException();
+		if (thread != null) throw new IllegalStateException();
+
+		selector = Selector.open();
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(address);
+		serverChannel.configureBlocking(false);
+		serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		running = true;
+		thread = new Thread(new Runnable() {
+			public void run() {
+				select();
+			}
+		}, "jcpi-server");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	public InetSocketAddress getLocalAddress() throws IOException {
+		if (serverChannel == null) throw new IllegalStateException();
+
+		return (InetSocketAddress) serverChannel.getLocalAddress();
+	}
+
+	public int getSessionCount() {
+		return sessions.size();
+	}
+
+	/**
+	 * Closes all sessions and stops the server.
+	 */
+	public void close() throws IOException {
+		if (thread == null) {
+			executor.shutdown();
+			return;
+		}
+
+		running = false;
+		selector.wakeup();
+		try {
+			thread.join();
+			executor.shutdown();
+			executor.awaitTermination(10, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private void select() {
+		try {
+			while (running) {
+				selector.select(Math.min(idleTimeout, 1000));
+
+				Session session;
+				while ((session = writeRequests.poll()) != null) {
+					session.write();
+				}
+
+				for (Iterator<SelectionKey> iter = selector.selectedKeys().iterator(); iter.hasNext(); ) {
+					SelectionKey key = iter.next();
+					iter.remove();
+
+					if (!key.isValid()) {
+						continue;
+					}
+					if (key.isAcceptable()) {
+						accept();
+					} else {
+						session = (Session) key.attachment();
+						if (key.isReadable()) {
+							session.read();
+						}
+						if (key.isValid() && key.isWritable()) {
+							session.write();
+						}
+					}
+				}
+
+				long currentTime = System.currentTimeMillis();
+				for (Session idleSession : sessions) {
+					if (currentTime - idleSession.lastActivity > idleTimeout && !idleSession.hasSearch()) {
+						idleSession.close();
+					}
+				}
+			}
+		} catch (IOException e) {
+			// The selector is broken, shut down the server
+		} finally {
+			for (Session session : sessions) {
+				session.close();
+			}
+			try {
+				serverChannel.close();
+				selector.close();
+			} catch (IOException e) {
+				// Do nothing
+			}
+		}
+	}
+
+	private void accept() throws IOException {
+		SocketChannel channel = serverChannel.accept();
+		if (channel == null) {
+			return;
+		}
+
+		channel.configureBlocking(false);
+		Session session = new Session(channel);
+		session.key = channel.register(selector, SelectionKey.OP_READ, session);
+		sessions.add(session);
+	}
+
+	private boolean acquireSearch(Session session) {
+		synchronized (searchLock) {
+			if (searches < maxSearches) {
+				++searches;
+				return true;
+			}
+
+			waitingSessions.add(session);
+			session.startWaiting();
+			return false;
+		}
+	}
+
+	/**
+	 * Passes the search slot to the next waiting session or frees it.
+	 */
+	private void releaseSearch() {
+		Session next;
+		synchronized (searchLock) {
+			do {
+				next = waitingSessions.poll();
+			} while (next != null && next.closed.get());
+
+			if (next == null) {
+				--searches;
+				return;
+			}
+		}
+
+		next.resume();
+	}
+
+	private static boolean isUrgent(IEngineCommand command) {
+		return command instanceof EngineStopCalculatingCommand
+				|| command instanceof EnginePonderHitCommand
+				|| command instanceof EngineReadyRequestCommand
+				|| command instanceof EngineQuitCommand;
+	}
+
+	private final class Session implements IProtocol, Runnable {
+
+		private final SocketChannel channel;
+		private SelectionKey key = null;
+
+		// Input state, used by the selector thread only
+		private final ByteBuffer readBuffer = ByteBuffer.allocate(8192);
+		private byte[] line = new byte[256];
+		private int lineLength = 0;
+		private long lastActivity = System.currentTimeMillis();
+		private UciProtocol protocol = null;
+
+		// Dispatch state
+		private final ConcurrentLinkedQueue<IEngineCommand> commands = new ConcurrentLinkedQueue<IEngineCommand>();
+		private final AtomicBoolean scheduled = new AtomicBoolean(false);
+		private final AtomicBoolean closed = new AtomicBoolean(false);
+		private volatile IEngine engine = null;
+
+		// Guards the flags together with adding to the command queue
+		private final Object dispatchLock = new Object();
+		private ICalculationCommand calculation = null;
+		private int pendingStarts = 0;
+		private boolean waiting = false;
+
+		// Output state, guarded by this
+		private final ArrayDeque<ByteBuffer> output = new ArrayDeque<ByteBuffer>();
+		private int outputSize = 0;
+		private boolean search = false;
+
+		private Session(SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		private void read() {
+			try {
+				int count = channel.read(readBuffer);
+				if (count < 0) {
+					close();
+					return;
+				}
+			} catch (IOException e) {
+				close();
+				return;
+			}
+			lastActivity = System.currentTimeMillis();
+
+			readBuffer.flip();
+			while (readBuffer.hasRemaining()) {
+				byte b = readBuffer.get();
+				if (b == '\n') {
+					readLine();
+				} else if (lineLength == maxLineLength) {
+					close();
+					return;
+				} else {
+					if (lineLength == line.length) {
+						line = Arrays.copyOf(line, Math.min(line.length * 2, maxLineLength));
+					}
+					line[lineLength++] = b;
+				}
+			}
+			readBuffer.clear();
+		}
+
+		private void readLine() {
+			int length = lineLength;
+			if (length > 0 && line[length - 1] == '\r') {
+				--length;
+			}
+			String text = new String(line, 0, length, StandardCharsets.UTF_8);
+			lineLength = 0;
+
+			if (protocol == null) {
+				// Wait for the protocol keyword
+				if (UciProtocol.isProtocolKeyword(text.trim())) {
+					protocol = new UciProtocol(new SessionOutputStream());
+					submit(new EngineInitializeRequestCommand());
+				}
+			} else {
+				IEngineCommand command = protocol.parse(text);
+				if (command instanceof EngineQuitCommand) {
+					close();
+				} else if (command != null) {
+					submit(command);
+				}
+			}
+		}
+
+		/**
+		 * Queues the command. Urgent commands are executed immediately while
+		 * the engine calculates, unless another start command is queued. Then
+		 * they wait for the calculation they belong to. A ready request is
+		 * also answered while the session waits for a search slot.
+		 */
+		private void submit(IEngineCommand command) {
+			synchronized (dispatchLock) {
+				boolean urgent = calculation != null && pendingStarts == 0 && isUrgent(command);
+				if (urgent && command instanceof EngineStopCalculatingCommand) {
+					calculation.requestStop();
+				}
+				if (!urgent && !(waiting && command instanceof EngineReadyRequestCommand)) {
+					if (command instanceof ICalculationCommand) {
+						++pendingStarts;
+					}
+					commands.add(command);
+					command = null;
+				}
+			}
+
+			if (command != null) {
+				execute(command);
+			} else {
+				schedule();
+			}
+		}
+
+		private void execute(final IEngineCommand command) {
+			executor.execute(new Runnable() {
+				public void run() {
+					dispatch(command);
+				}
+			});
+		}
+
+		private void schedule() {
+			if (scheduled.compareAndSet(false, true)) {
+				executor.execute(this);
+			}
+		}
+
+		/**
+		 * Dispatches the queued commands in order.
+		 */
+		public void run() {
+			while (!closed.get()) {
+				IEngineCommand command = commands.peek();
+				if (command == null) {
+					scheduled.set(false);
+					if (commands.isEmpty() || !scheduled.compareAndSet(false, true)) {
+						return;
+					}
+					continue;
+				}
+
+				if (command instanceof ICalculationCommand) {
+					if (!startSearch()) {
+						// Resumed when a search slot is passed to this session
+						return;
+					}
+
+					List<IEngineCommand> heldCommands = startCalculating((ICalculationCommand) command);
+					try {
+						for (IEngineCommand heldCommand : heldCommands) {
+							execute(heldCommand);
+						}
+						dispatch(command);
+					} finally {
+						synchronized (dispatchLock) {
+							calculation = null;
+						}
+						if (!(command instanceof EngineStartCalculatingCommand)) {
+							// Only go is answered with a best move
+							finishSearch();
+						}
+					}
+				} else {
+					commands.poll();
+					dispatch(command);
+				}
+			}
+		}
+
+		private void resume() {
+			synchronized (this) {
+				search = true;
+			}
+			synchronized (dispatchLock) {
+				waiting = false;
+			}
+			executor.execute(this);
+		}
+
+		/**
+		 * Takes the start command from the queue and marks the engine as
+		 * calculating. Returns the urgent commands queued behind the start
+		 * command, which are executed once the start command is dispatched. A
+		 * queued stop is recorded in the start command right away.
+		 */
+		private List<IEngineCommand> startCalculating(ICalculationCommand command) {
+			List<IEngineCommand> heldCommands = new ArrayList<IEngineCommand>();
+
+			synchronized (dispatchLock) {
+				commands.poll();
+				--pendingStarts;
+				calculation = command;
+
+				for (Iterator<IEngineCommand> iter = commands.iterator(); iter.hasNext(); ) {
+					IEngineCommand queuedCommand = iter.next();
+					if (queuedCommand instanceof ICalculationCommand) {
+						// Commands behind the next start command belong to it
+						break;
+					}
+					if (isUrgent(queuedCommand)) {
+						if (queuedCommand instanceof EngineStopCalculatingCommand) {
+							command.requestStop();
+						}
+						heldCommands.add(queuedCommand);
+						iter.remove();
+					}
+				}
+			}
+
+			return heldCommands;
+		}
+
+		private void dispatch(IEngineCommand command) {
+			if (closed.get() && !(command instanceof EngineQuitCommand)) {
+				return;
+			}
+
+			try {
+				if (engine == null) {
+					engine = factory.create(this);
+				}
+
+				command.accept(engine);
+			} catch (RuntimeException e) {
+				close();
+			}
+		}
+
+		private boolean startSearch() {
+			synchronized (this) {
+				if (search) {
+					return true;
+				}
+			}
+
+			if (acquireSearch(this)) {
+				synchronized (this) {
+					search = true;
+				}
+				return true;
+			}
+
+			return false;
+		}
+
+		/**
+		 * Marks the session as waiting for a search slot. Ready requests
+		 * queued behind the start command are executed immediately.
+		 */
+		private void startWaiting() {
+			synchronized (dispatchLock) {
+				waiting = true;
+
+				for (Iterator<IEngineCommand> iter = commands.iterator(); iter.hasNext(); ) {
+					IEngineCommand command = iter.next();
+					if (command instanceof EngineReadyRequestCommand) {
+						iter.remove();
+						execute(command);
+					}
+				}
+			}
+		}
+
+		private void finishSearch() {
+			synchronized (this) {
+				if (!search) {
+					return;
+				}
+				search = false;
+			}
+
+			releaseSearch();
+		}
+
+		private synchronized boolean hasSearch() {
+			return search;
+		}
+
+		private void close() {
+			if (!closed.compareAndSet(false, true)) {
+				return;
+			}
+
+			sessions.remove(this);
+			synchronized (this) {
+				// Do not cancel the key while the selector thread writes
+				if (key != null) {
+					key.cancel();
+				}
+				try {
+					channel.close();
+				} catch (IOException e) {
+					// Do nothing
+				}
+			}
+
+			synchronized (searchLock) {
+				waitingSessions.remove(this);
+			}
+			synchronized (dispatchLock) {
+				if (calculation != null) {
+					calculation.requestStop();
+				}
+			}
+			finishSearch();
+
+			if (engine != null) {
+				execute(new EngineQuitCommand());
+			}
+		}
+
+		/**
+		 * Writes pending output. Called by the selector thread only.
+		 */
+		private synchronized void write() {
+			if (closed.get()) {
+				return;
+			}
+
+			try {
+				while (!output.isEmpty()) {
+					ByteBuffer buffer = output.peek();
+					channel.write(buffer);
+					if (buffer.hasRemaining()) {
+						break;
+					}
+
+					output.poll();
+					outputSize -= buffer.limit();
+				}
+			} catch (IOException e) {
+				close();
+				return;
+			}
+
+			key.interestOps(output.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+
+		private void enqueue(byte[] bytes, int length) {
+			synchronized (this) {
+				if (closed.get()) {
+					return;
+				}
+
+				if (outputSize + length <= maxOutputSize) {
+					output.add(ByteBuffer.wrap(Arrays.copyOf(bytes, length)));
+					outputSize += length;
+					length = -1;
+				}
+			}
+
+			if (length < 0) {
+				writeRequests.add(this);
+				selector.wakeup();
+			} else {
+				// The client does not read its output
+				close();
+			}
+		}
+
+		public void send(ProtocolInitializeAnswerCommand command) {
+			protocol.send(command);
+		}
+
+		public void send(ProtocolReadyAnswerCommand command) {
+			protocol.send(command);
+		}
+
+		public void send(ProtocolBestMoveCommand command) {
+			protocol.send(command);
+			finishSearch();
+		}
+
+		public void send(ProtocolInformationCommand command) {
+			protocol.send(command);
+		}
+
+		/**
+		 * Collects the output of the protocol until it is flushed.
+		 */
+		private final class SessionOutputStream extends OutputStream {
+
+			private byte[] buffer = new byte[1024];
+			private int count = 0;
+
+			public void write(int b) {
+				if (count == buffer.length) {
+					buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				}
+				buffer[count++] = (byte) b;
+			}
+
+			public void write(byte[] b, int off, int len) {
+				if (count + len > buffer.length) {
+					buffer = Arrays.copyOf(buffer, Math.max(count + len, buffer.length * 2));
+				}
+				System.arraycopy(b, off, buffer, count, len);
+				count += len;
+			}
+
+			public void flush() {
+				if (count > 0) {
+					enqueue(buffer, count);
+					count = 0;
+				}
+			}
+
+		}
+
+	}
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.server;
+
+import com.fluxchess.jcpi.commands.IEngine;
+import com.fluxchess.jcpi.commands.IProtocol;
+
+/**
+ * This interface creates an engine for a new session. The server
+ * dispatches the commands itself, so the engine only gets the protocol to
+ * send to. An {@link com.fluxchess.jcpi.AbstractEngine} subclass is
+ * usually created with the given protocol.
+ */
+public interface IEngineFactory {
+
+	IEngine create(IProtocol protocol);
+
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.tables;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This storage is a list of direct byte buffers outside of the heap, so it
+ * is neither limited by the array size nor scanned by the garbage
+ * collector. Each buffer is a segment of 2^27 longs. The buffers start at
+ * a cache line boundary, so no bucket spans two cache lines.
+ * <p/>
+ * Direct memory is limited by -XX:MaxDirectMemorySize, which defaults to
+ * the maximum heap size. Large tables need this flag.
+ */
+final class DirectTableStorage extends TableStorage {
+
+	private static final int CHUNK_SHIFT = 27;
+	private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+
+	private static final int CACHE_LINE_BYTES = 64;
+
+	private static final byte[] ZEROS = new byte[64 * 1024];
+
+	private final ByteBuffer[] chunks;
+	private final long length;
+
+	DirectTableStorage(long length) {
+		if (length < 0) throw new IllegalArgumentException();
+
+		long count = (length + CHUNK_MASK) >>> CHUNK_SHIFT;
+		if (count > Integer.MAX_VALUE) throw new IllegalArgumentException();
+
+		this.chunks = new ByteBuffer[(int) count];
+		this.length = length;
+	}
+
+	@Override
+	long length() {
+		return length;
+	}
+
+	@Override
+	long get(long index) {
+		return chunks[(int) (index >>> CHUNK_SHIFT)].getLong((int) (index & CHUNK_MASK) << 3);
+	}
+
+	@Override
+	void set(long index, long value) {
+		chunks[(int) (index >>> CHUNK_SHIFT)].putLong((int) (index & CHUNK_MASK) << 3, value);
+	}
+
+	@Override
+	boolean isDirect() {
+		return true;
+	}
+
+	@Override
+	int getSegmentCount() {
+		return chunks.length;
+	}
+
+	@Override
+	void allocateSegment(int segment) {
+		long chunkLength = Math.min(length - ((long) segment << CHUNK_SHIFT), 1L << CHUNK_SHIFT);
+		int bytes = (int) (chunkLength * 8);
+
+		// Allocate one more cache line and start the chunk at its boundary
+		ByteBuffer buffer = ByteBuffer.allocateDirect(bytes + CACHE_LINE_BYTES);
+		int offset = getAlignmentOffset(buffer);
+		buffer.position(offset);
+		buffer.limit(offset + bytes);
+		chunks[segment] = buffer.slice().order(ByteOrder.nativeOrder());
+	}
+
+	/**
+	 * Returns the number of bytes from the start of the buffer to the next
+	 * cache line boundary, or 0 if the address is not available.
+	 */
+	private static int getAlignmentOffset(ByteBuffer buffer) {
+		long misalignment;
+		try {
+			try {
+				// Java 9 and later
+				Method method = ByteBuffer.class.getMethod("alignmentOffset", int.class, int.class);
+				misalignment = (Integer) method.invoke(buffer, 0, CACHE_LINE_BYTES);
+			} catch (NoSuchMethodException e) {
+				// Java 8
+				Field field = Buffer.class.getDeclaredField("address");
+				field.setAccessible(true);
+				misalignment = field.getLong(buffer) % CACHE_LINE_BYTES;
+			}
+		} catch (ReflectiveOperationException e) {
+			return 0;
+		} catch (RuntimeException e) {
+			return 0;
+		}
+
+		return (int) ((CACHE_LINE_BYTES - misalignment) % CACHE_LINE_BYTES);
+	}
+
+	@Override
+	void clearSegment(int segment) {
+		ByteBuffer chunk = chunks[segment].duplicate();
+		chunk.clear();
+		while (chunk.hasRemaining()) {
+			chunk.put(ZEROS, 0, Math.min(ZEROS.length, chunk.remaining()));
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.tables;
+
+import java.util.Arrays;
+
+/**
+ * This storage is a long array on the heap. It holds at most 2^30 longs.
+ * The array is allocated at once, so segments are ranges of it.
+ */
+final class HeapTableStorage extends TableStorage {
+
+	static final long MAX_LENGTH = 1L << 30;
+
+	private static final int SEGMENT_LENGTH = 1 << 20;
+
+	private final long[] entries;
+
+	HeapTableStorage(long length) {
+		if (length < 0 || length > MAX_LENGTH) throw new IllegalArgumentException();
+
+		this.entries = new long[(int) length];
+	}
+
+	@Override
+	long length() {
+		return entries.length;
+	}
+
+	@Override
+	long get(long index) {
+		return entries[(int) index];
+	}
+
+	@Override
+	void set(long index, long value) {
+		entries[(int) index] = value;
+	}
+
+	@Override
+	boolean isDirect() {
+		return false;
+	}
+
+	@Override
+	int getSegmentCount() {
+		return (entries.length + SEGMENT_LENGTH - 1) / SEGMENT_LENGTH;
+	}
+
+	@Override
+	void allocateSegment(int segment) {
+	}
+
+	@Override
+	void clearSegment(int segment) {
+		int from = segment * SEGMENT_LENGTH;
+		Arrays.fill(entries, from, Math.min(from + SEGMENT_LENGTH, entries.length), 0);
+	}
+
+}
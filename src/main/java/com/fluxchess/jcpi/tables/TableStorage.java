@@ -0,0 +1,46 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.tables;
+
+/**
+ * This is the memory of a transposition table, addressed in longs. It is
+ * divided into segments, which may be allocated and cleared in parallel.
+ */
+abstract class TableStorage {
+
+	static TableStorage allocate(long length, boolean direct) {
+		return direct ? new DirectTableStorage(length) : new HeapTableStorage(length);
+	}
+
+	abstract long length();
+
+	abstract long get(long index);
+
+	abstract void set(long index, long value);
+
+	abstract boolean isDirect();
+
+	abstract int getSegmentCount();
+
+	/**
+	 * Allocates the segment. Each segment must be allocated once before the
+	 * storage is used.
+	 */
+	abstract void allocateSegment(int segment);
+
+	abstract void clearSegment(int segment);
+
+}
@@ -0,0 +1,514 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.tables;
+
+import com.fluxchess.jcpi.commands.EngineSetOptionCommand;
+import com.fluxchess.jcpi.options.SpinnerOption;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * This is a transposition table that may be shared by search threads
+ * without locks.
+ * <p/>
+ * The table is an array of 64-byte buckets. A bucket holds four entries
+ * of a key and a data word. The key is stored XORed with the data, so an
+ * entry torn by concurrent writes does not verify and reads as a miss. In
+ * direct memory, each bucket is one cache line. On the heap, the JVM
+ * decides the address of the array, so a bucket may span two.
+ * <p/>
+ * The data word is built by the table from a 48 bit value, which the
+ * engine defines, a depth and the generation of the search. An entry is
+ * replaced by the same key unless the stored entry is deeper and from the
+ * current generation. Otherwise the empty or least valuable entry of the
+ * bucket is replaced, where each generation of age weighs as much as
+ * {@link #AGE_WEIGHT} plies of depth.
+ * <p/>
+ * The table is sized from the Hash option in megabytes. Tables of at least
+ * {@link #DEFAULT_DIRECT_THRESHOLD} megabytes are allocated in direct
+ * memory outside of the heap, so they may exceed the array size and are
+ * not scanned by the garbage collector. The JVM must then be started with
+ * a large enough -XX:MaxDirectMemorySize. Otherwise the size is halved
+ * until it can be allocated, and {@link #getAllocationFailure()} returns
+ * the error.
+ * <p/>
+ * Resizes and clears run in the background on parallel threads, so the
+ * command thread is not blocked. An engine should defer readyok with
+ * {@link #whenReady(Runnable)} and clear the table with
+ * {@link #startClear()} on ucinewgame.
+ * <p/>
+ * The fill rate for
+ * {@link com.fluxchess.jcpi.commands.ProtocolInformationCommand#setHash(int)}
+ * is returned by {@link #getHashFull()}.
+ */
+public final class TranspositionTable {
+
+	public static final int MAX_DEPTH = 0xFF;
+	public static final long VALUE_MASK = (1L << 48) - 1;
+
+	// Each generation of age costs this many plies of depth
+	public static final int AGE_WEIGHT = 8;
+
+	public static final int DEFAULT_DIRECT_THRESHOLD = 1024;
+
+	static final int BUCKET_SIZE = 4;
+	static final int BUCKET_LONGS = BUCKET_SIZE * 2;
+	static final int BUCKET_BYTES = BUCKET_LONGS * 8;
+
+	// Data layout: value, depth, generation and a valid bit
+	private static final int DEPTH_SHIFT = 48;
+	private static final int GENERATION_SHIFT = 56;
+	private static final int GENERATION_MASK = 0x7F;
+	private static final long VALID = 1L << 63;
+
+	// The number of entries sampled for hashfull
+	private static final int SAMPLE_SIZE = 1000;
+
+	private final SpinnerOption option;
+
+	private volatile TableStorage entries;
+	private volatile OutOfMemoryError allocationFailure = null;
+	private volatile int generation = 0;
+	private volatile int directThreshold = DEFAULT_DIRECT_THRESHOLD;
+	private volatile int threads = Runtime.getRuntime().availableProcessors();
+
+	// Resizes and clears run one after the other on the table thread
+	private final ExecutorService executor = new ThreadPoolExecutor(0, 1, 1, TimeUnit.SECONDS,
+			new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "jcpi-table");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	private final Object lock = new Object();
+	private final List<Runnable> readyActions = new ArrayList<Runnable>();
+	private int pendingOperations = 0;
+
+	/**
+	 * Creates a table with the default size of the Hash option. Values
+	 * passed to {@link #setOption(EngineSetOptionCommand)} are clamped to
+	 * the range of the option.
+	 */
+	public TranspositionTable(SpinnerOption option) {
+		if (option == null) throw new IllegalArgumentException();
+
+		this.option = option;
+		resize(Integer.parseInt(option.defaultValue));
+	}
+
+	public TranspositionTable(int megabytes) {
+		this.option = null;
+		resize(megabytes);
+	}
+
+	/**
+	 * Resizes the table to the Hash option in the background. Returns false
+	 * if the command sets another option.
+	 */
+	public boolean setOption(EngineSetOptionCommand command) {
+		if (command == null) throw new IllegalArgumentException();
+
+		if (!command.name.equalsIgnoreCase(option != null ? option.name : "Hash") || command.value == null) {
+			return false;
+		}
+
+		int megabytes;
+		try {
+			megabytes = Integer.parseInt(command.value.trim());
+		} catch (NumberFormatException e) {
+			return false;
+		}
+		if (option != null) {
+			megabytes = Math.max(option.minValue, Math.min(option.maxValue, megabytes));
+		}
+
+		startResize(megabytes);
+
+		return true;
+	}
+
+	/**
+	 * Sets the size in megabytes from which the table is allocated in direct
+	 * memory. This takes effect with the next resize.
+	 */
+	public void setDirectThreshold(int megabytes) {
+		if (megabytes < 0) throw new IllegalArgumentException();
+
+		directThreshold = megabytes;
+	}
+
+	/**
+	 * Returns whether the table is allocated in direct memory.
+	 */
+	public boolean isDirect() {
+		return entries.isDirect();
+	}
+
+	/**
+	 * Resizes and clears the table, and waits until it is done. The number
+	 * of buckets is the largest power of two that fits into the size.
+	 * Returns false if the size could not be allocated, see
+	 * {@link #getAllocationFailure()}.
+	 */
+	public boolean resize(int megabytes) {
+		startResize(megabytes);
+		awaitReady();
+
+		return allocationFailure == null;
+	}
+
+	/**
+	 * Resizes and clears the table in the background. Until the new table is
+	 * ready, all keys share a single bucket, so a search may keep running.
+	 * If the size cannot be allocated, the size is halved until it can.
+	 */
+	public void startResize(final int megabytes) {
+		if (megabytes < 0) throw new IllegalArgumentException();
+
+		submit(new Runnable() {
+			public void run() {
+				boolean direct = megabytes >= directThreshold;
+				long buckets = Math.max((long) megabytes * 1024 * 1024 / BUCKET_BYTES, 1);
+				long length = Long.highestOneBit(buckets) * BUCKET_LONGS;
+				if (!direct) {
+					length = Math.min(length, HeapTableStorage.MAX_LENGTH);
+				}
+
+				// Drop the old table first, so both never have to fit into memory
+				TableStorage placeholder = TableStorage.allocate(BUCKET_LONGS, false);
+				placeholder.allocateSegment(0);
+				entries = placeholder;
+
+				TableStorage table = null;
+				OutOfMemoryError failure = null;
+				while (table == null) {
+					try {
+						TableStorage storage = TableStorage.allocate(length, direct);
+						forEachSegment(storage, true);
+						table = storage;
+					} catch (OutOfMemoryError e) {
+						if (failure == null) {
+							failure = e;
+						}
+						if (length == BUCKET_LONGS) {
+							table = placeholder;
+						} else {
+							length /= 2;
+						}
+					}
+				}
+				generation = 0;
+				allocationFailure = failure;
+				entries = table;
+			}
+		});
+	}
+
+	/**
+	 * Returns the error of the last resize if it could not allocate the
+	 * requested size, otherwise null. The table then has the largest size
+	 * that could be allocated.
+	 */
+	public OutOfMemoryError getAllocationFailure() {
+		return allocationFailure;
+	}
+
+	/**
+	 * Clears the table and waits until it is done.
+	 */
+	public void clear() {
+		startClear();
+		awaitReady();
+	}
+
+	/**
+	 * Clears the table in the background, one segment after the other. A
+	 * search may keep running, but it still finds entries of segments that
+	 * are not cleared yet.
+	 */
+	public void startClear() {
+		submit(new Runnable() {
+			public void run() {
+				generation = 0;
+				forEachSegment(entries, false);
+			}
+		});
+	}
+
+	/**
+	 * Sets the number of threads that allocate and clear the table. The
+	 * default is the number of processors.
+	 */
+	public void setThreads(int threads) {
+		if (threads < 1) throw new IllegalArgumentException();
+
+		this.threads = threads;
+	}
+
+	/**
+	 * Returns whether no resize or clear is running.
+	 */
+	public boolean isReady() {
+		synchronized (lock) {
+			return pendingOperations == 0;
+		}
+	}
+
+	/**
+	 * Waits until no resize or clear is running.
+	 */
+	public void awaitReady() {
+		synchronized (lock) {
+			try {
+				while (pendingOperations > 0) {
+					lock.wait();
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	/**
+	 * Runs the action once no resize or clear is running, for example to
+	 * answer isready without blocking the command thread. The action runs
+	 * on the calling thread if the table is ready, otherwise on the table
+	 * thread. It may check {@link #getAllocationFailure()}.
+	 */
+	public void whenReady(Runnable action) {
+		if (action == null) throw new IllegalArgumentException();
+
+		synchronized (lock) {
+			if (pendingOperations > 0) {
+				readyActions.add(action);
+				return;
+			}
+		}
+
+		action.run();
+	}
+
+	private void submit(final Runnable operation) {
+		synchronized (lock) {
+			++pendingOperations;
+		}
+
+		executor.execute(new Runnable() {
+			public void run() {
+				try {
+					operation.run();
+				} finally {
+					List<Runnable> actions = Collections.emptyList();
+					synchronized (lock) {
+						if (--pendingOperations == 0) {
+							actions = new ArrayList<Runnable>(readyActions);
+							readyActions.clear();
+							lock.notifyAll();
+						}
+					}
+					for (Runnable action : actions) {
+						action.run();
+					}
+				}
+			}
+		});
+	}
+
+	/**
+	 * Allocates or clears all segments of the storage in parallel. The first
+	 * failure of any thread is rethrown once all threads have stopped.
+	 */
+	private void forEachSegment(final TableStorage table, final boolean allocate) {
+		final AtomicInteger nextSegment = new AtomicInteger(0);
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Runnable worker = new Runnable() {
+			public void run() {
+				try {
+					int segment;
+					while ((segment = nextSegment.getAndIncrement()) < table.getSegmentCount()) {
+						if (allocate) {
+							table.allocateSegment(segment);
+						} else {
+							table.clearSegment(segment);
+						}
+					}
+				} catch (RuntimeException e) {
+					failure.compareAndSet(null, e);
+					nextSegment.set(table.getSegmentCount());
+				} catch (Error e) {
+					failure.compareAndSet(null, e);
+					nextSegment.set(table.getSegmentCount());
+				}
+			}
+		};
+
+		Thread[] helpers = new Thread[Math.min(threads, table.getSegmentCount()) - 1];
+		for (int i = 0; i < helpers.length; ++i) {
+			helpers[i] = new Thread(worker, "jcpi-table");
+			helpers[i].setDaemon(true);
+			helpers[i].start();
+		}
+		worker.run();
+
+		boolean interrupted = false;
+		for (Thread helper : helpers) {
+			while (helper.isAlive()) {
+				try {
+					helper.join();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		if (failure.get() instanceof RuntimeException) {
+			throw (RuntimeException) failure.get();
+		} else if (failure.get() instanceof Error) {
+			throw (Error) failure.get();
+		}
+	}
+
+	/**
+	 * Returns the size in bytes.
+	 */
+	public long getSize() {
+		return entries.length() * 8;
+	}
+
+	/**
+	 * Starts a new generation. Call this once at the start of each search.
+	 */
+	public void newSearch() {
+		generation = (generation + 1) & GENERATION_MASK;
+	}
+
+	/**
+	 * Returns the data of the key, or 0 if the key is not stored. Use
+	 * {@link #getValue(long)} and {@link #getDepth(long)} to decode it.
+	 */
+	public long get(long key) {
+		TableStorage table = entries;
+		long index = getIndex(table, key);
+
+		for (long i = index; i < index + BUCKET_LONGS; i += 2) {
+			long data = table.get(i + 1);
+			if ((table.get(i) ^ data) == key && data != 0) {
+				return data;
+			}
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Stores the value with the depth for the key. Only the lower 48 bits of
+	 * the value are stored.
+	 */
+	public void put(long key, int depth, long value) {
+		if (depth < 0 || depth > MAX_DEPTH) throw new IllegalArgumentException();
+
+		TableStorage table = entries;
+		long index = getIndex(table, key);
+		int currentGeneration = generation;
+		long newData = (value & VALUE_MASK)
+				| ((long) depth << DEPTH_SHIFT)
+				| ((long) currentGeneration << GENERATION_SHIFT)
+				| VALID;
+
+		long replace = index;
+		int replaceScore = Integer.MAX_VALUE;
+		for (long i = index; i < index + BUCKET_LONGS; i += 2) {
+			long data = table.get(i + 1);
+			if (data == 0) {
+				if (replaceScore > Integer.MIN_VALUE) {
+					replace = i;
+					replaceScore = Integer.MIN_VALUE;
+				}
+				continue;
+			}
+
+			if ((table.get(i) ^ data) == key) {
+				if (getGeneration(data) == currentGeneration && getDepth(data) > depth) {
+					// Keep the deeper entry of this search
+					return;
+				}
+				replace = i;
+				break;
+			}
+
+			int age = (currentGeneration - getGeneration(data)) & GENERATION_MASK;
+			int score = getDepth(data) - AGE_WEIGHT * age;
+			if (score < replaceScore) {
+				replace = i;
+				replaceScore = score;
+			}
+		}
+
+		table.set(replace, key ^ newData);
+		table.set(replace + 1, newData);
+	}
+
+	/**
+	 * Returns the number of entries per mille used by the current
+	 * generation, estimated from a sample at the start of the table.
+	 */
+	public int getHashFull() {
+		TableStorage table = entries;
+		int currentGeneration = generation;
+		int samples = (int) Math.min(SAMPLE_SIZE, table.length() / 2);
+
+		int used = 0;
+		for (int i = 0; i < samples; ++i) {
+			long data = table.get(i * 2L + 1);
+			if (data != 0 && getGeneration(data) == currentGeneration) {
+				++used;
+			}
+		}
+
+		return used * 1000 / samples;
+	}
+
+	public static long getValue(long data) {
+		return data & VALUE_MASK;
+	}
+
+	public static int getDepth(long data) {
+		return (int) (data >>> DEPTH_SHIFT) & MAX_DEPTH;
+	}
+
+	private static int getGeneration(long data) {
+		return (int) (data >>> GENERATION_SHIFT) & GENERATION_MASK;
+	}
+
+	private static long getIndex(TableStorage table, long key) {
+		// Mix the upper bits in, because some keys are weak in the lower bits
+		return ((key ^ (key >>> 32)) & (table.length() / BUCKET_LONGS - 1)) * BUCKET_LONGS;
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.utils;
+
+import com.fluxchess.jcpi.models.GenericMove;
+
+/**
+ * Receives the contents of a game read by {@link PgnReader}.
+ */
+public interface IPgnHandler {
+
+	void header(String name, String value);
+
+	/**
+	 * Called after the move has been made on the reader's board. The ply
+	 * starts at 1 for the first move of the game.
+	 */
+	void move(int ply, GenericMove move);
+
+	/**
+	 * Called with one of {@link PgnReader#WHITEWIN}, {@link PgnReader#BLACKWIN},
+	 * {@link PgnReader#DRAW} and {@link PgnReader#UNKNOWN}.
+	 */
+	void result(String result);
+
+}
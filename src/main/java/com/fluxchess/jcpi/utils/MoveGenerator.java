@@ -18,6 +18,9 @@ package com.fluxchess.jcpi.utils;
 import com.fluxchess.jcpi.internal.x88.X88MoveGenerator;
 import com.fluxchess.jcpi.models.GenericBoard;
 import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+
+import java.util.List;
 
 public final class MoveGenerator {
 
@@ -28,8 +31,43 @@ public final class MoveGenerator {
 		return new X88MoveGenerator(genericBoard).getGenericMoves();
 	}
 
+	/**
+	 * Returns the legal moves of the position after the moves. Throws an
+	 * IllegalArgumentException if a move is not legal.
+	 */
+	public static GenericMove[] getGenericMoves(GenericBoard genericBoard, List<GenericMove> genericMoves) {
+		return makeMoves(genericBoard, genericMoves).getGenericMoves();
+	}
+
 	public static long perft(GenericBoard genericBoard, int depth) {
 		return new X88MoveGenerator(genericBoard).perft(depth);
 	}
 
+	/**
+	 * Counts the leaf nodes of the position after the moves. Throws an
+	 * IllegalArgumentException if a move is not legal.
+	 */
+	public static long perft(GenericBoard genericBoard, List<GenericMove> genericMoves, int depth) {
+		return makeMoves(genericBoard, genericMoves).perft(depth);
+	}
+
+	private static X88MoveGenerator makeMoves(GenericBoard genericBoard, List<GenericMove> genericMoves) {
+		if (genericMoves == null) throw new IllegalArgumentException();
+
+		X88MoveGenerator generator = new X88MoveGenerator(genericBoard);
+		for (GenericMove genericMove : genericMoves) {
+			generator.makeMove(genericMove);
+		}
+
+		return generator;
+	}
+
+	public static GenericMove parseSan(GenericBoard genericBoard, String notation) throws IllegalNotationException {
+		return new X88MoveGenerator(genericBoard).parseSan(notation);
+	}
+
+	public static String toSan(GenericBoard genericBoard, GenericMove genericMove) {
+		return new X88MoveGenerator(genericBoard).toSan(genericMove);
+	}
+
 }
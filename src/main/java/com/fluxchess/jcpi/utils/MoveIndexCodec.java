@@ -0,0 +1,76 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.utils;
+
+import com.fluxchess.jcpi.internal.x88.X88MoveGenerator;
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericMove;
+
+/**
+ * This class compresses a move sequence to one byte per move. Each move is
+ * stored as its index in the legal moves of the position, sorted by origin
+ * square, target square and promotion. Decoding replays the moves from the
+ * same initial position.
+ */
+public final class MoveIndexCodec {
+
+	private MoveIndexCodec() {
+	}
+
+	public static byte[] encode(GenericBoard genericBoard, GenericMove[] moves) {
+		if (moves == null) throw new IllegalArgumentException();
+
+		byte[] data = new byte[moves.length];
+		encode(genericBoard, moves, data, 0);
+
+		return data;
+	}
+
+	/**
+	 * Encodes the moves into the array starting at the offset. Throws an
+	 * IllegalArgumentException if a move is not legal.
+	 */
+	public static void encode(GenericBoard genericBoard, GenericMove[] moves, byte[] data, int offset) {
+		if (moves == null) throw new IllegalArgumentException();
+		if (data == null || offset < 0 || offset + moves.length > data.length) throw new IllegalArgumentException();
+
+		X88MoveGenerator generator = new X88MoveGenerator(genericBoard);
+		for (int i = 0; i < moves.length; ++i) {
+			int index = generator.getMoveIndex(moves[i]);
+			data[offset + i] = (byte) index;
+			generator.makeMove(index);
+		}
+	}
+
+	public static GenericMove[] decode(GenericBoard genericBoard, byte[] data) {
+		if (data == null) throw new IllegalArgumentException();
+
+		return decode(genericBoard, data, 0, data.length);
+	}
+
+	public static GenericMove[] decode(GenericBoard genericBoard, byte[] data, int offset, int length) {
+		if (data == null || offset < 0 || length < 0 || offset + length > data.length) throw new IllegalArgumentException();
+
+		X88MoveGenerator generator = new X88MoveGenerator(genericBoard);
+		GenericMove[] moves = new GenericMove[length];
+		for (int i = 0; i < length; ++i) {
+			moves[i] = generator.makeMove(data[offset + i] & 0xFF);
+		}
+
+		return moves;
+	}
+
+}
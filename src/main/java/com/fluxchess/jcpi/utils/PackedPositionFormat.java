@@ -0,0 +1,119 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.utils;
+
+import com.fluxchess.jcpi.models.GenericChessman;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+
+import java.nio.ByteOrder;
+
+/**
+ * This class describes the binary position file format. A file starts with
+ * a header followed by fixed-size little-endian records.
+ * <p/>
+ * Header:<br/>
+ * <code>Byte 0 - 3</code>: the magic number<br/>
+ * <code>Byte 4 - 5</code>: the format version<br/>
+ * <code>Byte 6 - 7</code>: the record size<br/>
+ * <br/>
+ * Record:<br/>
+ * <code>Byte 0 - 31</code>: the four longs of a {@link com.fluxchess.jcpi.models.PackedBoard}<br/>
+ * <code>Byte 32 - 33</code>: the score<br/>
+ * <code>Byte 34 - 35</code>: the best move<br/>
+ * <code>Byte 36</code>: the result<br/>
+ * <code>Byte 37</code>: the flags<br/>
+ * <code>Byte 38 - 39</code>: reserved<br/>
+ * <br/>
+ * A move is encoded by the following bits.<br/>
+ * <br/>
+ * <code>Bit 0 - 5</code>: the origin square<br/>
+ * <code>Bit 6 - 11</code>: the target square<br/>
+ * <code>Bit 12 - 14</code>: the promotion (0 = none, 1 - 4 = knight - queen)<br/>
+ */
+public final class PackedPositionFormat {
+
+	public static final int MAGIC = 0x5050434A; // "JCPP"
+	public static final int VERSION = 1;
+	public static final int HEADERSIZE = 8;
+	public static final int RECORDSIZE = 40;
+	public static final ByteOrder BYTEORDER = ByteOrder.LITTLE_ENDIAN;
+
+	public static final int UNKNOWN = 0;
+	public static final int WHITEWIN = 1;
+	public static final int BLACKWIN = 2;
+	public static final int DRAW = 3;
+
+	public static final int NOSCORE = Integer.MIN_VALUE;
+	public static final int NOMOVE = -1;
+
+	static final int OCCUPANCY_OFFSET = 0;
+	static final int LOWPIECES_OFFSET = 8;
+	static final int HIGHPIECES_OFFSET = 16;
+	static final int STATE_OFFSET = 24;
+	static final int SCORE_OFFSET = 32;
+	static final int BESTMOVE_OFFSET = 34;
+	static final int RESULT_OFFSET = 36;
+	static final int FLAGS_OFFSET = 37;
+
+	static final int FLAG_SCORE = 0x1;
+	static final int FLAG_BESTMOVE = 0x2;
+
+	private static final int ORIGIN_SHIFT = 0;
+	private static final int TARGET_SHIFT = 6;
+	private static final int PROMOTION_SHIFT = 12;
+	private static final int SQUARE_MASK = 0x3F;
+	private static final int PROMOTION_MASK = 0x7;
+
+	private static final GenericPosition[] positions = GenericPosition.values();
+	private static final GenericChessman[] promotions = {
+			null, GenericChessman.KNIGHT, GenericChessman.BISHOP, GenericChessman.ROOK, GenericChessman.QUEEN
+	};
+
+	private PackedPositionFormat() {
+	}
+
+	public static int encodeMove(GenericMove move) {
+		if (move == null) throw new IllegalArgumentException();
+
+		int promotion = 0;
+		if (move.promotion != null) {
+			for (int i = 1; i < promotions.length; ++i) {
+				if (promotions[i] == move.promotion) {
+					promotion = i;
+				}
+			}
+		}
+
+		return (move.from.ordinal() << ORIGIN_SHIFT)
+				| (move.to.ordinal() << TARGET_SHIFT)
+				| (promotion << PROMOTION_SHIFT);
+	}
+
+	public static GenericMove decodeMove(int move) {
+		if (move < 0) throw new IllegalArgumentException();
+
+		int promotion = (move >>> PROMOTION_SHIFT) & PROMOTION_MASK;
+		if (promotion >= promotions.length) throw new IllegalArgumentException();
+
+		return new GenericMove(
+				positions[(move >>> ORIGIN_SHIFT) & SQUARE_MASK],
+				positions[(move >>> TARGET_SHIFT) & SQUARE_MASK],
+				promotions[promotion]
+		);
+	}
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.utils;
+
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.PackedBoard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class reads positions in the {@link PackedPositionFormat} from a
+ * memory-mapped file. The reader is a cursor: {@link #next()} advances to
+ * the next record and the accessors return the fields of the current record
+ * as primitives, so iterating creates no objects per record.
+ */
+public final class PackedPositionReader implements Closeable {
+
+	private static final long WINDOWRECORDS = 1024 * 1024;
+
+	private final FileChannel channel;
+	private final long recordCount;
+
+	private ByteBuffer window = null;
+	private long windowStart = 0;
+	private long windowEnd = 0;
+	private long index = -1;
+	private int offset = 0;
+
+	public PackedPositionReader(FileChannel channel) throws IOException {
+		if (channel == null) throw new IllegalArgumentException();
+
+		this.channel = channel;
+
+		long size = channel.size();
+		if (size < PackedPositionFormat.HEADERSIZE) {
+			throw new IOException("Missing header");
+		}
+
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, PackedPositionFormat.HEADERSIZE)
+				.order(PackedPositionFormat.BYTEORDER);
+		if (header.getInt() != PackedPositionFormat.MAGIC) {
+			throw new IOException("Invalid magic number");
+		}
+		if (header.getShort() != PackedPositionFormat.VERSION) {
+			throw new IOException("Unsupported version");
+		}
+		if (header.getShort() != PackedPositionFormat.RECORDSIZE) {
+			throw new IOException("Invalid record size");
+		}
+
+		this.recordCount = (size - PackedPositionFormat.HEADERSIZE) / PackedPositionFormat.RECORDSIZE;
+	}
+
+	public long getRecordCount() {
+		return recordCount;
+	}
+
+	/**
+	 * Returns the index of the current record or -1 before the first call to
+	 * {@link #next()}.
+	 */
+	public long getIndex() {
+		return index;
+	}
+
+	/**
+	 * Advances to the next record. Returns false if there are no more records.
+	 */
+	public boolean next() throws IOException {
+		if (index + 1 >= recordCount) {
+			index = recordCount;
+			return false;
+		}
+
+		seek(index + 1);
+
+		return true;
+	}
+
+	/**
+	 * Positions the cursor on the given record.
+	 */
+	public void seek(long index) throws IOException {
+		if (index < 0 || index >= recordCount) throw new IllegalArgumentException();
+
+		if (window == null || index < windowStart || index >= windowEnd) {
+			windowStart = index;
+			windowEnd = Math.min(recordCount, index + WINDOWRECORDS);
+			window = channel.map(
+					FileChannel.MapMode.READ_ONLY,
+					PackedPositionFormat.HEADERSIZE + windowStart * PackedPositionFormat.RECORDSIZE,
+					(windowEnd - windowStart) * PackedPositionFormat.RECORDSIZE
+			).order(PackedPositionFormat.BYTEORDER);
+		}
+
+		this.index = index;
+		this.offset = (int) (index - windowStart) * PackedPositionFormat.RECORDSIZE;
+	}
+
+	public long getOccupancy() {
+		return current().getLong(offset + PackedPositionFormat.OCCUPANCY_OFFSET);
+	}
+
+	public long getLowPieces() {
+		return current().getLong(offset + PackedPositionFormat.LOWPIECES_OFFSET);
+	}
+
+	public long getHighPieces() {
+		return current().getLong(offset + PackedPositionFormat.HIGHPIECES_OFFSET);
+	}
+
+	public long getState() {
+		return current().getLong(offset + PackedPositionFormat.STATE_OFFSET);
+	}
+
+	/**
+	 * Returns the score in centipawns or {@link PackedPositionFormat#NOSCORE}.
+	 */
+	public int getScore() {
+		if ((current().get(offset + PackedPositionFormat.FLAGS_OFFSET) & PackedPositionFormat.FLAG_SCORE) == 0) {
+			return PackedPositionFormat.NOSCORE;
+		}
+
+		return window.getShort(offset + PackedPositionFormat.SCORE_OFFSET);
+	}
+
+	public int getResult() {
+		return current().get(offset + PackedPositionFormat.RESULT_OFFSET);
+	}
+
+	/**
+	 * Returns the encoded best move or {@link PackedPositionFormat#NOMOVE}.
+	 *
+	 * @see PackedPositionFormat#decodeMove(int)
+	 */
+	public int getBestMove() {
+		if ((current().get(offset + PackedPositionFormat.FLAGS_OFFSET) & PackedPositionFormat.FLAG_BESTMOVE) == 0) {
+			return PackedPositionFormat.NOMOVE;
+		}
+
+		return window.getShort(offset + PackedPositionFormat.BESTMOVE_OFFSET) & 0xFFFF;
+	}
+
+	public PackedBoard toPackedBoard() {
+		return new PackedBoard(getOccupancy(), getLowPieces(), getHighPieces(), getState());
+	}
+
+	public GenericMove toGenericBestMove() {
+		int bestMove = getBestMove();
+
+		return bestMove == PackedPositionFormat.NOMOVE ? null : PackedPositionFormat.decodeMove(bestMove);
+	}
+
+	public void close() throws IOException {
+		window = null;
+		channel.close();
+	}
+
+	private ByteBuffer current() {
+		if (index < 0 || index >= recordCount) throw new IllegalStateException();
+
+		return window;
+	}
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.utils;
+
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.PackedBoard;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * This class writes positions in the {@link PackedPositionFormat}. Records
+ * are collected in an internal buffer and written in blocks.
+ */
+public final class PackedPositionWriter implements Closeable, Flushable {
+
+	private static final int BUFFERRECORDS = 1024;
+
+	private final OutputStream output;
+	private final ByteBuffer buffer = ByteBuffer.allocate(PackedPositionFormat.RECORDSIZE * BUFFERRECORDS).order(PackedPositionFormat.BYTEORDER);
+
+	public PackedPositionWriter(OutputStream output) throws IOException {
+		if (output == null) throw new IllegalArgumentException();
+
+		this.output = output;
+
+		buffer.putInt(PackedPositionFormat.MAGIC);
+		buffer.putShort((short) PackedPositionFormat.VERSION);
+		buffer.putShort((short) PackedPositionFormat.RECORDSIZE);
+		output.write(buffer.array(), 0, buffer.position());
+		buffer.clear();
+	}
+
+	public void write(PackedBoard board) throws IOException {
+		write(board, PackedPositionFormat.NOSCORE, PackedPositionFormat.UNKNOWN, null);
+	}
+
+	/**
+	 * Writes a record. The score is in centipawns from white's point of view
+	 * or {@link PackedPositionFormat#NOSCORE}. The best move may be null.
+	 */
+	public void write(PackedBoard board, int score, int result, GenericMove bestMove) throws IOException {
+		if (board == null) throw new IllegalArgumentException();
+		if (score != PackedPositionFormat.NOSCORE && (score < Short.MIN_VALUE || score > Short.MAX_VALUE)) throw new IllegalArgumentException();
+		if (result < PackedPositionFormat.UNKNOWN || result > PackedPositionFormat.DRAW) throw new IllegalArgumentException();
+
+		if (!buffer.hasRemaining()) {
+			flushBuffer();
+		}
+
+		int flags = 0;
+		if (score != PackedPositionFormat.NOSCORE) {
+			flags |= PackedPositionFormat.FLAG_SCORE;
+		}
+		if (bestMove != null) {
+			flags |= PackedPositionFormat.FLAG_BESTMOVE;
+		}
+
+		buffer.putLong(board.occupancy);
+		buffer.putLong(board.lowPieces);
+		buffer.putLong(board.highPieces);
+		buffer.putLong(board.state);
+		buffer.putShort(score != PackedPositionFormat.NOSCORE ? (short) score : 0);
+		buffer.putShort(bestMove != null ? (short) PackedPositionFormat.encodeMove(bestMove) : 0);
+		buffer.put((byte) result);
+		buffer.put((byte) flags);
+		buffer.putShort((short) 0);
+	}
+
+	public void flush() throws IOException {
+		flushBuffer();
+		output.flush();
+	}
+
+	public void close() throws IOException {
+		flush();
+		output.close();
+	}
+
+	private void flushBuffer() throws IOException {
+		output.write(buffer.array(), 0, buffer.position());
+		buffer.clear();
+	}
+
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.utils;
+
+import com.fluxchess.jcpi.internal.x88.X88MoveGenerator;
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+import com.fluxchess.jcpi.models.PackedBoard;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * This class reads games in portable game notation from a byte stream or a
+ * memory-mapped file. Moves are validated and made on an internal board, and
+ * tokens are parsed from a reused buffer, so no string is created per move.
+ * Comments, variations and numeric annotation glyphs are skipped.
+ */
+public final class PgnReader implements Closeable {
+
+	public static final String WHITEWIN = "1-0";
+	public static final String BLACKWIN = "0-1";
+	public static final String DRAW = "1/2-1/2";
+	public static final String UNKNOWN = "*";
+
+	private static final int BUFFERSIZE = 64 * 1024;
+	private static final long WINDOWSIZE = 64L * 1024 * 1024;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final GenericBoard standardBoard = new GenericBoard(GenericBoard.STANDARDSETUP);
+
+	// Input
+	private final InputStream input;
+	private final FileChannel channel;
+	private ByteBuffer buffer;
+	private long channelPosition = 0;
+	private int pending = -1;
+
+	// Scratch buffers
+	private final StringBuilder token = new StringBuilder();
+	private byte[] value = new byte[256];
+
+	// Game state
+	private X88MoveGenerator generator = null;
+	private GenericBoard initialBoard = standardBoard;
+	private int ply = 0;
+
+	public PgnReader(InputStream input) {
+		if (input == null) throw new IllegalArgumentException();
+
+		this.input = input;
+		this.channel = null;
+		this.buffer = ByteBuffer.allocate(BUFFERSIZE);
+		this.buffer.limit(0);
+	}
+
+	/**
+	 * Creates a reader over a file channel. The file is mapped window by
+	 * window starting at the current channel position.
+	 */
+	public PgnReader(FileChannel channel) throws IOException {
+		if (channel == null) throw new IllegalArgumentException();
+
+		this.input = null;
+		this.channel = channel;
+		this.channelPosition = channel.position();
+		this.buffer = ByteBuffer.allocate(0);
+	}
+
+	/**
+	 * Reads the next game and reports its headers, moves and result to the
+	 * handler. Returns false if the end of the input has been reached.
+	 * <p/>
+	 * If the game contains an illegal move, the rest of the game is skipped
+	 * and an IllegalNotationException is thrown. The next call continues
+	 * with the following game.
+	 */
+	public boolean readGame(IPgnHandler handler) throws IOException, IllegalNotationException {
+		if (handler == null) throw new IllegalArgumentException();
+
+		generator = null;
+		initialBoard = standardBoard;
+		ply = 0;
+
+		boolean started = false;
+		boolean inMoves = false;
+		String error = null;
+
+		int c;
+		while ((c = read()) != -1) {
+			if (isWhitespace(c)) {
+				continue;
+			}
+
+			switch (c) {
+				case '[':
+					if (inMoves) {
+						// A new game starts without a result
+						pending = c;
+						return finish(error);
+					}
+					started = true;
+
+					String name = readTagName();
+					String tagValue = readTagValue();
+					if (error == null && name.equals("FEN")) {
+						try {
+							initialBoard = new GenericBoard(tagValue);
+						} catch (IllegalNotationException e) {
+							error = "Illegal FEN: " + tagValue;
+						}
+					}
+					handler.header(name, tagValue);
+					break;
+				case '{':
+					skipUntil('}');
+					break;
+				case ';':
+				case '%':
+					skipUntil('\n');
+					break;
+				case '(':
+					skipVariation();
+					break;
+				case ')':
+				case '.':
+					break;
+				case '$':
+					readToken(read());
+					break;
+				case '*':
+					handler.result(UNKNOWN);
+					return finish(error);
+				default:
+					started = true;
+					inMoves = true;
+
+					readToken(c);
+
+					if (isMoveNumber()) {
+						break;
+					}
+
+					String result = toResult();
+					if (result != null) {
+						handler.result(result);
+						return finish(error);
+					}
+
+					if (error == null) {
+						try {
+							if (generator == null) {
+								generator = new X88MoveGenerator(initialBoard);
+							}
+							GenericMove move = generator.makeSanMove(token);
+							handler.move(++ply, move);
+						} catch (IllegalNotationException e) {
+							error = "Illegal move at ply " + (ply + 1) + ": " + token;
+						}
+					}
+					break;
+			}
+		}
+
+		if (!started) {
+			return false;
+		}
+
+		return finish(error);
+	}
+
+	private boolean finish(String error) throws IllegalNotationException {
+		if (error != null) {
+			throw new IllegalNotationException(error);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Returns the current board of the game being read. The board reflects
+	 * the last move reported to the handler.
+	 */
+	public PackedBoard getPackedBoard() {
+		return generator != null ? generator.toPackedBoard() : new PackedBoard(initialBoard);
+	}
+
+	public GenericBoard getGenericBoard() {
+		return generator != null ? generator.toGenericBoard() : new PackedBoard(initialBoard).toGenericBoard();
+	}
+
+	public void close() throws IOException {
+		if (input != null) {
+			input.close();
+		} else {
+			channel.close();
+		}
+	}
+
+	private int read() throws IOException {
+		if (pending != -1) {
+			int c = pending;
+			pending = -1;
+			return c;
+		}
+
+		if (!buffer.hasRemaining() && !fill()) {
+			return -1;
+		}
+
+		return buffer.get() & 0xFF;
+	}
+
+	private boolean fill() throws IOException {
+		if (input != null) {
+			int count = input.read(buffer.array());
+			if (count <= 0) {
+				return false;
+			}
+
+			buffer.position(0);
+			buffer.limit(count);
+		} else {
+			long size = channel.size();
+			if (channelPosition >= size) {
+				return false;
+			}
+
+			long length = Math.min(WINDOWSIZE, size - channelPosition);
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, channelPosition, length);
+			channelPosition += length;
+		}
+
+		return true;
+	}
+
+	private void readToken(int c) throws IOException {
+		token.setLength(0);
+
+		while (c != -1 && !isWhitespace(c) && !isDelimiter(c)) {
+			token.append((char) c);
+			c = read();
+		}
+
+		pending = c;
+	}
+
+	private String readTagName() throws IOException {
+		int c = read();
+		while (c != -1 && isWhitespace(c)) {
+			c = read();
+		}
+
+		readToken(c);
+
+		return token.toString();
+	}
+
+	private String readTagValue() throws IOException {
+		int c = read();
+		while (c != -1 && c != '"' && c != ']') {
+			c = read();
+		}
+
+		int length = 0;
+		if (c == '"') {
+			while ((c = read()) != -1 && c != '"') {
+				if (c == '\\') {
+					c = read();
+					if (c == -1) {
+						break;
+					}
+				}
+				if (length == value.length) {
+					byte[] newValue = new byte[value.length * 2];
+					System.arraycopy(value, 0, newValue, 0, length);
+					value = newValue;
+				}
+				value[length++] = (byte) c;
+			}
+
+			// Skip to the end of the tag
+			while (c != -1 && c != ']') {
+				c = read();
+			}
+		}
+
+		return new String(value, 0, length, UTF8);
+	}
+
+	private void skipUntil(int delimiter) throws IOException {
+		int c;
+		do {
+			c = read();
+		} while (c != -1 && c != delimiter);
+	}
+
+	private void skipVariation() throws IOException {
+		int depth = 1;
+
+		int c;
+		while (depth > 0 && (c = read()) != -1) {
+			switch (c) {
+				case '(':
+					++depth;
+					break;
+				case ')':
+					--depth;
+					break;
+				case '{':
+					skipUntil('}');
+					break;
+				case ';':
+					skipUntil('\n');
+					break;
+				default:
+					break;
+			}
+		}
+	}
+
+	private boolean isMoveNumber() {
+		for (int i = 0; i < token.length(); ++i) {
+			char c = token.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private String toResult() {
+		if (contentEquals(WHITEWIN)) {
+			return WHITEWIN;
+		} else if (contentEquals(BLACKWIN)) {
+			return BLACKWIN;
+		} else if (contentEquals(DRAW)) {
+			return DRAW;
+		} else {
+			return null;
+		}
+	}
+
+	private boolean contentEquals(String s) {
+		if (token.length() != s.length()) {
+			return false;
+		}
+		for (int i = 0; i < s.length(); ++i) {
+			if (token.charAt(i) != s.charAt(i)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private static boolean isWhitespace(int c) {
+		return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+	}
+
+	private static boolean isDelimiter(int c) {
+		switch (c) {
+			case '[':
+			case ']':
+			case '{':
+			case '}':
+			case '(':
+			case ')':
+			case ';':
+			case '$':
+			case '.':
+			case '"':
+				return true;
+			default:
+				return false;
+		}
+	}
+
+}
@@ -35,6 +35,10 @@ import java.io.InputStreamReader;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
 import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -108,6 +112,313 @@ public class AbstractEngineTest {
 		assertFalse(thread.isAlive());
 	}
 
+	@Test
+	public void testCalculatingOnDispatchThread() throws Exception {
+		final Semaphore calculating = new Semaphore(0);
+		final Semaphore ready = new Semaphore(0);
+		final Semaphore stop = new Semaphore(0);
+		final Semaphore quit = new Semaphore(0);
+		Engine engine = new Engine(engineInput, engineOutput) {
+			@Override
+			public void receive(EngineStartCalculatingCommand command) {
+				calculating.release();
+				try {
+					stop.acquire();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public void receive(EngineReadyRequestCommand command) {
+				ready.release();
+			}
+
+			@Override
+			public void receive(EngineStopCalculatingCommand command) {
+				stop.release();
+			}
+
+			@Override
+			protected void quit() {
+				quit.release();
+			}
+		};
+		Thread thread = new Thread(engine);
+		thread.start();
+
+		testOutput.println("uci");
+		testOutput.println("position startpos");
+		testOutput.println("go infinite");
+		assertTrue(calculating.tryAcquire(10, TimeUnit.SECONDS));
+
+		// Answered while the engine is still calculating
+		testOutput.println("isready");
+		assertTrue(ready.tryAcquire(10, TimeUnit.SECONDS));
+
+		testOutput.println("stop");
+		testOutput.println("quit");
+		assertTrue(quit.tryAcquire(10, TimeUnit.SECONDS));
+
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+	}
+
+	@Test
+	public void testStopBeforeCalculating() throws Exception {
+		final Semaphore newGame = new Semaphore(0);
+		final Semaphore stop = new Semaphore(0);
+		final Semaphore quit = new Semaphore(0);
+		Engine engine = new Engine(engineInput, engineOutput) {
+			@Override
+			public void receive(EngineNewGameCommand command) {
+				newGame.acquireUninterruptibly();
+			}
+
+			@Override
+			public void receive(EngineStartCalculatingCommand command) {
+				stop.acquireUninterruptibly();
+			}
+
+			@Override
+			public void receive(EngineStopCalculatingCommand command) {
+				stop.release();
+			}
+
+			@Override
+			protected void quit() {
+				quit.release();
+			}
+		};
+		Thread thread = new Thread(engine);
+		thread.start();
+
+		// Stop is queued behind go while the engine is busy
+		testOutput.println("uci");
+		testOutput.println("ucinewgame");
+		testOutput.println("position startpos");
+		testOutput.println("go infinite");
+		testOutput.println("stop");
+		testOutput.println("quit");
+		Thread.sleep(100);
+		newGame.release();
+
+		assertTrue(quit.tryAcquire(10, TimeUnit.SECONDS));
+
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+	}
+
+	@Test
+	public void testStopRequested() throws Exception {
+		final Semaphore newGame = new Semaphore(0);
+		final Semaphore calculated = new Semaphore(0);
+		final Semaphore quit = new Semaphore(0);
+		final List<Boolean> stopped = Collections.synchronizedList(new ArrayList<Boolean>());
+		Engine engine = new Engine(engineInput, engineOutput) {
+			@Override
+			public void receive(EngineNewGameCommand command) {
+				newGame.acquireUninterruptibly();
+			}
+
+			@Override
+			public void receive(EngineStartCalculatingCommand command) {
+				// The stop may have been delivered before this line
+				long deadline = System.currentTimeMillis() + (command.getInfinite() ? 10000 : 100);
+				while (!command.isStopRequested() && System.currentTimeMillis() < deadline) {
+					Thread.yield();
+				}
+				stopped.add(command.isStopRequested());
+				calculated.release();
+			}
+
+			@Override
+			protected void quit() {
+				quit.release();
+			}
+		};
+		Thread thread = new Thread(engine);
+		thread.start();
+
+		// The stop arrives before the calculation starts
+		testOutput.println("uci");
+		testOutput.println("ucinewgame");
+		testOutput.println("position startpos");
+		testOutput.println("go infinite");
+		testOutput.println("stop");
+		testOutput.flush();
+		Thread.sleep(100);
+		newGame.release();
+		assertTrue(calculated.tryAcquire(10, TimeUnit.SECONDS));
+
+		// The next calculation has its own stop request
+		testOutput.println("go movetime 100");
+		testOutput.flush();
+		assertTrue(calculated.tryAcquire(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(true, false), stopped);
+
+		testOutput.println("quit");
+		assertTrue(quit.tryAcquire(10, TimeUnit.SECONDS));
+
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+	}
+
+	@Test
+	public void testStopForPendingCalculation() throws Exception {
+		final Semaphore calculating = new Semaphore(0);
+		final Semaphore proceed = new Semaphore(0);
+		final Semaphore calculated = new Semaphore(0);
+		final Semaphore quit = new Semaphore(0);
+		final List<Boolean> stopped = Collections.synchronizedList(new ArrayList<Boolean>());
+		Engine engine = new Engine(engineInput, engineOutput) {
+			@Override
+			public void receive(EngineStartCalculatingCommand command) {
+				if (!command.getInfinite()) {
+					calculating.release();
+					proceed.acquireUninterruptibly();
+				}
+				long deadline = System.currentTimeMillis() + 10000;
+				while (command.getInfinite() && !command.isStopRequested() && System.currentTimeMillis() < deadline) {
+					Thread.yield();
+				}
+				stopped.add(command.isStopRequested());
+				calculated.release();
+			}
+
+			@Override
+			protected void quit() {
+				quit.release();
+			}
+		};
+		Thread thread = new Thread(engine);
+		thread.start();
+
+		// The stops arrive during the first calculation, but belong to the second
+		testOutput.println("uci");
+		testOutput.println("position startpos");
+		testOutput.println("go depth 1");
+		testOutput.flush();
+		assertTrue(calculating.tryAcquire(10, TimeUnit.SECONDS));
+		testOutput.println("go infinite");
+		testOutput.println("stop");
+		testOutput.println("stop");
+		testOutput.flush();
+		Thread.sleep(100);
+		proceed.release();
+
+		assertTrue(calculated.tryAcquire(2, 10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList(false, true), stopped);
+
+		testOutput.println("quit");
+		assertTrue(quit.tryAcquire(10, TimeUnit.SECONDS));
+
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+	}
+
+	@Test
+	public void testPriorityCommands() throws Exception {
+		final Semaphore busy = new Semaphore(0);
+		final Semaphore newGame = new Semaphore(0);
+		final Semaphore quit = new Semaphore(0);
+		final List<String> received = Collections.synchronizedList(new ArrayList<String>());
+		Engine engine = new Engine(engineInput, engineOutput) {
+			@Override
+			public void receive(EngineNewGameCommand command) {
+				busy.release();
+				newGame.acquireUninterruptibly();
+				received.add("ucinewgame");
+			}
+
+			@Override
+			public void receive(EngineSetOptionCommand command) {
+				received.add("setoption");
+			}
+
+			@Override
+			public void receive(EngineStopCalculatingCommand command) {
+				received.add("stop");
+			}
+
+			@Override
+			protected void quit() {
+				quit.release();
+			}
+		};
+		Thread thread = new Thread(engine);
+		thread.start();
+
+		// Stop and quit overtake the commands queued while the engine is busy
+		testOutput.println("uci");
+		testOutput.println("ucinewgame");
+		assertTrue(busy.tryAcquire(10, TimeUnit.SECONDS));
+		testOutput.println("setoption name Hash value 16");
+		testOutput.println("stop");
+		testOutput.println("setoption name Hash value 32");
+		testOutput.println("quit");
+		testOutput.flush();
+		Thread.sleep(100);
+		newGame.release();
+
+		assertTrue(quit.tryAcquire(10, TimeUnit.SECONDS));
+		assertEquals(Arrays.asList("ucinewgame", "stop"), received);
+
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+	}
+
+	@Test
+	public void testPerftAndBench() throws Exception {
+		Engine engine = new Engine(engineInput, engineOutput);
+		Thread thread = new Thread(engine);
+		thread.start();
+
+		testOutput.println("uci");
+		testOutput.println("position startpos moves e2e4");
+		testOutput.println("go perft 3");
+		testOutput.flush();
+
+		String line = testInput.readLine();
+		assertTrue(line.startsWith("info depth 3 "), line);
+		assertTrue(line.endsWith(" nodes 13160"), line);
+
+		testOutput.println("bench 2 2");
+		testOutput.flush();
+
+		line = testInput.readLine();
+		assertTrue(line.startsWith("info depth 2 "), line);
+		assertTrue(line.endsWith(" nodes 3685 string bench positions 8 threads 2"), line);
+
+		testOutput.println("quit");
+
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+	}
+
+	@Test
+	public void testPerftAndBenchStopped() throws Exception {
+		Engine engine = new Engine(engineInput, engineOutput);
+		Thread thread = new Thread(engine);
+		thread.start();
+
+		// Both would run for hours
+		testOutput.println("uci");
+		testOutput.println("position startpos");
+		testOutput.println("go perft 10");
+		testOutput.println("stop");
+		testOutput.flush();
+
+		assertEquals("info string perft stopped", testInput.readLine());
+
+		testOutput.println("bench 10 2");
+		testOutput.println("quit");
+		testOutput.flush();
+
+		thread.join(10000);
+		assertFalse(thread.isAlive());
+	}
+
 	@Test
 	public void testGetUciProtocol() throws Exception {
 		final Semaphore semaphore = new Semaphore(0);
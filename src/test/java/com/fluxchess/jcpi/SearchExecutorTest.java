@@ -0,0 +1,256 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi;
+
+import com.fluxchess.jcpi.commands.EngineAnalyzeCommand;
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.commands.IProtocol;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.commands.ProtocolInitializeAnswerCommand;
+import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericColor;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import com.fluxchess.jcpi.utils.MoveGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SearchExecutorTest {
+
+	private static final ProtocolBestMoveCommand E2E4 = new ProtocolBestMoveCommand(new GenericMove(GenericPosition.e2, GenericPosition.e4), null);
+	private static final ProtocolBestMoveCommand D2D4 = new ProtocolBestMoveCommand(new GenericMove(GenericPosition.d2, GenericPosition.d4), null);
+
+	private final BlockingQueue<ProtocolBestMoveCommand> bestMoves = new LinkedBlockingQueue<>();
+	private final SearchExecutor executor = new SearchExecutor(new Protocol());
+
+	@Test
+	public void testStop() throws InterruptedException {
+		executor.start(new EngineStartCalculatingCommand(), (command, token) -> {
+			while (!token.isStopped()) {
+				Thread.yield();
+			}
+			return E2E4;
+		});
+		assertThat(executor.isSearching()).isTrue();
+
+		executor.stop();
+		assertThat(bestMoves.poll(10, TimeUnit.SECONDS)).isSameAs(E2E4);
+		assertThat(executor.close(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(bestMoves).isEmpty();
+		assertThat(executor.isSearching()).isFalse();
+	}
+
+	@Test
+	public void testStopBeforeStart() throws InterruptedException {
+		EngineStartCalculatingCommand startCommand = new EngineStartCalculatingCommand();
+		startCommand.setInfinite();
+
+		// The stop reaches the executor before the search is started
+		startCommand.requestStop();
+		executor.stop();
+		executor.start(startCommand, (command, token) -> {
+			while (!token.isStopped()) {
+				Thread.yield();
+			}
+			return E2E4;
+		});
+
+		assertThat(bestMoves.poll(10, TimeUnit.SECONDS)).isSameAs(E2E4);
+		assertThat(executor.close(10, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void testInfinite() throws InterruptedException {
+		EngineStartCalculatingCommand startCommand = new EngineStartCalculatingCommand();
+		startCommand.setInfinite();
+		executor.start(startCommand, (command, token) -> E2E4);
+
+		// The best move is held back until stop
+		assertThat(bestMoves.poll(100, TimeUnit.MILLISECONDS)).isNull();
+		executor.stop();
+		assertThat(bestMoves.poll(10, TimeUnit.SECONDS)).isSameAs(E2E4);
+	}
+
+	@Test
+	public void testPonderHit() throws InterruptedException {
+		EngineStartCalculatingCommand startCommand = new EngineStartCalculatingCommand();
+		startCommand.setPonder();
+		executor.start(startCommand, (command, token) -> {
+			// No best move is returned, so the last one is sent
+			token.setBestMove(D2D4);
+			return null;
+		});
+
+		assertThat(bestMoves.poll(100, TimeUnit.MILLISECONDS)).isNull();
+		executor.ponderHit();
+		assertThat(bestMoves.poll(10, TimeUnit.SECONDS)).isSameAs(D2D4);
+	}
+
+	@Test
+	public void testRestart() throws InterruptedException {
+		ISearch search = (command, token) -> {
+			while (!token.isStopped()) {
+				Thread.yield();
+			}
+			return command.getDepthValue() == 1 ? E2E4 : D2D4;
+		};
+		EngineStartCalculatingCommand first = new EngineStartCalculatingCommand();
+		first.setDepth(1);
+		EngineStartCalculatingCommand second = new EngineStartCalculatingCommand();
+		second.setDepth(2);
+
+		// The first search sends its best move before the second one starts
+		executor.start(first, search);
+		executor.start(second, search);
+		assertThat(bestMoves.poll(10, TimeUnit.SECONDS)).isSameAs(E2E4);
+		assertThat(bestMoves.poll(100, TimeUnit.MILLISECONDS)).isNull();
+
+		assertThat(executor.close(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(bestMoves.poll(10, TimeUnit.SECONDS)).isSameAs(D2D4);
+	}
+
+	@Test
+	public void testDeadline() throws InterruptedException {
+		EngineStartCalculatingCommand startCommand = new EngineStartCalculatingCommand();
+		startCommand.setClock(GenericColor.BLACK, 1000);
+
+		// Black to move, so the search is stopped at the hard limit of its clock
+		executor.start(new EngineAnalyzeCommand(new GenericBoard(GenericBoard.STANDARDSETUP), Collections.singletonList(E2E4.bestMove)),
+				startCommand, (command, token) -> {
+					while (!token.isStopped()) {
+						Thread.yield();
+					}
+					return D2D4;
+				});
+
+		assertThat(bestMoves.poll(10, TimeUnit.SECONDS)).isSameAs(D2D4);
+		assertThat(executor.getTimeManager().getHardLimit()).isEqualTo(147);
+		assertThat(executor.close(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(bestMoves).isEmpty();
+	}
+
+	@Test
+	public void testWatchdog() throws InterruptedException {
+		EngineStartCalculatingCommand startCommand = new EngineStartCalculatingCommand();
+		startCommand.setMoveTime(20);
+		CountDownLatch latch = new CountDownLatch(1);
+
+		// The search ignores stop, so the first legal move is sent for it
+		executor.setGraceMargin(10);
+		executor.start(new EngineAnalyzeCommand(new GenericBoard(GenericBoard.STANDARDSETUP), Collections.emptyList()),
+				startCommand, (command, token) -> {
+					try {
+						latch.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return E2E4;
+				});
+
+		ProtocolBestMoveCommand bestMove = bestMoves.poll(10, TimeUnit.SECONDS);
+		assertThat(bestMove).isNotNull();
+		assertThat(MoveGenerator.getGenericMoves(new GenericBoard(GenericBoard.STANDARDSETUP))).contains(bestMove.bestMove);
+
+		latch.countDown();
+		assertThat(executor.close(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(bestMoves).isEmpty();
+	}
+
+	@Test
+	public void testWatchdogAnswersByDeadline() throws InterruptedException {
+		EngineStartCalculatingCommand startCommand = new EngineStartCalculatingCommand();
+		startCommand.setMoveTime(300);
+		CountDownLatch latch = new CountDownLatch(1);
+
+		// The best move is sent at the hard limit, not a grace margin after it
+		executor.setGraceMargin(200);
+		long startTime = System.nanoTime();
+		executor.start(new EngineAnalyzeCommand(new GenericBoard(GenericBoard.STANDARDSETUP), Collections.emptyList()),
+				startCommand, (command, token) -> {
+					try {
+						latch.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return E2E4;
+				});
+
+		assertThat(bestMoves.poll(10, TimeUnit.SECONDS)).isNotNull();
+		long duration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+		assertThat(duration).isLessThan(executor.getTimeManager().getHardLimit() + 150);
+
+		latch.countDown();
+		assertThat(executor.close(10, TimeUnit.SECONDS)).isTrue();
+	}
+
+	@Test
+	public void testWatchdogDetach() throws InterruptedException {
+		EngineStartCalculatingCommand startCommand = new EngineStartCalculatingCommand();
+		startCommand.setMoveTime(20);
+		CountDownLatch latch = new CountDownLatch(1);
+
+		// The search ignores stop and hangs after the watchdog has answered
+		executor.setGraceMargin(10);
+		executor.start(new EngineAnalyzeCommand(new GenericBoard(GenericBoard.STANDARDSETUP), Collections.emptyList()),
+				startCommand, (command, token) -> {
+					try {
+						latch.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return E2E4;
+				});
+
+		assertThat(bestMoves.poll(10, TimeUnit.SECONDS)).isNotNull();
+
+		// The next search does not wait for the hung one
+		executor.start(new EngineStartCalculatingCommand(), (command, token) -> D2D4);
+		assertThat(bestMoves.poll(10, TimeUnit.SECONDS)).isSameAs(D2D4);
+
+		// The hung search returns, but its best move was already sent
+		latch.countDown();
+		assertThat(executor.close(10, TimeUnit.SECONDS)).isTrue();
+		Thread.sleep(100);
+		assertThat(bestMoves).isEmpty();
+	}
+
+	private final class Protocol implements IProtocol {
+
+		public void send(ProtocolInitializeAnswerCommand command) {
+		}
+
+		public void send(ProtocolReadyAnswerCommand command) {
+		}
+
+		public void send(ProtocolBestMoveCommand command) {
+			bestMoves.add(command);
+		}
+
+		public void send(ProtocolInformationCommand command) {
+		}
+
+	}
+
+}
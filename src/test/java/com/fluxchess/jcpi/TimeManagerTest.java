@@ -0,0 +1,105 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi;
+
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.models.GenericColor;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TimeManagerTest {
+
+	@Test
+	public void testLimits() {
+		TimeManager timeManager = new TimeManager();
+
+		EngineStartCalculatingCommand command = new EngineStartCalculatingCommand();
+		command.setDepth(10);
+		timeManager.start(command, GenericColor.WHITE);
+		assertThat(timeManager.getSoftLimit()).isEqualTo(-1);
+		assertThat(timeManager.getHardLimit()).isEqualTo(-1);
+		assertThat(timeManager.isHardLimitReached()).isFalse();
+
+		command.setMoveTime(1000);
+		timeManager.start(command, GenericColor.WHITE);
+		assertThat(timeManager.getSoftLimit()).isEqualTo(990);
+		assertThat(timeManager.getHardLimit()).isEqualTo(990);
+
+		// (60010 - 10) / 20 + 1000 and three times that
+		command.reset();
+		command.setClock(GenericColor.WHITE, 60010);
+		command.setClockIncrement(GenericColor.WHITE, 1000);
+		command.setClock(GenericColor.BLACK, 10);
+		timeManager.start(command, GenericColor.WHITE);
+		assertThat(timeManager.getSoftLimit()).isEqualTo(4000);
+		assertThat(timeManager.getHardLimit()).isEqualTo(12000);
+
+		// Half of the remaining time is kept
+		timeManager.start(command, GenericColor.BLACK);
+		assertThat(timeManager.getSoftLimit()).isEqualTo(0);
+		command.setMovesToGo(2);
+		timeManager.start(command, GenericColor.WHITE);
+		assertThat(timeManager.getSoftLimit()).isEqualTo(30000);
+		assertThat(timeManager.getHardLimit()).isEqualTo(30000);
+
+		// Except before the time control
+		command.setMovesToGo(1);
+		timeManager.start(command, GenericColor.WHITE);
+		assertThat(timeManager.getHardLimit()).isEqualTo(60000);
+
+		command.setInfinite();
+		timeManager.start(command, GenericColor.WHITE);
+		assertThat(timeManager.getHardLimit()).isEqualTo(-1);
+	}
+
+	@Test
+	public void testOverhead() {
+		TimeManager timeManager = new TimeManager();
+		timeManager.setMinimumOverhead(0);
+		assertThat(timeManager.getOverhead()).isEqualTo(0);
+
+		for (int i = 0; i < 100; ++i) {
+			timeManager.addOverhead(40000000);
+		}
+		assertThat(timeManager.getOverhead()).isBetween(35L, 40L);
+
+		EngineStartCalculatingCommand command = new EngineStartCalculatingCommand();
+		command.setMoveTime(1000);
+		timeManager.start(command, null);
+		assertThat(timeManager.getHardLimit()).isEqualTo(1000 - timeManager.getOverhead());
+	}
+
+	@Test
+	public void testPolling() throws InterruptedException {
+		TimeManager timeManager = new TimeManager();
+		timeManager.setMinimumOverhead(0);
+
+		EngineStartCalculatingCommand command = new EngineStartCalculatingCommand();
+		command.setMoveTime(1);
+		timeManager.start(command, null);
+		Thread.sleep(10);
+
+		// The clock is only read at multiples of the poll interval
+		assertThat(timeManager.isHardLimitReached(1)).isFalse();
+		assertThat(timeManager.isHardLimitReached(TimeManager.POLL_INTERVAL)).isTrue();
+		assertThat(timeManager.isHardLimitReached(TimeManager.POLL_INTERVAL + 1)).isTrue();
+
+		timeManager.restart();
+		assertThat(timeManager.isHardLimitReached(1)).isFalse();
+	}
+
+}
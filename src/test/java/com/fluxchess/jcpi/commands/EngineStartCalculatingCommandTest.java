@@ -0,0 +1,56 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.commands;
+
+import com.fluxchess.jcpi.models.GenericColor;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class EngineStartCalculatingCommandTest {
+
+	@Test
+	void testEngineStartCalculatingCommand() {
+		EngineStartCalculatingCommand command = new EngineStartCalculatingCommand();
+		assertThat(command.hasDepth()).isFalse();
+		assertThat(command.getDepth()).isNull();
+		assertThat(catchThrowable(command::getDepthValue)).isInstanceOf(IllegalStateException.class);
+
+		command.setDepth(0);
+		command.setClock(GenericColor.BLACK, 1000);
+		command.setNodes(Long.valueOf(5000));
+		assertThat(command.hasDepth()).isTrue();
+		assertThat(command.getDepthValue()).isEqualTo(0);
+		assertThat(command.getDepth()).isEqualTo(0);
+		assertThat(command.hasClock(GenericColor.WHITE)).isFalse();
+		assertThat(command.getClock(GenericColor.WHITE)).isNull();
+		assertThat(command.getClockValue(GenericColor.BLACK)).isEqualTo(1000);
+		assertThat(command.getNodesValue()).isEqualTo(5000);
+		assertThat(command.hasMoveTime()).isFalse();
+
+		command.setInfinite();
+		command.requestStop();
+		assertThat(command.isStopRequested()).isTrue();
+		command.reset();
+		assertThat(command.isStopRequested()).isFalse();
+		assertThat(command.hasDepth()).isFalse();
+		assertThat(command.hasClock(GenericColor.BLACK)).isFalse();
+		assertThat(command.hasNodes()).isFalse();
+		assertThat(command.getInfinite()).isFalse();
+	}
+
+}
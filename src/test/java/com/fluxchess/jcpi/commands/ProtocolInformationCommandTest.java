@@ -0,0 +1,51 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.commands;
+
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class ProtocolInformationCommandTest {
+
+	@Test
+	void testProtocolInformationCommand() {
+		ProtocolInformationCommand command = new ProtocolInformationCommand();
+		assertThat(command.hasCentipawns()).isFalse();
+		assertThat(command.getCentipawns()).isNull();
+		assertThat(catchThrowable(command::getCentipawnsValue)).isInstanceOf(IllegalStateException.class);
+
+		command.setCentipawns(-15);
+		command.setNodes(1L << 40);
+		command.setMoveList(Collections.singletonList(new GenericMove(GenericPosition.e2, GenericPosition.e4)));
+		assertThat(command.hasCentipawns()).isTrue();
+		assertThat(command.getCentipawnsValue()).isEqualTo(-15);
+		assertThat(command.getNodes()).isEqualTo(1L << 40);
+		assertThat(command.hasMate()).isFalse();
+
+		// The instance can be reused for the next line
+		command.reset();
+		assertThat(command.hasCentipawns()).isFalse();
+		assertThat(command.hasNodes()).isFalse();
+		assertThat(command.getMoveList()).isNull();
+	}
+
+}
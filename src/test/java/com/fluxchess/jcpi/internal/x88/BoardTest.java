@@ -22,6 +22,7 @@ import com.fluxchess.jcpi.models.GenericFile;
 import com.fluxchess.jcpi.models.GenericPiece;
 import com.fluxchess.jcpi.models.GenericPosition;
 import com.fluxchess.jcpi.models.IllegalNotationException;
+import com.fluxchess.jcpi.models.PackedBoard;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -83,6 +84,22 @@ class BoardTest {
 		assertThat(board.toGenericBoard()).isEqualTo(genericBoard);
 	}
 
+	@Test
+	void testPackedBoard() throws IllegalNotationException {
+		GenericBoard genericBoard = new GenericBoard("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R b Kq - 3 17");
+		Board board = new Board(genericBoard);
+
+		PackedBoard packedBoard = board.toPackedBoard();
+		assertThat(packedBoard).isEqualTo(new PackedBoard(genericBoard));
+		assertThat(new Board(packedBoard).toGenericBoard()).isEqualTo(genericBoard);
+
+		// Test en passant
+		genericBoard = new GenericBoard("5k2/8/8/8/3Pp3/8/8/3K4 b - d3 0 1");
+		packedBoard = new Board(genericBoard).toPackedBoard();
+		assertThat(packedBoard.getEnPassant()).isEqualTo(GenericPosition.d3);
+		assertThat(new Board(packedBoard).enPassant).isEqualTo(Square.d3);
+	}
+
 	@Test
 	void testToString() throws IllegalNotationException {
 		String fen = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.internal.x88;
+
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericChessman;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class SanNotationTest {
+
+	@Test
+	public void testParse() throws IllegalNotationException {
+		X88MoveGenerator generator = new X88MoveGenerator(new GenericBoard(GenericBoard.STANDARDSETUP));
+
+		assertThat(generator.parseSan("e4")).isEqualTo(new GenericMove(GenericPosition.e2, GenericPosition.e4));
+		assertThat(generator.parseSan("Nf3")).isEqualTo(new GenericMove(GenericPosition.g1, GenericPosition.f3));
+		assertThat(generator.parseSan("Ng1-f3!?")).isEqualTo(new GenericMove(GenericPosition.g1, GenericPosition.f3));
+		assertThat(generator.parseSan("Pe2e4")).isEqualTo(new GenericMove(GenericPosition.e2, GenericPosition.e4));
+	}
+
+	@Test
+	public void testParseDisambiguation() throws IllegalNotationException {
+		X88MoveGenerator blackGenerator = new X88MoveGenerator(new GenericBoard("rnbqkb1r/ppp1pppp/5n2/3p4/8/8/PPPPPPPP/RNBQKBNR b KQkq - 0 1"));
+
+		assertThat(blackGenerator.parseSan("Nbd7")).isEqualTo(new GenericMove(GenericPosition.b8, GenericPosition.d7));
+		assertThat(blackGenerator.parseSan("Nfd7")).isEqualTo(new GenericMove(GenericPosition.f6, GenericPosition.d7));
+
+		X88MoveGenerator generator = new X88MoveGenerator(new GenericBoard("4k3/8/8/8/8/8/1N3N2/4K3 w - - 0 1"));
+
+		assertThat(generator.parseSan("Nbd3")).isEqualTo(new GenericMove(GenericPosition.b2, GenericPosition.d3));
+		assertThat(generator.parseSan("Nfd3")).isEqualTo(new GenericMove(GenericPosition.f2, GenericPosition.d3));
+		assertThat(catchThrowable(() -> generator.parseSan("Nd3"))).isInstanceOf(IllegalNotationException.class);
+		assertThat(catchThrowable(() -> generator.parseSan("Nd4"))).isInstanceOf(IllegalNotationException.class);
+	}
+
+	@Test
+	public void testParseSpecialMoves() throws IllegalNotationException {
+		X88MoveGenerator generator = new X88MoveGenerator(new GenericBoard("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1"));
+
+		assertThat(generator.parseSan("O-O")).isEqualTo(new GenericMove(GenericPosition.e1, GenericPosition.g1));
+		assertThat(generator.parseSan("0-0-0")).isEqualTo(new GenericMove(GenericPosition.e1, GenericPosition.c1));
+		assertThat(generator.parseSan("exd6")).isEqualTo(new GenericMove(GenericPosition.e5, GenericPosition.d6));
+		assertThat(generator.parseSan("b8=Q")).isEqualTo(new GenericMove(GenericPosition.b7, GenericPosition.b8, GenericChessman.QUEEN));
+		assertThat(generator.parseSan("bxa8N+")).isEqualTo(new GenericMove(GenericPosition.b7, GenericPosition.a8, GenericChessman.KNIGHT));
+		assertThat(catchThrowable(() -> generator.parseSan("b8"))).isInstanceOf(IllegalNotationException.class);
+	}
+
+	@Test
+	public void testToSan() throws IllegalNotationException {
+		X88MoveGenerator generator = new X88MoveGenerator(new GenericBoard("r3k2r/1P6/8/3pP3/8/8/8/R3K2R w KQkq d6 0 1"));
+
+		assertThat(generator.toSan(new GenericMove(GenericPosition.e1, GenericPosition.g1))).isEqualTo("O-O");
+		assertThat(generator.toSan(new GenericMove(GenericPosition.e1, GenericPosition.c1))).isEqualTo("O-O-O");
+		assertThat(generator.toSan(new GenericMove(GenericPosition.e5, GenericPosition.d6))).isEqualTo("exd6");
+		assertThat(generator.toSan(new GenericMove(GenericPosition.b7, GenericPosition.a8, GenericChessman.QUEEN))).isEqualTo("bxa8=Q+");
+		assertThat(generator.toSan(new GenericMove(GenericPosition.b7, GenericPosition.b8, GenericChessman.QUEEN))).isEqualTo("b8=Q+");
+		assertThat(generator.toSan(new GenericMove(GenericPosition.a1, GenericPosition.a8))).isEqualTo("Rxa8+");
+
+		generator = new X88MoveGenerator(new GenericBoard("4k3/8/8/8/1N6/8/1N3N2/4K3 w - - 0 1"));
+
+		assertThat(generator.toSan(new GenericMove(GenericPosition.f2, GenericPosition.d3))).isEqualTo("Nfd3");
+		assertThat(generator.toSan(new GenericMove(GenericPosition.b2, GenericPosition.d3))).isEqualTo("Nb2d3");
+		assertThat(generator.toSan(new GenericMove(GenericPosition.b4, GenericPosition.d3))).isEqualTo("N4d3");
+	}
+
+	@Test
+	public void testToSanMate() throws IllegalNotationException {
+		X88MoveGenerator generator = new X88MoveGenerator(new GenericBoard("6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1"));
+
+		assertThat(generator.toSan(new GenericMove(GenericPosition.a1, GenericPosition.a8))).isEqualTo("Ra8#");
+		assertThat(generator.isCheckmate()).isFalse();
+
+		generator.makeMove(new GenericMove(GenericPosition.a1, GenericPosition.a8));
+
+		assertThat(generator.isCheck()).isTrue();
+		assertThat(generator.isCheckmate()).isTrue();
+	}
+
+}
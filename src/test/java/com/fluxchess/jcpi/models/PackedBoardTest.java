@@ -0,0 +1,107 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.models;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class PackedBoardTest {
+
+	@Test
+	public void testToGenericBoard() throws IllegalNotationException {
+		String[] fens = {
+				"rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+				"r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+				"rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1",
+				"8/1n4N1/2k5/8/8/5K2/1N4n1/8 b - - 47 103",
+				"8/8/8/8/8/8/8/8 w - - 0 1"
+		};
+
+		for (String fen : fens) {
+			GenericBoard board = new GenericBoard(fen);
+			PackedBoard packedBoard = new PackedBoard(board);
+
+			assertThat(packedBoard.toGenericBoard()).isEqualTo(board);
+			assertThat(packedBoard.toString()).isEqualTo(fen);
+		}
+
+		GenericBoard board = new GenericBoard(328);
+		assertThat(new PackedBoard(board).toGenericBoard()).isEqualTo(board);
+	}
+
+	@Test
+	public void testAccessors() throws IllegalNotationException {
+		PackedBoard packedBoard = new PackedBoard(new GenericBoard("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b Kq e3 5 12"));
+
+		assertThat(packedBoard.getPiece(GenericPosition.e4)).isEqualTo(GenericPiece.WHITEPAWN);
+		assertThat(packedBoard.getPiece(GenericPosition.e2)).isNull();
+		assertThat(packedBoard.getPiece(GenericPosition.h8)).isEqualTo(GenericPiece.BLACKROOK);
+		assertThat(packedBoard.getCastling(GenericColor.WHITE, GenericCastling.KINGSIDE)).isEqualTo(GenericFile.H);
+		assertThat(packedBoard.getCastling(GenericColor.WHITE, GenericCastling.QUEENSIDE)).isNull();
+		assertThat(packedBoard.getCastling(GenericColor.BLACK, GenericCastling.QUEENSIDE)).isEqualTo(GenericFile.A);
+		assertThat(packedBoard.getEnPassant()).isEqualTo(GenericPosition.e3);
+		assertThat(packedBoard.getActiveColor()).isEqualTo(GenericColor.BLACK);
+		assertThat(packedBoard.getHalfMoveClock()).isEqualTo(5);
+		assertThat(packedBoard.getFullMoveNumber()).isEqualTo(12);
+	}
+
+	@Test
+	public void testEqualsHashCode() throws IllegalNotationException {
+		PackedBoard board1 = new PackedBoard(new GenericBoard(GenericBoard.STANDARDSETUP));
+		PackedBoard board2 = new PackedBoard(new GenericBoard("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1"));
+		PackedBoard board3 = new PackedBoard(new GenericBoard("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQk - 0 1"));
+
+		assertThat(board1).isEqualTo(board2);
+		assertThat(board1.hashCode()).isEqualTo(board2.hashCode());
+		assertThat(board1).isNotEqualTo(board3);
+		assertThat(board1.equals(null)).isFalse();
+
+		PackedBoard board4 = new PackedBoard(board1.occupancy, board1.lowPieces, board1.highPieces, board1.state);
+		assertThat(board4).isEqualTo(board1);
+	}
+
+	@Test
+	public void testWithFullMoveNumber() throws IllegalNotationException {
+		PackedBoard board = new PackedBoard(new GenericBoard("4k3/8/8/8/8/8/8/4K3 b - - 7 42"));
+
+		PackedBoard normalized = board.withFullMoveNumber(1);
+		assertThat(normalized.getFullMoveNumber()).isEqualTo(1);
+		assertThat(normalized.getHalfMoveClock()).isEqualTo(7);
+		assertThat(normalized.getActiveColor()).isEqualTo(GenericColor.BLACK);
+		assertThat(normalized.withFullMoveNumber(42)).isEqualTo(board);
+		assertThat(board.withFullMoveNumber(42)).isSameAs(board);
+	}
+
+	@Test
+	public void testInvalidValues() {
+		PackedBoard board = new PackedBoard(new GenericBoard(GenericBoard.STANDARDSETUP));
+
+		// Piece code out of range
+		Throwable thrown = catchThrowable(() -> new PackedBoard(board.occupancy, board.lowPieces | 0xFL, board.highPieces, board.state));
+		assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+
+		// Piece code without occupied square
+		thrown = catchThrowable(() -> new PackedBoard(0, 1, 0, board.state));
+		assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+
+		// Full move number zero
+		thrown = catchThrowable(() -> new PackedBoard(board.occupancy, board.lowPieces, board.highPieces, board.state & 0xFFFFFFFFFFL));
+		assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
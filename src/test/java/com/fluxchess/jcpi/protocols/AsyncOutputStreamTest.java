@@ -0,0 +1,136 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.protocols;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class AsyncOutputStreamTest {
+
+	@Test
+	public void testWrite() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		AsyncOutputStream stream = new AsyncOutputStream(buffer, 4);
+		PrintStream output = new PrintStream(stream, false, "UTF-8");
+
+		for (int i = 0; i < 100; ++i) {
+			output.print("info depth " + i + "\n");
+		}
+		output.print("bestmove e2e4\n");
+		output.print("readyok");
+		output.close();
+
+		String result = buffer.toString("UTF-8");
+		assertThat(result).endsWith("bestmove e2e4\nreadyok");
+		assertThat(result.split("\n")).hasSize(102 - (int) stream.getDroppedLines());
+	}
+
+	@Test
+	public void testDropInfo() throws IOException, InterruptedException {
+		GatedOutputStream gate = new GatedOutputStream();
+		AsyncOutputStream stream = new AsyncOutputStream(gate, 2);
+
+		// The writer thread takes the first line and waits at the gate
+		stream.write("info depth 1\n".getBytes("US-ASCII"));
+		gate.entered.await();
+
+		stream.write("info depth 2\n".getBytes("US-ASCII"));
+		stream.write("bestmove e2e4\n".getBytes("US-ASCII"));
+		stream.write("info depth 3\n".getBytes("US-ASCII"));
+		stream.write("info depth 4\n".getBytes("US-ASCII"));
+		assertThat(stream.getDroppedLines()).isEqualTo(2);
+
+		gate.open.countDown();
+		stream.close();
+
+		assertThat(gate.buffer.toString("US-ASCII")).isEqualTo("info depth 1\nbestmove e2e4\ninfo depth 4\n");
+	}
+
+	@Test
+	public void testError() throws InterruptedException {
+		AsyncOutputStream stream = new AsyncOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) throws IOException {
+				throw new IOException();
+			}
+		}, 2);
+
+		Throwable thrown = null;
+		for (int i = 0; i < 100 && thrown == null; ++i) {
+			thrown = catchThrowable(() -> stream.write("readyok\n".getBytes("US-ASCII")));
+			Thread.sleep(10);
+		}
+		assertThat(thrown).isInstanceOf(IOException.class);
+	}
+
+	@Test
+	public void testWriterInterrupted() throws IOException, InterruptedException {
+		AtomicReference<Thread> writer = new AtomicReference<>();
+		CountDownLatch written = new CountDownLatch(1);
+		AsyncOutputStream stream = new AsyncOutputStream(new OutputStream() {
+			@Override
+			public void write(int b) {
+				writer.set(Thread.currentThread());
+				written.countDown();
+			}
+		}, 1);
+
+		stream.write("readyok\n".getBytes("US-ASCII"));
+		written.await();
+		writer.get().interrupt();
+		writer.get().join(10000);
+
+		// Senders fail instead of waiting for the full queue
+		assertThat(catchThrowable(() -> {
+			stream.write("readyok\n".getBytes("US-ASCII"));
+			stream.write("bestmove e2e4\n".getBytes("US-ASCII"));
+		})).isInstanceOf(IOException.class);
+	}
+
+	private static final class GatedOutputStream extends OutputStream {
+
+		private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch open = new CountDownLatch(1);
+
+		@Override
+		public void write(int b) throws IOException {
+			write(new byte[]{(byte) b}, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			entered.countDown();
+			try {
+				open.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			buffer.write(b, off, len);
+		}
+
+	}
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.protocols;
+
+import com.fluxchess.jcpi.commands.EngineInitializeRequestCommand;
+import com.fluxchess.jcpi.commands.EngineReadyRequestCommand;
+import com.fluxchess.jcpi.commands.IEngineCommand;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class InProcessProtocolHandlerTest {
+
+	@Test
+	public void testSession() throws InterruptedException {
+		InProcessProtocolHandler handler = new InProcessProtocolHandler();
+		InProcessProtocolHandler.Client client = handler.getClient();
+		AtomicReference<Throwable> result = new AtomicReference<>();
+
+		Thread engine = new Thread(() -> {
+			try {
+				while (true) {
+					IEngineCommand command = handler.receive();
+					if (command instanceof EngineReadyRequestCommand) {
+						ProtocolInformationCommand information = new ProtocolInformationCommand();
+						information.setDepth(1);
+						handler.send(information);
+						information.reset();
+						information.setDepth(2);
+						handler.send(information);
+						handler.send(new ProtocolReadyAnswerCommand(""));
+						handler.send(new ProtocolBestMoveCommand(new GenericMove(GenericPosition.e2, GenericPosition.e4), null));
+					}
+				}
+			} catch (IOException e) {
+				result.set(e);
+			}
+		});
+		engine.start();
+
+		assertThat(client.poll()).isNull();
+		assertThat(client.receive(10, TimeUnit.MILLISECONDS)).isNull();
+
+		client.send(new EngineInitializeRequestCommand());
+		client.send(new EngineReadyRequestCommand());
+
+		// The engine reuses the information command
+		assertThat(((ProtocolInformationCommand) client.receive()).getDepthValue()).isEqualTo(1);
+		assertThat(((ProtocolInformationCommand) client.receive()).getDepthValue()).isEqualTo(2);
+		assertThat(client.receive(10, TimeUnit.SECONDS)).isInstanceOf(ProtocolReadyAnswerCommand.class);
+		ProtocolBestMoveCommand bestMove = (ProtocolBestMoveCommand) client.receive();
+		assertThat(bestMove.bestMove).isEqualTo(new GenericMove(GenericPosition.e2, GenericPosition.e4));
+
+		client.close();
+		engine.join(10000);
+
+		assertThat(engine.isAlive()).isFalse();
+		assertThat(result.get()).isInstanceOf(EOFException.class);
+		assertThat(catchThrowable(() -> client.send(new EngineReadyRequestCommand()))).isInstanceOf(IllegalStateException.class);
+	}
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.protocols;
+
+import com.fluxchess.jcpi.commands.IEngineCommand;
+import com.fluxchess.jcpi.commands.IProtocolCommand;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.commands.ProtocolInitializeAnswerCommand;
+import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ThrottledProtocolHandlerTest {
+
+	@Test
+	public void testCoalescing() {
+		RecordingProtocolHandler recorder = new RecordingProtocolHandler();
+		ThrottledProtocolHandler handler = new ThrottledProtocolHandler(recorder, 1);
+
+		// The first line uses up the burst
+		ProtocolInformationCommand command = new ProtocolInformationCommand();
+		command.setNodes(1);
+		handler.send(command);
+		assertThat(recorder.commands).hasSize(1);
+
+		// The sender reuses the command, the pending copy keeps its values
+		for (int i = 2; i <= 100; ++i) {
+			command.setNodes(i);
+			handler.send(command);
+		}
+		for (int depth = 1; depth <= 10; ++depth) {
+			for (int pvNumber = 1; pvNumber <= 2; ++pvNumber) {
+				ProtocolInformationCommand pv = new ProtocolInformationCommand();
+				pv.setPvNumber(pvNumber);
+				pv.setDepth(depth);
+				pv.setMoveList(Arrays.asList(new GenericMove(GenericPosition.e2, GenericPosition.e4)));
+				handler.send(pv);
+			}
+		}
+		ProtocolInformationCommand currentMove = new ProtocolInformationCommand();
+		currentMove.setCurrentMove(new GenericMove(GenericPosition.d2, GenericPosition.d4));
+		handler.send(currentMove);
+		command.setNodes(101);
+		command.setString("string");
+		handler.send(command);
+
+		// Strings are not throttled
+		assertThat(recorder.commands).hasSize(2);
+		assertThat(((ProtocolInformationCommand) recorder.commands.get(1)).getString()).isEqualTo("string");
+
+		handler.send(new ProtocolBestMoveCommand(new GenericMove(GenericPosition.e2, GenericPosition.e4), null));
+
+		assertThat(recorder.commands).hasSize(7);
+		ProtocolInformationCommand pv1 = (ProtocolInformationCommand) recorder.commands.get(2);
+		assertThat(pv1.getPvNumber()).isEqualTo(1);
+		assertThat(pv1.getDepth()).isEqualTo(10);
+		ProtocolInformationCommand pv2 = (ProtocolInformationCommand) recorder.commands.get(3);
+		assertThat(pv2.getPvNumber()).isEqualTo(2);
+		assertThat(pv2.getDepth()).isEqualTo(10);
+		assertThat(((ProtocolInformationCommand) recorder.commands.get(4)).getCurrentMove())
+				.isEqualTo(new GenericMove(GenericPosition.d2, GenericPosition.d4));
+		assertThat(((ProtocolInformationCommand) recorder.commands.get(5)).getNodes()).isEqualTo(100);
+		assertThat(recorder.commands.get(6)).isInstanceOf(ProtocolBestMoveCommand.class);
+	}
+
+	@Test
+	public void testTimedFlush() throws InterruptedException {
+		RecordingProtocolHandler recorder = new RecordingProtocolHandler();
+		ThrottledProtocolHandler handler = new ThrottledProtocolHandler(recorder, 10);
+
+		// The burst allows ten lines, the last one is held back
+		for (int i = 1; i <= 11; ++i) {
+			ProtocolInformationCommand command = new ProtocolInformationCommand();
+			command.setNodes(i);
+			handler.send(command);
+		}
+		assertThat(recorder.commands).hasSize(10);
+
+		// It is sent when the bucket has refilled, without another command
+		for (int i = 0; i < 100 && recorder.commands.size() < 11; ++i) {
+			Thread.sleep(20);
+		}
+		assertThat(recorder.commands).hasSize(11);
+		assertThat(((ProtocolInformationCommand) recorder.commands.get(10)).getNodesValue()).isEqualTo(11);
+	}
+
+	private static final class RecordingProtocolHandler implements IProtocolHandler {
+
+		private final List<IProtocolCommand> commands = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public IEngineCommand receive() {
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public void send(ProtocolInitializeAnswerCommand command) {
+			commands.add(command);
+		}
+
+		@Override
+		public void send(ProtocolReadyAnswerCommand command) {
+			commands.add(command);
+		}
+
+		@Override
+		public void send(ProtocolBestMoveCommand command) {
+			commands.add(command);
+		}
+
+		@Override
+		public void send(ProtocolInformationCommand command) {
+			commands.add(command);
+		}
+
+	}
+
+}
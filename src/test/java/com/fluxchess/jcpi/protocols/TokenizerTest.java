@@ -0,0 +1,84 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.protocols;
+
+import com.fluxchess.jcpi.models.GenericChessman;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class TokenizerTest {
+
+	@Test
+	public void testNext() {
+		Tokenizer tokenizer = new Tokenizer();
+		tokenizer.reset("  go\twtime  100 \t");
+
+		assertThat(tokenizer.next()).isTrue();
+		assertThat(tokenizer.tokenEquals("GO")).isTrue();
+		assertThat(tokenizer.next()).isTrue();
+		assertThat(tokenizer.token()).isEqualTo("wtime");
+		assertThat(tokenizer.hasNext()).isTrue();
+		assertThat(tokenizer.next()).isTrue();
+		assertThat(tokenizer.token()).isEqualTo("100");
+		assertThat(tokenizer.getTrimmedEnd()).isEqualTo(tokenizer.getEnd());
+		assertThat(tokenizer.hasNext()).isFalse();
+		assertThat(tokenizer.next()).isFalse();
+	}
+
+	@Test
+	public void testParseNumber() throws ParseException {
+		Tokenizer tokenizer = new Tokenizer();
+		tokenizer.reset("-42 +7 9223372036854775807 -9223372036854775808 9223372036854775808 2147483648 12a -");
+
+		tokenizer.next();
+		assertThat(tokenizer.parseInt()).isEqualTo(-42);
+		tokenizer.next();
+		assertThat(tokenizer.parseLong()).isEqualTo(7);
+		tokenizer.next();
+		assertThat(tokenizer.parseLong()).isEqualTo(Long.MAX_VALUE);
+		tokenizer.next();
+		assertThat(tokenizer.parseLong()).isEqualTo(Long.MIN_VALUE);
+		tokenizer.next();
+		assertThat(catchThrowable(tokenizer::parseLong)).isInstanceOf(ParseException.class);
+		tokenizer.next();
+		assertThat(catchThrowable(tokenizer::parseInt)).isInstanceOf(ParseException.class);
+		tokenizer.next();
+		assertThat(catchThrowable(tokenizer::parseLong)).isInstanceOf(ParseException.class);
+		tokenizer.next();
+		assertThat(catchThrowable(tokenizer::parseLong)).isInstanceOf(ParseException.class);
+	}
+
+	@Test
+	public void testParseMove() throws IllegalNotationException {
+		Tokenizer tokenizer = new Tokenizer();
+		tokenizer.reset("e2e4 a7a8q e7-e8=N xa10");
+
+		tokenizer.next();
+		assertThat(tokenizer.parseMove()).isEqualTo(new GenericMove(GenericPosition.e2, GenericPosition.e4));
+		tokenizer.next();
+		assertThat(tokenizer.parseMove()).isEqualTo(new GenericMove(GenericPosition.a7, GenericPosition.a8, GenericChessman.QUEEN));
+		tokenizer.next();
+		assertThat(tokenizer.parseMove()).isEqualTo(new GenericMove(GenericPosition.e7, GenericPosition.e8, GenericChessman.KNIGHT));
+		tokenizer.next();
+		assertThat(catchThrowable(tokenizer::parseMove)).isInstanceOf(IllegalNotationException.class);
+	}
+
+}
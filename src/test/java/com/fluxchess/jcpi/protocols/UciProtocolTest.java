@@ -16,9 +16,11 @@
 package com.fluxchess.jcpi.protocols;
 
 import com.fluxchess.jcpi.commands.EngineAnalyzeCommand;
+import com.fluxchess.jcpi.commands.EngineBenchmarkCommand;
 import com.fluxchess.jcpi.commands.EngineDebugCommand;
 import com.fluxchess.jcpi.commands.EngineInitializeRequestCommand;
 import com.fluxchess.jcpi.commands.EngineNewGameCommand;
+import com.fluxchess.jcpi.commands.EnginePerftCommand;
 import com.fluxchess.jcpi.commands.EnginePonderHitCommand;
 import com.fluxchess.jcpi.commands.EngineReadyRequestCommand;
 import com.fluxchess.jcpi.commands.EngineSetOptionCommand;
@@ -30,6 +32,7 @@ import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
 import com.fluxchess.jcpi.commands.ProtocolInitializeAnswerCommand;
 import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
 import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericChessman;
 import com.fluxchess.jcpi.models.GenericColor;
 import com.fluxchess.jcpi.models.GenericMove;
 import com.fluxchess.jcpi.models.GenericPosition;
@@ -39,11 +42,14 @@ import org.junit.jupiter.api.Test;
 import java.io.BufferedReader;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
+import java.util.Arrays;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.fail;
@@ -272,6 +278,53 @@ public class UciProtocolTest {
 		}
 	}
 
+	@Test
+	public void testPositionContinuation() throws IOException {
+		String[] commands = {
+				"position startpos",
+				"position startpos moves e2e4",
+				"position startpos moves e2e4 e7e5 g1f3",
+				"position startpos moves e2e4 e7e5 g1f3x",
+				"ucinewgame",
+				"position startpos moves e2e4 e7e5 g1f3x b8c6"
+		};
+		UciProtocol protocol = createUciProtocol(commands);
+
+		IEngineCommand command = protocol.receive();
+		assertThat(command.getClass()).isEqualTo(EngineInitializeRequestCommand.class);
+
+		// "position startpos"
+		EngineAnalyzeCommand first = (EngineAnalyzeCommand) protocol.receive();
+		assertThat(first.continuation).isFalse();
+
+		// "position startpos moves e2e4"
+		EngineAnalyzeCommand second = (EngineAnalyzeCommand) protocol.receive();
+		assertThat(second.continuation).isTrue();
+		assertThat(second.sharedMoves).isEqualTo(0);
+		assertThat(second.board).isSameAs(first.board);
+		assertThat(second.moves).containsExactly(new GenericMove(GenericPosition.e2, GenericPosition.e4));
+
+		// "position startpos moves e2e4 e7e5 g1f3"
+		EngineAnalyzeCommand third = (EngineAnalyzeCommand) protocol.receive();
+		assertThat(third.continuation).isTrue();
+		assertThat(third.sharedMoves).isEqualTo(1);
+		assertThat(third.board).isSameAs(first.board);
+		assertThat(third.moves).hasSize(3);
+
+		// "position startpos moves e2e4 e7e5 g1f3x" does not extend the previous command
+		EngineAnalyzeCommand fourth = (EngineAnalyzeCommand) protocol.receive();
+		assertThat(fourth.continuation).isFalse();
+		assertThat(fourth.moves).hasSize(3);
+
+		command = protocol.receive();
+		assertThat(command.getClass()).isEqualTo(EngineNewGameCommand.class);
+
+		// No continuation after "ucinewgame"
+		EngineAnalyzeCommand fifth = (EngineAnalyzeCommand) protocol.receive();
+		assertThat(fifth.continuation).isFalse();
+		assertThat(fifth.moves).hasSize(4);
+	}
+
 	@Test
 	public void testGo() throws IOException {
 		String[] commands = {
@@ -386,6 +439,58 @@ public class UciProtocolTest {
 		}
 	}
 
+	@Test
+	public void testPerftAndBench() throws IOException {
+		String[] commands = {
+				"go perft 3",
+				"position startpos moves e2e4",
+				"go perft 2",
+				"go perft",
+				"go perft -1",
+				"bench",
+				"bench 5 4",
+				"bench 5 0"
+		};
+		UciProtocol protocol = createUciProtocol(commands);
+
+		IEngineCommand command = protocol.receive();
+		assertThat(command.getClass()).isEqualTo(EngineInitializeRequestCommand.class);
+
+		// "go perft 3"
+		command = protocol.receive();
+		assertThat(command.getClass()).isEqualTo(EnginePerftCommand.class);
+		assertThat(((EnginePerftCommand) command).board).isEqualTo(new GenericBoard(GenericBoard.STANDARDSETUP));
+		assertThat(((EnginePerftCommand) command).moves).isEmpty();
+		assertThat(((EnginePerftCommand) command).depth).isEqualTo(3);
+
+		// "position startpos moves e2e4"
+		protocol.receive();
+
+		// "go perft 2"
+		command = protocol.receive();
+		assertThat(command.getClass()).isEqualTo(EnginePerftCommand.class);
+		assertThat(((EnginePerftCommand) command).moves).containsExactly(new GenericMove(GenericPosition.e2, GenericPosition.e4));
+		assertThat(((EnginePerftCommand) command).depth).isEqualTo(2);
+
+		// "bench"
+		command = protocol.receive();
+		assertThat(command.getClass()).isEqualTo(EngineBenchmarkCommand.class);
+		assertThat(((EngineBenchmarkCommand) command).depth).isEqualTo(EngineBenchmarkCommand.DEFAULT_DEPTH);
+		assertThat(((EngineBenchmarkCommand) command).threads).isEqualTo(EngineBenchmarkCommand.DEFAULT_THREADS);
+
+		// "bench 5 4"
+		command = protocol.receive();
+		assertThat(command.getClass()).isEqualTo(EngineBenchmarkCommand.class);
+		assertThat(((EngineBenchmarkCommand) command).depth).isEqualTo(5);
+		assertThat(((EngineBenchmarkCommand) command).threads).isEqualTo(4);
+
+		try {
+			command = protocol.receive();
+			fail();
+		} catch (IOException e) {
+		}
+	}
+
 	@Test
 	public void testStop() throws IOException {
 		String[] commands = {"stop"};
@@ -511,6 +616,62 @@ public class UciProtocolTest {
 		assertNull(input.readLine());
 	}
 
+	@Test
+	public void testProtocolInformationCommandMoves() throws IOException {
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		UciProtocol protocol = new UciProtocol(new BufferedReader(new InputStreamReader(new ByteArrayInputStream("".getBytes()))), new PrintStream(buffer, false, "UTF-8"));
+
+		ProtocolInformationCommand command = new ProtocolInformationCommand();
+		command.setPvNumber(2);
+		command.setMate(-3);
+		command.setMoveList(Arrays.asList(
+				new GenericMove(GenericPosition.a7, GenericPosition.a8, GenericChessman.QUEEN),
+				new GenericMove(GenericPosition.h2, GenericPosition.h1)
+		));
+		protocol.send(command);
+
+		command = new ProtocolInformationCommand();
+		command.setString("caf\u00e9");
+		protocol.send(command);
+
+		BufferedReader input = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(buffer.toByteArray()), "UTF-8"));
+		assertThat(input.readLine()).isEqualTo("info multipv 2 score mate -3 pv a7a8q h2h1");
+		assertThat(input.readLine()).isEqualTo("info string caf\u00e9");
+		assertNull(input.readLine());
+	}
+
+	@Test
+	public void testByteStreams() throws IOException {
+		byte[] input = ("setoption name Gr\u00fc\u00dfe value x\r\n"
+				+ "position startpos moves e2e4\r\n"
+				+ "position startpos moves e2e4 e7e5\n"
+				+ "isready").getBytes("UTF-8");
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+		UciProtocol protocol = new UciProtocol(new ByteArrayInputStream(input), buffer);
+
+		assertThat(protocol.receive()).isInstanceOf(EngineInitializeRequestCommand.class);
+
+		EngineSetOptionCommand option = (EngineSetOptionCommand) protocol.receive();
+		assertThat(option.name).isEqualTo("Gr\u00fc\u00dfe");
+		assertThat(option.value).isEqualTo("x");
+
+		EngineAnalyzeCommand first = (EngineAnalyzeCommand) protocol.receive();
+		assertThat(first.moves).containsExactly(new GenericMove(GenericPosition.e2, GenericPosition.e4));
+
+		// The previous line must survive the reuse of the line buffer
+		EngineAnalyzeCommand second = (EngineAnalyzeCommand) protocol.receive();
+		assertThat(second.continuation).isTrue();
+		assertThat(second.moves).hasSize(2);
+
+		// The last line has no line terminator
+		assertThat(protocol.receive()).isInstanceOf(EngineReadyRequestCommand.class);
+		assertThat(catchThrowable(protocol::receive)).isInstanceOf(EOFException.class);
+
+		protocol.send(new ProtocolReadyAnswerCommand(""));
+		protocol.send(new ProtocolBestMoveCommand(new GenericMove(GenericPosition.e7, GenericPosition.e8, GenericChessman.QUEEN), null));
+		assertThat(buffer.toString("US-ASCII")).isEqualTo("readyok" + System.lineSeparator() + "bestmove e7e8q" + System.lineSeparator());
+	}
+
 	private UciProtocol createUciProtocol(String[] commands) {
 		ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 		PrintStream stream = new PrintStream(buffer);
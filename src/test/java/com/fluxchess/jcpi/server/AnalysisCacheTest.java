@@ -0,0 +1,132 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.server;
+
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericColor;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class AnalysisCacheTest {
+
+	@Test
+	public void testKey() throws IllegalNotationException {
+		GenericBoard board = new GenericBoard(GenericBoard.STANDARDSETUP);
+
+		// Transpositions share a key regardless of the full move number
+		AnalysisCache.Key key = new AnalysisCache.Key(board, Arrays.asList(
+				new GenericMove("g1f3"), new GenericMove("d7d6"), new GenericMove("d2d3"), new GenericMove("e7e6")), "");
+		AnalysisCache.Key transposition = new AnalysisCache.Key(board, Arrays.asList(
+				new GenericMove("d2d3"), new GenericMove("d7d6"), new GenericMove("g1f3"), new GenericMove("e7e6")), "");
+		assertThat(key).isEqualTo(transposition);
+		assertThat(key.hashCode()).isEqualTo(transposition.hashCode());
+		assertThat(key).isEqualTo(new AnalysisCache.Key(
+				new GenericBoard("rnbqkbnr/ppp2ppp/3pp3/8/8/3P1N2/PPP1PPPP/RNBQKB1R w KQkq - 0 10"), Collections.<GenericMove>emptyList(), ""));
+
+		assertThat(key).isNotEqualTo(new AnalysisCache.Key(board, Arrays.asList(
+				new GenericMove("g1f3"), new GenericMove("d7d6"), new GenericMove("d2d3"), new GenericMove("e7e6")), "MultiPV=2"));
+		assertThat(key).isNotEqualTo(new AnalysisCache.Key(board, Collections.<GenericMove>emptyList(), ""));
+
+		Throwable thrown = catchThrowable(() -> new AnalysisCache.Key(board, Collections.singletonList(new GenericMove("e2e5")), ""));
+		assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+	}
+
+	@Test
+	public void testDeeperWins() throws IllegalNotationException {
+		AnalysisCache cache = new AnalysisCache(4);
+		AnalysisCache.Key key = new AnalysisCache.Key(new GenericBoard(GenericBoard.STANDARDSETUP), Collections.<GenericMove>emptyList(), "");
+
+		assertThat(cache.get(key, depth(4))).isNull();
+		cache.put(key, depth(4), Collections.<ProtocolInformationCommand>emptyList(), bestMove("e2e4"));
+
+		assertThat(cache.get(key, depth(4)).bestMove.bestMove).isEqualTo(new GenericMove("e2e4"));
+		assertThat(cache.get(key, depth(2)).bestMove.bestMove).isEqualTo(new GenericMove("e2e4"));
+		assertThat(cache.get(key, depth(6))).isNull();
+
+		// A shallower result does not replace a deeper one
+		cache.put(key, depth(2), Collections.<ProtocolInformationCommand>emptyList(), bestMove("d2d4"));
+		assertThat(cache.get(key, depth(2)).bestMove.bestMove).isEqualTo(new GenericMove("e2e4"));
+
+		cache.put(key, depth(6), Collections.<ProtocolInformationCommand>emptyList(), bestMove("c2c4"));
+		assertThat(cache.get(key, depth(4)).bestMove.bestMove).isEqualTo(new GenericMove("c2c4"));
+
+		// A depth limited result does not answer a node limited request
+		EngineStartCalculatingCommand nodes = new EngineStartCalculatingCommand();
+		nodes.setNodes(1000L);
+		assertThat(cache.get(key, nodes)).isNull();
+
+		assertThat(cache.getHits()).isEqualTo(4);
+		assertThat(cache.getMisses()).isEqualTo(3);
+		assertThat(cache.getHitRate()).isEqualTo(4.0 / 7.0);
+	}
+
+	@Test
+	public void testUncacheable() throws IllegalNotationException {
+		AnalysisCache cache = new AnalysisCache(4);
+		AnalysisCache.Key key = new AnalysisCache.Key(new GenericBoard(GenericBoard.STANDARDSETUP), Collections.<GenericMove>emptyList(), "");
+
+		EngineStartCalculatingCommand command = depth(4);
+		command.setClock(GenericColor.WHITE, 1000L);
+		assertThat(AnalysisCache.isCacheable(command)).isFalse();
+		assertThat(AnalysisCache.isCacheable(new EngineStartCalculatingCommand())).isFalse();
+
+		cache.put(key, command, Collections.<ProtocolInformationCommand>emptyList(), bestMove("e2e4"));
+		assertThat(cache.size()).isEqualTo(0);
+	}
+
+	@Test
+	public void testEviction() throws IllegalNotationException {
+		AnalysisCache cache = new AnalysisCache(2);
+		GenericBoard board = new GenericBoard(GenericBoard.STANDARDSETUP);
+		AnalysisCache.Key first = new AnalysisCache.Key(board, Collections.singletonList(new GenericMove("e2e4")), "");
+		AnalysisCache.Key second = new AnalysisCache.Key(board, Collections.singletonList(new GenericMove("d2d4")), "");
+		AnalysisCache.Key third = new AnalysisCache.Key(board, Collections.singletonList(new GenericMove("c2c4")), "");
+
+		cache.put(first, depth(1), Collections.<ProtocolInformationCommand>emptyList(), bestMove("e7e5"));
+		cache.put(second, depth(1), Collections.<ProtocolInformationCommand>emptyList(), bestMove("d7d5"));
+
+		// The first entry is now the most recently used
+		assertThat(cache.get(first, depth(1))).isNotNull();
+		cache.put(third, depth(1), Collections.<ProtocolInformationCommand>emptyList(), bestMove("c7c5"));
+
+		assertThat(cache.size()).isEqualTo(2);
+		assertThat(cache.getEvictions()).isEqualTo(1);
+		assertThat(cache.get(first, depth(1))).isNotNull();
+		assertThat(cache.get(second, depth(1))).isNull();
+		assertThat(cache.get(third, depth(1))).isNotNull();
+	}
+
+	private static EngineStartCalculatingCommand depth(int depth) {
+		EngineStartCalculatingCommand command = new EngineStartCalculatingCommand();
+		command.setDepth(depth);
+		return command;
+	}
+
+	private static ProtocolBestMoveCommand bestMove(String move) throws IllegalNotationException {
+		return new ProtocolBestMoveCommand(new GenericMove(move), null);
+	}
+
+}
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.server;
+
+import com.fluxchess.jcpi.AbstractEngine;
+import com.fluxchess.jcpi.commands.EngineAnalyzeCommand;
+import com.fluxchess.jcpi.commands.EngineDebugCommand;
+import com.fluxchess.jcpi.commands.EngineInitializeRequestCommand;
+import com.fluxchess.jcpi.commands.EngineNewGameCommand;
+import com.fluxchess.jcpi.commands.EnginePonderHitCommand;
+import com.fluxchess.jcpi.commands.EngineReadyRequestCommand;
+import com.fluxchess.jcpi.commands.EngineSetOptionCommand;
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.commands.EngineStopCalculatingCommand;
+import com.fluxchess.jcpi.commands.IProtocol;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInformationCommand;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AnalysisServerTest {
+
+	@Test
+	public void testAnalyse() throws IOException {
+		try (AnalysisServer server = new AnalysisServer(Engine::new, 2)) {
+			server.start(new InetSocketAddress("127.0.0.1", 0));
+			String base = "http://127.0.0.1:" + server.getLocalAddress().getPort() + AnalysisServer.PATH;
+
+			HttpURLConnection connection = (HttpURLConnection) new URL(base + "?moves=e2e4+e7e5&depth=2").openConnection();
+			assertThat(connection.getResponseCode()).isEqualTo(200);
+			assertThat(connection.getContentType()).isEqualTo("application/x-ndjson");
+
+			List<String> lines = new ArrayList<>();
+			try (BufferedReader input = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"))) {
+				String line;
+				while ((line = input.readLine()) != null) {
+					lines.add(line);
+				}
+			}
+			assertThat(lines).containsExactly(
+					"{\"type\":\"info\",\"depth\":1,\"cp\":20,\"pv\":[\"g1f3\"],\"string\":\"\\\"2 moves\\\"\"}",
+					"{\"type\":\"info\",\"depth\":2,\"cp\":15,\"pv\":[\"g1f3\",\"b8c6\"],\"string\":\"\\\"2 moves\\\"\"}",
+					"{\"type\":\"bestmove\",\"bestmove\":\"g1f3\",\"ponder\":\"b8c6\"}");
+
+			connection = (HttpURLConnection) new URL(base + "?fen=8/8/8/8").openConnection();
+			assertThat(connection.getResponseCode()).isEqualTo(400);
+			connection = (HttpURLConnection) new URL(base).openConnection();
+			assertThat(connection.getResponseCode()).isEqualTo(400);
+		}
+	}
+
+	@Test
+	public void testCache() throws IOException {
+		AnalysisCache cache = new AnalysisCache(16);
+		try (AnalysisServer server = new AnalysisServer(Engine::new, 1)) {
+			server.setCache(cache);
+			server.start(new InetSocketAddress("127.0.0.1", 0));
+			String base = "http://127.0.0.1:" + server.getLocalAddress().getPort() + AnalysisServer.PATH;
+
+			List<String> lines = read(new URL(base + "?moves=e2e4&depth=3"));
+			assertThat(cache.getMisses()).isEqualTo(1);
+			assertThat(cache.size()).isEqualTo(1);
+
+			// The cached result has only the final principal variation
+			assertThat(read(new URL(base + "?moves=e2e4&depth=2"))).containsExactly(lines.get(2), lines.get(3));
+			assertThat(cache.getHits()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void testCacheWithReusedInformation() throws IOException {
+		AnalysisCache cache = new AnalysisCache(16);
+		try (AnalysisServer server = new AnalysisServer(protocol -> new Engine(protocol) {
+			@Override
+			public void receive(EngineStartCalculatingCommand command) {
+				// One instance for all lines
+				ProtocolInformationCommand information = new ProtocolInformationCommand();
+				for (int pvNumber = 1; pvNumber <= 2; ++pvNumber) {
+					information.reset();
+					information.setDepth(command.getDepthValue());
+					information.setPvNumber(pvNumber);
+					information.setMoveList(Collections.singletonList(new GenericMove(GenericPosition.e2, pvNumber == 1 ? GenericPosition.e4 : GenericPosition.e3)));
+					getProtocol().send(information);
+				}
+				information.reset();
+				information.setNodes(1000);
+				getProtocol().send(information);
+				getProtocol().send(new ProtocolBestMoveCommand(new GenericMove(GenericPosition.e2, GenericPosition.e4), null));
+			}
+		}, 1)) {
+			server.setCache(cache);
+			server.start(new InetSocketAddress("127.0.0.1", 0));
+			String base = "http://127.0.0.1:" + server.getLocalAddress().getPort() + AnalysisServer.PATH;
+
+			List<String> lines = read(new URL(base + "?depth=3"));
+			assertThat(lines).hasSize(4);
+
+			// Both variations are cached as they were sent
+			assertThat(read(new URL(base + "?depth=3"))).containsExactly(lines.get(0), lines.get(1), lines.get(3));
+			assertThat(cache.getHits()).isEqualTo(1);
+		}
+	}
+
+	@Test
+	public void testEngineFailure() throws IOException {
+		AtomicInteger created = new AtomicInteger(0);
+		try (AnalysisServer server = new AnalysisServer(protocol -> {
+			created.incrementAndGet();
+			return new Engine(protocol);
+		}, 1)) {
+			server.setBestMoveTimeout(200);
+			server.start(new InetSocketAddress("127.0.0.1", 0));
+			String base = "http://127.0.0.1:" + server.getLocalAddress().getPort() + AnalysisServer.PATH;
+
+			// The calculation returns without a best move
+			assertThat(read(new URL(base + "?depth=0"))).containsExactly(
+					"{\"type\":\"error\",\"error\":\"Engine sent no best move\"}");
+			assertThat(created.get()).isEqualTo(2);
+
+			// The calculation throws
+			List<String> lines = read(new URL(base + "?depth=" + Engine.FAILING_DEPTH));
+			assertThat(lines.get(lines.size() - 1)).isEqualTo("{\"type\":\"error\",\"error\":\"Engine failed\"}");
+			assertThat(created.get()).isEqualTo(3);
+
+			// The new engine answers
+			lines = read(new URL(base + "?depth=1"));
+			assertThat(lines.get(lines.size() - 1)).startsWith("{\"type\":\"bestmove\"");
+		}
+	}
+
+	private static List<String> read(URL url) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+		assertThat(connection.getResponseCode()).isEqualTo(200);
+
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader input = new BufferedReader(new InputStreamReader(connection.getInputStream(), "UTF-8"))) {
+			String line;
+			while ((line = input.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+
+		return lines;
+	}
+
+	private static class Engine extends AbstractEngine {
+
+		private static final int FAILING_DEPTH = 9;
+
+		private int moves = 0;
+
+		private Engine(IProtocol protocol) {
+			super(protocol);
+		}
+
+		@Override
+		protected void quit() {
+		}
+
+		@Override
+		public void receive(EngineInitializeRequestCommand command) {
+		}
+
+		@Override
+		public void receive(EngineSetOptionCommand command) {
+		}
+
+		@Override
+		public void receive(EngineDebugCommand command) {
+		}
+
+		@Override
+		public void receive(EngineReadyRequestCommand command) {
+		}
+
+		@Override
+		public void receive(EngineNewGameCommand command) {
+		}
+
+		@Override
+		public void receive(EngineAnalyzeCommand command) {
+			moves = command.moves.size();
+		}
+
+		@Override
+		public void receive(EngineStartCalculatingCommand command) {
+			List<GenericMove> pv = new ArrayList<>();
+			try {
+				pv.add(new GenericMove("g1f3"));
+				for (int depth = 1; depth <= command.getDepth(); ++depth) {
+					ProtocolInformationCommand information = new ProtocolInformationCommand();
+					information.setDepth(depth);
+					information.setCentipawns(25 - 5 * depth);
+					information.setMoveList(new ArrayList<>(pv));
+					information.setString("\"" + moves + " moves\"");
+					getProtocol().send(information);
+					pv.add(new GenericMove("b8c6"));
+				}
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			if (command.getDepthValue() == FAILING_DEPTH) {
+				throw new IllegalStateException();
+			}
+			if (command.getDepthValue() > 0) {
+				getProtocol().send(new ProtocolBestMoveCommand(pv.get(0), pv.get(1)));
+			}
+		}
+
+		@Override
+		public void receive(EngineStopCalculatingCommand command) {
+		}
+
+		@Override
+		public void receive(EnginePonderHitCommand command) {
+		}
+
+	}
+
+}
@@ -0,0 +1,302 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.server;
+
+import com.fluxchess.jcpi.AbstractEngine;
+import com.fluxchess.jcpi.commands.EngineAnalyzeCommand;
+import com.fluxchess.jcpi.commands.EngineDebugCommand;
+import com.fluxchess.jcpi.commands.EngineInitializeRequestCommand;
+import com.fluxchess.jcpi.commands.EngineNewGameCommand;
+import com.fluxchess.jcpi.commands.EnginePonderHitCommand;
+import com.fluxchess.jcpi.commands.EngineReadyRequestCommand;
+import com.fluxchess.jcpi.commands.EngineSetOptionCommand;
+import com.fluxchess.jcpi.commands.EngineStartCalculatingCommand;
+import com.fluxchess.jcpi.commands.EngineStopCalculatingCommand;
+import com.fluxchess.jcpi.commands.IProtocol;
+import com.fluxchess.jcpi.commands.ProtocolBestMoveCommand;
+import com.fluxchess.jcpi.commands.ProtocolInitializeAnswerCommand;
+import com.fluxchess.jcpi.commands.ProtocolReadyAnswerCommand;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class EngineServerTest {
+
+	@Test
+	public void testSessions() throws IOException {
+		try (EngineServer server = new EngineServer(Engine::new, 4, 1)) {
+			server.start(new InetSocketAddress("127.0.0.1", 0));
+
+			try (Socket first = new Socket("127.0.0.1", server.getLocalAddress().getPort());
+			     Socket second = new Socket("127.0.0.1", server.getLocalAddress().getPort())) {
+				first.setSoTimeout(10000);
+				second.setSoTimeout(10000);
+				BufferedReader firstInput = new BufferedReader(new InputStreamReader(first.getInputStream(), "US-ASCII"));
+				PrintStream firstOutput = new PrintStream(first.getOutputStream(), true, "US-ASCII");
+				BufferedReader secondInput = new BufferedReader(new InputStreamReader(second.getInputStream(), "US-ASCII"));
+				PrintStream secondOutput = new PrintStream(second.getOutputStream(), true, "US-ASCII");
+
+				firstOutput.print("uci\r\n");
+				firstOutput.flush();
+				assertThat(firstInput.readLine()).isEqualTo("id name Engine");
+				assertThat(firstInput.readLine()).isEqualTo("id author Author");
+				assertThat(firstInput.readLine()).isEqualTo("uciok");
+
+				// The engine calculates on the dispatch thread until stop
+				firstOutput.println("go infinite");
+				firstOutput.println("isready");
+				assertThat(firstInput.readLine()).isEqualTo("readyok");
+
+				// The second search waits for the first one
+				secondOutput.println("uci");
+				assertThat(secondInput.readLine()).isEqualTo("id name Engine");
+				assertThat(secondInput.readLine()).isEqualTo("id author Author");
+				assertThat(secondInput.readLine()).isEqualTo("uciok");
+				secondOutput.println("go infinite");
+				secondOutput.println("isready");
+				assertThat(secondInput.readLine()).isEqualTo("readyok");
+
+				firstOutput.println("stop");
+				assertThat(firstInput.readLine()).isEqualTo("bestmove e2e4");
+
+				secondOutput.println("stop");
+				assertThat(secondInput.readLine()).isEqualTo("bestmove e2e4");
+
+				firstOutput.println("quit");
+				assertThat(firstInput.readLine()).isNull();
+			}
+		}
+	}
+
+	@Test
+	public void testStopPerCalculation() throws Exception {
+		final Semaphore newGame = new Semaphore(0);
+		try (EngineServer server = new EngineServer(protocol -> new Engine(protocol) {
+			@Override
+			public void receive(EngineNewGameCommand command) {
+				newGame.acquireUninterruptibly();
+			}
+
+			@Override
+			public void receive(EngineStartCalculatingCommand command) {
+				// The stop may have been delivered before this line
+				long deadline = System.currentTimeMillis() + 5000;
+				while (!command.isStopRequested() && System.currentTimeMillis() < deadline) {
+					Thread.yield();
+				}
+				GenericPosition target = command.isStopRequested() ? GenericPosition.e4 : GenericPosition.e3;
+				getProtocol().send(new ProtocolBestMoveCommand(new GenericMove(GenericPosition.e2, target), null));
+			}
+		}, 4, 1)) {
+			server.start(new InetSocketAddress("127.0.0.1", 0));
+
+			try (Socket socket = new Socket("127.0.0.1", server.getLocalAddress().getPort())) {
+				socket.setSoTimeout(10000);
+				BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+				PrintStream output = new PrintStream(socket.getOutputStream(), true, "US-ASCII");
+
+				output.println("uci");
+				assertThat(input.readLine()).isEqualTo("id name Engine");
+				assertThat(input.readLine()).isEqualTo("id author Author");
+				assertThat(input.readLine()).isEqualTo("uciok");
+
+				// Each stop belongs to the go before it
+				output.println("ucinewgame");
+				output.println("go infinite");
+				output.println("stop");
+				output.println("go infinite");
+				output.println("stop");
+				Thread.sleep(100);
+				newGame.release();
+
+				assertThat(input.readLine()).isEqualTo("bestmove e2e4");
+				assertThat(input.readLine()).isEqualTo("bestmove e2e4");
+			}
+		}
+	}
+
+	@Test
+	public void testStopForPendingCalculation() throws Exception {
+		final Semaphore calculating = new Semaphore(0);
+		final Semaphore proceed = new Semaphore(0);
+		try (EngineServer server = new EngineServer(protocol -> new Engine(protocol) {
+			@Override
+			public void receive(EngineStartCalculatingCommand command) {
+				if (!command.getInfinite()) {
+					calculating.release();
+					proceed.acquireUninterruptibly();
+				}
+				long deadline = System.currentTimeMillis() + 5000;
+				while (command.getInfinite() && !command.isStopRequested() && System.currentTimeMillis() < deadline) {
+					Thread.yield();
+				}
+				GenericPosition target = command.isStopRequested() ? GenericPosition.e4 : GenericPosition.e3;
+				getProtocol().send(new ProtocolBestMoveCommand(new GenericMove(GenericPosition.e2, target), null));
+			}
+		}, 4, 1)) {
+			server.start(new InetSocketAddress("127.0.0.1", 0));
+
+			try (Socket socket = new Socket("127.0.0.1", server.getLocalAddress().getPort())) {
+				socket.setSoTimeout(10000);
+				BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+				PrintStream output = new PrintStream(socket.getOutputStream(), true, "US-ASCII");
+
+				output.println("uci");
+				assertThat(input.readLine()).isEqualTo("id name Engine");
+				assertThat(input.readLine()).isEqualTo("id author Author");
+				assertThat(input.readLine()).isEqualTo("uciok");
+
+				// The stop arrives during the first calculation, but belongs to the second
+				output.println("go depth 1");
+				assertThat(calculating.tryAcquire(10, TimeUnit.SECONDS)).isTrue();
+				output.println("go infinite");
+				output.println("stop");
+				Thread.sleep(100);
+				proceed.release();
+
+				assertThat(input.readLine()).isEqualTo("bestmove e2e3");
+				assertThat(input.readLine()).isEqualTo("bestmove e2e4");
+			}
+		}
+	}
+
+	@Test
+	public void testPerftAndBenchStopped() throws Exception {
+		try (EngineServer server = new EngineServer(Engine::new, 2, 1)) {
+			server.start(new InetSocketAddress("127.0.0.1", 0));
+
+			try (Socket socket = new Socket("127.0.0.1", server.getLocalAddress().getPort())) {
+				socket.setSoTimeout(10000);
+				BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+				PrintStream output = new PrintStream(socket.getOutputStream(), true, "US-ASCII");
+
+				output.println("uci");
+				assertThat(input.readLine()).isEqualTo("id name Engine");
+				assertThat(input.readLine()).isEqualTo("id author Author");
+				assertThat(input.readLine()).isEqualTo("uciok");
+
+				// Both would run for hours
+				output.println("go perft 12");
+				output.println("stop");
+				assertThat(input.readLine()).isEqualTo("info string perft stopped");
+
+				output.println("bench 20 1");
+				Thread.sleep(100);
+
+				try (Socket waitingSocket = new Socket("127.0.0.1", server.getLocalAddress().getPort())) {
+					waitingSocket.setSoTimeout(10000);
+					BufferedReader waitingInput = new BufferedReader(new InputStreamReader(waitingSocket.getInputStream(), "US-ASCII"));
+					PrintStream waitingOutput = new PrintStream(waitingSocket.getOutputStream(), true, "US-ASCII");
+
+					// The bench holds the only search slot until its session quits
+					waitingOutput.println("uci");
+					assertThat(waitingInput.readLine()).isEqualTo("id name Engine");
+					assertThat(waitingInput.readLine()).isEqualTo("id author Author");
+					assertThat(waitingInput.readLine()).isEqualTo("uciok");
+					waitingOutput.println("go perft 2");
+
+					output.println("quit");
+					String line = waitingInput.readLine();
+					assertThat(line).startsWith("info depth 2 ").endsWith(" nodes 400");
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMaxLineLength() throws IOException {
+		try (EngineServer server = new EngineServer(Engine::new, 2, 1)) {
+			server.setMaxLineLength(16);
+			server.start(new InetSocketAddress("127.0.0.1", 0));
+
+			try (Socket socket = new Socket("127.0.0.1", server.getLocalAddress().getPort())) {
+				socket.setSoTimeout(10000);
+				BufferedReader input = new BufferedReader(new InputStreamReader(socket.getInputStream(), "US-ASCII"));
+				PrintStream output = new PrintStream(socket.getOutputStream(), true, "US-ASCII");
+
+				output.println("position startpos moves e2e4");
+				assertThat(input.readLine()).isNull();
+			}
+		}
+	}
+
+	private static class Engine extends AbstractEngine {
+
+		private final Semaphore stop = new Semaphore(0);
+
+		private Engine(IProtocol protocol) {
+			super(protocol);
+		}
+
+		@Override
+		protected void quit() {
+		}
+
+		@Override
+		public void receive(EngineInitializeRequestCommand command) {
+			getProtocol().send(new ProtocolInitializeAnswerCommand("Engine", "Author"));
+		}
+
+		@Override
+		public void receive(EngineSetOptionCommand command) {
+		}
+
+		@Override
+		public void receive(EngineDebugCommand command) {
+		}
+
+		@Override
+		public void receive(EngineReadyRequestCommand command) {
+			getProtocol().send(new ProtocolReadyAnswerCommand(command.token));
+		}
+
+		@Override
+		public void receive(EngineNewGameCommand command) {
+		}
+
+		@Override
+		public void receive(EngineAnalyzeCommand command) {
+		}
+
+		@Override
+		public void receive(EngineStartCalculatingCommand command) {
+			stop.acquireUninterruptibly();
+			getProtocol().send(new ProtocolBestMoveCommand(new GenericMove(GenericPosition.e2, GenericPosition.e4), null));
+		}
+
+		@Override
+		public void receive(EngineStopCalculatingCommand command) {
+			stop.release();
+		}
+
+		@Override
+		public void receive(EnginePonderHitCommand command) {
+		}
+
+	}
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.tables;
+
+import com.fluxchess.jcpi.commands.EngineSetOptionCommand;
+import com.fluxchess.jcpi.options.Options;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TranspositionTableTest {
+
+	@Test
+	public void testPutAndGet() {
+		TranspositionTable table = new TranspositionTable(1);
+		assertThat(table.getSize()).isEqualTo(1024 * 1024);
+
+		assertThat(table.get(0x1234L)).isEqualTo(0);
+		table.put(0x1234L, 5, 42);
+		long data = table.get(0x1234L);
+		assertThat(TranspositionTable.getValue(data)).isEqualTo(42);
+		assertThat(TranspositionTable.getDepth(data)).isEqualTo(5);
+
+		// A shallower entry of the same search does not replace a deeper one
+		table.put(0x1234L, 3, 43);
+		assertThat(TranspositionTable.getValue(table.get(0x1234L))).isEqualTo(42);
+
+		// But it does in the next search
+		table.newSearch();
+		table.put(0x1234L, 3, 43);
+		assertThat(TranspositionTable.getValue(table.get(0x1234L))).isEqualTo(43);
+
+		table.clear();
+		assertThat(table.get(0x1234L)).isEqualTo(0);
+	}
+
+	@Test
+	public void testReplacement() {
+		TranspositionTable table = new TranspositionTable(0);
+		assertThat(table.getSize()).isEqualTo(TranspositionTable.BUCKET_BYTES);
+
+		// All keys fall into the single bucket
+		for (int key = 1; key <= TranspositionTable.BUCKET_SIZE; ++key) {
+			table.put(key, key, key);
+		}
+		table.put(5, 2, 5);
+		assertThat(table.get(1)).isEqualTo(0);
+		assertThat(table.get(2)).isNotEqualTo(0);
+		assertThat(table.get(5)).isNotEqualTo(0);
+
+		// An old deep entry loses against a new shallow one
+		table.newSearch();
+		table.newSearch();
+		table.put(6, 1, 6);
+		table.put(7, 1, 7);
+		assertThat(table.get(2)).isEqualTo(0);
+		assertThat(table.get(5)).isEqualTo(0);
+		assertThat(table.get(4)).isNotEqualTo(0);
+	}
+
+	@Test
+	public void testHashFull() {
+		TranspositionTable table = new TranspositionTable(1);
+		assertThat(table.getHashFull()).isEqualTo(0);
+
+		// An eighth of the 65536 entries
+		Random random = new Random(0);
+		for (int i = 0; i < 8192; ++i) {
+			table.put(random.nextLong(), 1, i);
+		}
+		assertThat(table.getHashFull()).isBetween(90, 160);
+
+		table.newSearch();
+		assertThat(table.getHashFull()).isEqualTo(0);
+	}
+
+	@Test
+	public void testSetOption() {
+		TranspositionTable table = new TranspositionTable(Options.newHashOption(16, 1, 64));
+		assertThat(table.getSize()).isEqualTo(16 * 1024 * 1024);
+
+		assertThat(table.setOption(new EngineSetOptionCommand("Ponder", "true"))).isFalse();
+		assertThat(table.setOption(new EngineSetOptionCommand("Hash", "1024"))).isTrue();
+		table.awaitReady();
+		assertThat(table.getSize()).isEqualTo(64 * 1024 * 1024);
+		assertThat(table.setOption(new EngineSetOptionCommand("hash", "2"))).isTrue();
+		table.awaitReady();
+		assertThat(table.getSize()).isEqualTo(2 * 1024 * 1024);
+	}
+
+	@Test
+	public void testDirect() {
+		TranspositionTable table = new TranspositionTable(Options.newHashOption(1, 1, 64));
+		assertThat(table.isDirect()).isFalse();
+
+		table.setDirectThreshold(2);
+		assertThat(table.setOption(new EngineSetOptionCommand("Hash", "2"))).isTrue();
+		table.awaitReady();
+		assertThat(table.isDirect()).isTrue();
+		assertThat(table.getSize()).isEqualTo(2 * 1024 * 1024);
+
+		Random random = new Random(0);
+		for (int i = 0; i < 1000; ++i) {
+			long key = random.nextLong();
+			table.put(key, 1, i);
+			assertThat(TranspositionTable.getValue(table.get(key))).isEqualTo(i);
+		}
+		assertThat(table.getHashFull()).isGreaterThan(0);
+
+		table.clear();
+		assertThat(table.getHashFull()).isEqualTo(0);
+
+		assertThat(table.setOption(new EngineSetOptionCommand("Hash", "1"))).isTrue();
+		table.awaitReady();
+		assertThat(table.isDirect()).isFalse();
+	}
+
+	@Test
+	public void testBackgroundOperations() throws InterruptedException {
+		TranspositionTable table = new TranspositionTable(1);
+		table.setThreads(4);
+		assertThat(table.isReady()).isTrue();
+
+		CountDownLatch ready = new CountDownLatch(1);
+		table.startResize(64);
+		table.whenReady(ready::countDown);
+
+		// The table stays usable while it is resized
+		table.put(0x1234L, 5, 42);
+		table.get(0x1234L);
+
+		assertThat(ready.await(10, TimeUnit.SECONDS)).isTrue();
+		assertThat(table.isReady()).isTrue();
+		assertThat(table.getSize()).isEqualTo(64 * 1024 * 1024);
+
+		Random random = new Random(0);
+		long[] keys = new long[1000];
+		for (int i = 0; i < keys.length; ++i) {
+			keys[i] = random.nextLong();
+			table.put(keys[i], 1, i);
+		}
+		table.startClear();
+		table.awaitReady();
+		for (long key : keys) {
+			assertThat(table.get(key)).isEqualTo(0);
+		}
+
+		// Direct segments are allocated and cleared the same way
+		table.setDirectThreshold(0);
+		table.resize(1);
+		assertThat(table.isDirect()).isTrue();
+		table.put(0x1234L, 5, 42);
+		table.clear();
+		assertThat(table.get(0x1234L)).isEqualTo(0);
+	}
+
+	@Test
+	public void testConcurrentAccess() throws InterruptedException {
+		final TranspositionTable table = new TranspositionTable(0);
+		final AtomicBoolean failed = new AtomicBoolean(false);
+
+		// Every value is derived from its key, so a torn entry would be seen
+		Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; ++i) {
+			final long seed = i;
+			threads[i] = new Thread(() -> {
+				Random random = new Random(seed);
+				for (int j = 0; j < 200000; ++j) {
+					long key = random.nextInt(64) * 0x9E3779B97F4A7C15L;
+					table.put(key, random.nextInt(16), key >>> 16);
+
+					key = random.nextInt(64) * 0x9E3779B97F4A7C15L;
+					long data = table.get(key);
+					if (data != 0 && TranspositionTable.getValue(data) != (key >>> 16 & TranspositionTable.VALUE_MASK)) {
+						failed.set(true);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertThat(failed.get()).isFalse();
+	}
+
+}
@@ -17,6 +17,8 @@ package com.fluxchess.jcpi.utils;
 
 import com.fluxchess.jcpi.models.GenericBoard;
 import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import com.fluxchess.jcpi.models.IllegalNotationException;
 import org.junit.jupiter.api.Test;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -37,4 +39,12 @@ public class MoveGeneratorTest {
 		assertThat(result).isEqualTo(197281);
 	}
 
+	@Test
+	public void testSan() throws IllegalNotationException {
+		GenericBoard board = new GenericBoard(GenericBoard.STANDARDSETUP);
+
+		assertThat(MoveGenerator.parseSan(board, "Nf3")).isEqualTo(new GenericMove(GenericPosition.g1, GenericPosition.f3));
+		assertThat(MoveGenerator.toSan(board, new GenericMove(GenericPosition.e2, GenericPosition.e4))).isEqualTo("e4");
+	}
+
 }
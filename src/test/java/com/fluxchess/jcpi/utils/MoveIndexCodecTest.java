@@ -0,0 +1,72 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.utils;
+
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericChessman;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class MoveIndexCodecTest {
+
+	@Test
+	public void testEncodeDecode() throws IllegalNotationException {
+		GenericBoard board = new GenericBoard(GenericBoard.STANDARDSETUP);
+		GenericMove[] moves = {
+				new GenericMove("e2e4"), new GenericMove("d7d5"), new GenericMove("e4d5"), new GenericMove("g8f6"),
+				new GenericMove("f1b5"), new GenericMove("c8d7"), new GenericMove("g1f3"), new GenericMove("a7a6"),
+				new GenericMove("e1g1")
+		};
+
+		byte[] data = MoveIndexCodec.encode(board, moves);
+
+		assertThat(data).hasSize(moves.length);
+		assertThat(MoveIndexCodec.decode(board, data)).containsExactly(moves);
+	}
+
+	@Test
+	public void testCanonicalOrder() {
+		GenericBoard board = new GenericBoard(GenericBoard.STANDARDSETUP);
+
+		// Moves are sorted by origin square first, so b1a3 is the first move
+		assertThat(MoveIndexCodec.encode(board, new GenericMove[]{new GenericMove(GenericPosition.b1, GenericPosition.a3)})).containsExactly(0);
+		assertThat(MoveIndexCodec.decode(board, new byte[]{19})).containsExactly(new GenericMove(GenericPosition.h2, GenericPosition.h4));
+	}
+
+	@Test
+	public void testPromotion() throws IllegalNotationException {
+		GenericBoard board = new GenericBoard("4k3/1P6/8/8/8/8/8/4K3 w - - 0 1");
+		GenericMove[] moves = {new GenericMove(GenericPosition.b7, GenericPosition.b8, GenericChessman.ROOK)};
+
+		assertThat(MoveIndexCodec.decode(board, MoveIndexCodec.encode(board, moves))).containsExactly(moves);
+	}
+
+	@Test
+	public void testIllegalMove() {
+		GenericBoard board = new GenericBoard(GenericBoard.STANDARDSETUP);
+
+		assertThat(catchThrowable(() -> MoveIndexCodec.encode(board, new GenericMove[]{new GenericMove(GenericPosition.e2, GenericPosition.e5)})))
+				.isInstanceOf(IllegalArgumentException.class);
+		assertThat(catchThrowable(() -> MoveIndexCodec.decode(board, new byte[]{20})))
+				.isInstanceOf(IllegalArgumentException.class);
+	}
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.utils;
+
+import com.fluxchess.jcpi.models.GenericBoard;
+import com.fluxchess.jcpi.models.GenericChessman;
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+import com.fluxchess.jcpi.models.PackedBoard;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class PackedPositionReaderTest {
+
+	@Test
+	public void testReadWrite() throws IOException, IllegalNotationException {
+		PackedBoard standard = new PackedBoard(new GenericBoard(GenericBoard.STANDARDSETUP));
+		PackedBoard promotion = new PackedBoard(new GenericBoard("4k3/1P6/8/8/8/8/8/4K3 w - - 12 40"));
+		GenericMove bestMove = new GenericMove(GenericPosition.b7, GenericPosition.b8, GenericChessman.QUEEN);
+
+		File file = File.createTempFile("jcpi", ".bin");
+		file.deleteOnExit();
+		try (PackedPositionWriter writer = new PackedPositionWriter(new FileOutputStream(file))) {
+			writer.write(standard);
+			writer.write(promotion, -350, PackedPositionFormat.WHITEWIN, bestMove);
+		}
+
+		assertThat(file.length()).isEqualTo(PackedPositionFormat.HEADERSIZE + 2 * PackedPositionFormat.RECORDSIZE);
+
+		try (PackedPositionReader reader = new PackedPositionReader(new RandomAccessFile(file, "r").getChannel())) {
+			assertThat(reader.getRecordCount()).isEqualTo(2);
+
+			assertThat(reader.next()).isTrue();
+			assertThat(reader.getIndex()).isEqualTo(0);
+			assertThat(reader.toPackedBoard()).isEqualTo(standard);
+			assertThat(reader.getScore()).isEqualTo(PackedPositionFormat.NOSCORE);
+			assertThat(reader.getResult()).isEqualTo(PackedPositionFormat.UNKNOWN);
+			assertThat(reader.getBestMove()).isEqualTo(PackedPositionFormat.NOMOVE);
+			assertThat(reader.toGenericBestMove()).isNull();
+
+			assertThat(reader.next()).isTrue();
+			assertThat(reader.getOccupancy()).isEqualTo(promotion.occupancy);
+			assertThat(reader.getState()).isEqualTo(promotion.state);
+			assertThat(reader.getScore()).isEqualTo(-350);
+			assertThat(reader.getResult()).isEqualTo(PackedPositionFormat.WHITEWIN);
+			assertThat(reader.toGenericBestMove()).isEqualTo(bestMove);
+
+			assertThat(reader.next()).isFalse();
+
+			reader.seek(0);
+			assertThat(reader.toPackedBoard()).isEqualTo(standard);
+		}
+	}
+
+	@Test
+	public void testInvalidHeader() throws IOException {
+		File file = File.createTempFile("jcpi", ".bin");
+		file.deleteOnExit();
+		try (FileOutputStream output = new FileOutputStream(file)) {
+			output.write(new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+		}
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			assertThat(catchThrowable(() -> new PackedPositionReader(randomAccessFile.getChannel()))).isInstanceOf(IOException.class);
+		}
+	}
+
+	@Test
+	public void testMoveEncoding() {
+		GenericMove move = new GenericMove(GenericPosition.h7, GenericPosition.g8, GenericChessman.KNIGHT);
+
+		assertThat(PackedPositionFormat.decodeMove(PackedPositionFormat.encodeMove(move))).isEqualTo(move);
+	}
+
+}
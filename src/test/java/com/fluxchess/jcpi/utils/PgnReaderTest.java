@@ -0,0 +1,123 @@
+/*
+ * Copyright 2007-2022 The Java Chess Protocol Interface Project Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.fluxchess.jcpi.utils;
+
+import com.fluxchess.jcpi.models.GenericMove;
+import com.fluxchess.jcpi.models.GenericPosition;
+import com.fluxchess.jcpi.models.IllegalNotationException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class PgnReaderTest {
+
+	private static final String GAMES = ""
+			+ "[Event \"Test \\\"one\\\"\"]\n"
+			+ "[White \"M\u00fcller\"]\n"
+			+ "\n"
+			+ "1. e4 {best by test} e5 2. Nf3 (2. f4 exf4 (2... d5)) 2... Nc6 $1 3. Bb5 a6 ; Ruy Lopez\n"
+			+ "4. Ba4 Nf6 5. O-O 1-0\n"
+			+ "\n"
+			+ "[Event \"Illegal\"]\n"
+			+ "\n"
+			+ "1. e4 e4 2. d4 0-1\n"
+			+ "\n"
+			+ "[Event \"Setup\"]\n"
+			+ "[FEN \"6k1/5ppp/8/8/8/8/8/R5K1 w - - 0 1\"]\n"
+			+ "\n"
+			+ "1.Ra8# 1-0\n"
+			+ "\n"
+			+ "1. d4 *\n";
+
+	private static final class Recorder implements IPgnHandler {
+
+		private final List<String> headers = new ArrayList<>();
+		private final List<GenericMove> moves = new ArrayList<>();
+		private String result = null;
+
+		public void header(String name, String value) {
+			headers.add(name + "=" + value);
+		}
+
+		public void move(int ply, GenericMove move) {
+			assertThat(ply).isEqualTo(moves.size() + 1);
+			moves.add(move);
+		}
+
+		public void result(String result) {
+			this.result = result;
+		}
+	}
+
+	@Test
+	public void testReadGame() throws IOException, IllegalNotationException {
+		PgnReader reader = new PgnReader(new ByteArrayInputStream(GAMES.getBytes(StandardCharsets.UTF_8)));
+		assertGames(reader);
+	}
+
+	@Test
+	public void testReadGameFromFileChannel() throws IOException, IllegalNotationException {
+		File file = File.createTempFile("jcpi", ".pgn");
+		file.deleteOnExit();
+		try (FileOutputStream output = new FileOutputStream(file)) {
+			output.write(GAMES.getBytes(StandardCharsets.UTF_8));
+		}
+
+		try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+			assertGames(new PgnReader(randomAccessFile.getChannel()));
+		}
+	}
+
+	private void assertGames(PgnReader reader) throws IOException, IllegalNotationException {
+		Recorder recorder = new Recorder();
+		assertThat(reader.readGame(recorder)).isTrue();
+		assertThat(recorder.headers).containsExactly("Event=Test \"one\"", "White=M\u00fcller");
+		assertThat(recorder.moves).hasSize(9);
+		assertThat(recorder.moves.get(2)).isEqualTo(new GenericMove(GenericPosition.g1, GenericPosition.f3));
+		assertThat(recorder.moves.get(8)).isEqualTo(new GenericMove(GenericPosition.e1, GenericPosition.g1));
+		assertThat(recorder.result).isEqualTo(PgnReader.WHITEWIN);
+		assertThat(reader.getGenericBoard().toString()).isEqualTo("r1bqkb1r/1ppp1ppp/p1n2n2/4p3/B3P3/5N2/PPPP1PPP/RNBQ1RK1 b kq - 3 5");
+
+		Recorder illegal = new Recorder();
+		assertThat(catchThrowable(() -> reader.readGame(illegal))).isInstanceOf(IllegalNotationException.class);
+		assertThat(illegal.moves).hasSize(1);
+		assertThat(illegal.result).isEqualTo(PgnReader.BLACKWIN);
+
+		recorder = new Recorder();
+		assertThat(reader.readGame(recorder)).isTrue();
+		assertThat(recorder.moves).containsExactly(new GenericMove(GenericPosition.a1, GenericPosition.a8));
+		assertThat(reader.getPackedBoard().toString()).isEqualTo("R5k1/5ppp/8/8/8/8/8/6K1 b - - 1 1");
+
+		recorder = new Recorder();
+		assertThat(reader.readGame(recorder)).isTrue();
+		assertThat(recorder.headers).isEmpty();
+		assertThat(recorder.moves).hasSize(1);
+		assertThat(recorder.result).isEqualTo(PgnReader.UNKNOWN);
+
+		assertThat(reader.readGame(new Recorder())).isFalse();
+	}
+
+}